@@ -0,0 +1,54 @@
+package com.hippomaru.douckieTown.app;
+
+import com.hippomaru.douckieTown.benchmark.BenchmarkMaps;
+import com.hippomaru.douckieTown.model.map.CellGrid;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+// Пропускная способность полного тика на прогретом состоянии
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GameManagerBenchmark {
+    private static final int WARMUP_TICKS = 200;
+
+    @Param({"map_v1.txt", "map_one_agent.txt", "map_three_agents.txt", "map_five_agents.txt",
+            "synthetic-256"})
+    public String mapName;
+
+    @Param({"10", "1000"})
+    public int maxAgents;
+
+    @Param({"0.04", "0.3"})
+    public double transportSpawnProbability;
+
+    private String mapPath;
+    private GameManager manager;
+
+    @Setup(Level.Trial)
+    public void resolveMap() {
+        mapPath = BenchmarkMaps.resolve(mapName);
+    }
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        manager = new GameManager(new CellGrid(mapPath), maxAgents, transportSpawnProbability);
+        for (int i = 0; i < WARMUP_TICKS; i++) {
+            manager.doStep();
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() {
+        manager.close();
+    }
+
+    @Benchmark
+    public void doStep() {
+        manager.doStep();
+    }
+}
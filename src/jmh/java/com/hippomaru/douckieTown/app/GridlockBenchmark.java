@@ -0,0 +1,80 @@
+package com.hippomaru.douckieTown.app;
+
+import com.hippomaru.douckieTown.app.scheduler.SequentialAgentScheduler;
+import com.hippomaru.douckieTown.model.interactive.Agent;
+import com.hippomaru.douckieTown.model.interactive.Direction;
+import com.hippomaru.douckieTown.model.map.CellGrid;
+import com.hippomaru.douckieTown.model.map.Coords;
+import com.hippomaru.douckieTown.model.routing.CongestionAwarePlanner;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+// Затор, который не рассасывается: полосы забиты агентами до клеток FINISH, деспавна нет,
+// поэтому занятость не меняется. Движок по умолчанию перепланирует каждого агента раз в
+// REPLAN_AFTER_BLOCKED_TICKS тиков, активный набор - только после изменения занятости в радиусе штрафа
+// (здесь - по таймеру на горизонте колеса). Результат - тик движения агентов.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GridlockBenchmark {
+    private static final int LANE_LENGTH = 64;
+
+    @Param({"default", "active-set"})
+    public String engine;
+
+    @Param({"16", "64"})
+    public int lanes;
+
+    private RegionParallelEngine defaultEngine;
+    private ActiveSetEngine activeSetEngine;
+    private long tick;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        int[][] encoded = new int[lanes][LANE_LENGTH];
+        for (int x = 0; x < lanes; x++) {
+            encoded[x][LANE_LENGTH - 1] = 4;
+        }
+        CellGrid map = new CellGrid(encoded);
+        CongestionAwarePlanner planner = new CongestionAwarePlanner(map);
+        for (int x = 0; x < lanes; x++) {
+            for (int y = 0; y < LANE_LENGTH; y++) {
+                Coords coords = new Coords(x, y);
+                Agent agent = new Agent();
+                agent.setCurrentDirection(Direction.UP);
+                agent.setCurrentCoords(coords);
+                agent.setMap(map);
+                agent.setPlanner(planner);
+                agent.analyzeMap(map, coords);
+                map.setOccupant(coords, agent);
+            }
+        }
+        if (engine.equals("active-set")) {
+            activeSetEngine = new ActiveSetEngine(map, 0, 0.7, 5);
+        } else {
+            defaultEngine = new RegionParallelEngine(map, new SequentialAgentScheduler(), 0, 0.7, 5);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if (activeSetEngine != null) {
+            activeSetEngine.close();
+        } else {
+            defaultEngine.close();
+        }
+    }
+
+    @Benchmark
+    public void moveAgents() {
+        if (activeSetEngine != null) {
+            activeSetEngine.moveAgents(tick++, null);
+        } else {
+            defaultEngine.moveAgents(tick++, null);
+        }
+    }
+}
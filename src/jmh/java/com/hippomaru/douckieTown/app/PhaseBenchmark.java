@@ -0,0 +1,74 @@
+package com.hippomaru.douckieTown.app;
+
+import com.hippomaru.douckieTown.benchmark.BenchmarkMaps;
+import com.hippomaru.douckieTown.model.map.CellGrid;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+// Отдельные фазы движения. Каждая итерация - один вызов фазы на свежем прогретом состоянии,
+// иначе без спавна и деспавна состояние быстро вырождается.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 50)
+@Measurement(iterations = 200)
+@Fork(1)
+public class PhaseBenchmark {
+    private static final int WARMUP_TICKS = 200;
+
+    @Param({"map_five_agents.txt", "synthetic-256"})
+    public String mapName;
+
+    @Param({"10", "1000"})
+    public int maxAgents;
+
+    @Param({"0.04", "0.3"})
+    public double transportSpawnProbability;
+
+    private CellGrid map;
+    private GameManager manager;
+
+    @Setup(Level.Trial)
+    public void loadMap() {
+        map = new CellGrid(BenchmarkMaps.resolve(mapName));
+    }
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        manager = new GameManager(map, maxAgents, transportSpawnProbability);
+        for (int i = 0; i < WARMUP_TICKS; i++) {
+            manager.doStep();
+        }
+        // Фазы, которые в doStep идут перед движением
+        manager.despawnAgents();
+        manager.despawnTransport();
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() {
+        manager.close();
+        clearOccupancy();
+    }
+
+    @Benchmark
+    public void moveAgents() {
+        manager.moveAgents();
+    }
+
+    @Benchmark
+    public void moveTransport() {
+        manager.moveTransport();
+    }
+
+    // Карта общая для итераций, поэтому сущности прошлого прогона убираем
+    private void clearOccupancy() {
+        for (int index = 0; index < map.size(); index++) {
+            var occupant = map.getOccupant(index);
+            if (occupant != null) {
+                map.setOccupant(index, null);
+                map.release(occupant);
+            }
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.hippomaru.douckieTown.app;
+
+import com.hippomaru.douckieTown.benchmark.BenchmarkMaps;
+import com.hippomaru.douckieTown.model.map.CellGrid;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+// Масштабирование параллельного по регионам движка по числу потоков на большой загруженной карте.
+// Разбиение фиксировано, меняется только пул: parallelism = 1 обходит те же регионы в одном потоке.
+// "default" - движок GameManager по умолчанию (одна область) для сравнения.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RegionScalingBenchmark {
+    private static final int WARMUP_TICKS = 200;
+    private static final int REGION_SIDE = 4;
+
+    @Param({"synthetic-512"})
+    public String mapName;
+
+    @Param({"5000"})
+    public int maxAgents;
+
+    @Param({"0.3"})
+    public double transportSpawnProbability;
+
+    @Param({"default", "1", "2", "4", "8"})
+    public String parallelism;
+
+    private String mapPath;
+    private GameManager manager;
+
+    @Setup(Level.Trial)
+    public void resolveMap() {
+        mapPath = BenchmarkMaps.resolve(mapName);
+    }
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        manager = new GameManager(new CellGrid(mapPath), maxAgents, transportSpawnProbability);
+        if (!parallelism.equals("default")) {
+            manager.enableRegionParallelEngine(REGION_SIDE, REGION_SIDE, Integer.parseInt(parallelism));
+        }
+        for (int i = 0; i < WARMUP_TICKS; i++) {
+            manager.doStep();
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() {
+        manager.close();
+    }
+
+    @Benchmark
+    public void doStep() {
+        manager.doStep();
+    }
+}
@@ -0,0 +1,95 @@
+package com.hippomaru.douckieTown.app;
+
+import com.hippomaru.douckieTown.app.scheduler.AgentScheduler;
+import com.hippomaru.douckieTown.app.scheduler.SchedulerType;
+import com.hippomaru.douckieTown.model.interactive.Agent;
+import com.hippomaru.douckieTown.model.interactive.Direction;
+import com.hippomaru.douckieTown.model.map.CellGrid;
+import com.hippomaru.douckieTown.model.map.Coords;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Стоимость одного тика для разных стратегий выбора ходов агентов в движке по умолчанию.
+// Каждый агент едет по своей полосе, поэтому шаги никогда не блокируются;
+// вызов - полный проезд полос, результат пересчитан на тик.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SchedulerBenchmark {
+    private static final int LANE_LENGTH = 64;
+    private static final int TICKS = LANE_LENGTH - 1;
+
+    @Param({"SEQUENTIAL", "FORK_JOIN", "VIRTUAL_THREADS", "THREAD_PER_AGENT"})
+    public SchedulerType schedulerType;
+
+    @Param({"1000", "10000"})
+    public int agentsCount;
+
+    private CellGrid map;
+    private AgentScheduler scheduler;
+    private RegionParallelEngine engine;
+    private final List<Agent> agents = new ArrayList<>();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        map = new CellGrid(buildLanes(agentsCount));
+        scheduler = schedulerType.create();
+        engine = new RegionParallelEngine(map, scheduler, 0, 0.7, 5);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        engine.close();
+        scheduler.close();
+    }
+
+    @Setup(Level.Invocation)
+    public void spawnAgents() {
+        for (int x = 0; x < agentsCount; x++) {
+            Coords[] route = new Coords[LANE_LENGTH];
+            for (int y = 0; y < LANE_LENGTH; y++) {
+                route[y] = new Coords(x, y);
+            }
+            Agent agent = new Agent();
+            agent.setCurrentDirection(Direction.UP);
+            agent.setCurrentCoords(route[0]);
+            agent.setChosenRoute(route);
+            agent.setMap(map);
+            map.setOccupant(route[0], agent);
+            agents.add(agent);
+            scheduler.onSpawn(agent);
+        }
+    }
+
+    @TearDown(Level.Invocation)
+    public void despawnAgents() {
+        for (Agent agent : agents) {
+            map.setOccupant(agent.getCurrentCoords(), null);
+            map.release(agent);
+            scheduler.onDespawn(agent);
+        }
+        agents.clear();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TICKS)
+    public void moveAgents() {
+        for (int i = 0; i < TICKS; i++) {
+            engine.moveAgents(i, null);
+        }
+    }
+
+    private static int[][] buildLanes(int lanes) {
+        int[][] encoded = new int[lanes][LANE_LENGTH];
+        for (int x = 0; x < lanes; x++) {
+            encoded[x][LANE_LENGTH - 1] = 4;
+        }
+        return encoded;
+    }
+}
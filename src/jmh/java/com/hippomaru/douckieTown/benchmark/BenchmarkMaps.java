@@ -0,0 +1,73 @@
+package com.hippomaru.douckieTown.benchmark;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+// Карты для бенчмарков: файлы из ресурсов или синтетическая решётка "synthetic-<размер>"
+public final class BenchmarkMaps {
+    private static final String SYNTHETIC_PREFIX = "synthetic-";
+    private static final int BLOCK = 6;
+
+    private BenchmarkMaps() {
+    }
+
+    public static String resolve(String name) {
+        try {
+            if (name.startsWith(SYNTHETIC_PREFIX)) {
+                int size = Integer.parseInt(name.substring(SYNTHETIC_PREFIX.length()));
+                return writeLattice(size).toString();
+            }
+            Path local = Path.of("src/main/resources", name);
+            if (Files.exists(local)) {
+                return local.toString();
+            }
+            Path copy = Files.createTempFile("duckie-map-", ".txt");
+            copy.toFile().deleteOnExit();
+            try (InputStream in = BenchmarkMaps.class.getResourceAsStream("/" + name)) {
+                if (in == null) {
+                    throw new IllegalArgumentException("Unknown map: " + name);
+                }
+                Files.copy(in, copy, StandardCopyOption.REPLACE_EXISTING);
+            }
+            return copy.toString();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // Решётка дорог с шагом BLOCK: агенты стартуют слева, FINISH и точки спавна транспорта на перекрёстках
+    private static Path writeLattice(int size) throws IOException {
+        Path file = Files.createTempFile("duckie-lattice-" + size + "-", ".txt");
+        file.toFile().deleteOnExit();
+        try (BufferedWriter writer = Files.newBufferedWriter(file)) {
+            char[] line = new char[size];
+            for (int x = 0; x < size; x++) {
+                for (int y = 0; y < size; y++) {
+                    line[y] = latticeCode(x, y, size);
+                }
+                writer.write(line);
+                writer.newLine();
+            }
+        }
+        return file;
+    }
+
+    private static char latticeCode(int x, int y, int size) {
+        if (x == 0 || y == 0 || x == size - 1 || y == size - 1) return '1';
+        boolean roadRow = x % BLOCK == 1;
+        boolean roadColumn = y % BLOCK == 1;
+        if (!roadRow && !roadColumn) return '1';
+        if (roadRow && roadColumn) {
+            if (y == 1) return '2';
+            if (y > size / 2 && (x / BLOCK + y / BLOCK) % 7 == 0) return '4';
+            return '0';
+        }
+        if (roadRow && y % BLOCK == 3 && (x / BLOCK * 31 + y / BLOCK * 17) % 5 == 0) return '3';
+        return '0';
+    }
+}
@@ -0,0 +1,31 @@
+package com.hippomaru.douckieTown.benchmark;
+
+import com.hippomaru.douckieTown.model.map.CellGrid;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CellGridBenchmark {
+
+    @Param({"map_v1.txt", "map_one_agent.txt", "map_three_agents.txt", "map_five_agents.txt",
+            "synthetic-256", "synthetic-1024"})
+    public String mapName;
+
+    private String mapPath;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        mapPath = BenchmarkMaps.resolve(mapName);
+    }
+
+    @Benchmark
+    public CellGrid parse() {
+        return new CellGrid(mapPath);
+    }
+}
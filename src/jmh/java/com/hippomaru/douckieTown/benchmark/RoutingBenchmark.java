@@ -0,0 +1,57 @@
+package com.hippomaru.douckieTown.benchmark;
+
+import com.hippomaru.douckieTown.model.interactive.Agent;
+import com.hippomaru.douckieTown.model.map.CellGrid;
+import com.hippomaru.douckieTown.model.map.CellType;
+import com.hippomaru.douckieTown.model.map.Coords;
+import com.hippomaru.douckieTown.model.map.DistanceField;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RoutingBenchmark {
+
+    @Param({"map_v1.txt", "map_one_agent.txt", "map_three_agents.txt", "map_five_agents.txt",
+            "synthetic-256", "synthetic-1024"})
+    public String mapName;
+
+    private CellGrid map;
+    private List<Coords> spawns;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        map = new CellGrid(BenchmarkMaps.resolve(mapName));
+        spawns = new ArrayList<>();
+        for (int index = 0; index < map.size(); index++) {
+            if (map.getCellType(index) == CellType.AGENT_SPAWN) {
+                spawns.add(map.coordsOf(index));
+            }
+        }
+        map.getFinishDistanceField();
+    }
+
+    // Маршруты для всех точек спавна по уже посчитанному полю
+    @Benchmark
+    public void analyzeMap(Blackhole blackhole) {
+        for (Coords spawn : spawns) {
+            Agent agent = new Agent();
+            agent.analyzeMap(map, spawn);
+            blackhole.consume(agent.getChosenRoute());
+        }
+    }
+
+    // Разовая стоимость построения поля расстояний для карты
+    @Benchmark
+    public DistanceField buildFinishDistanceField() {
+        return DistanceField.toCellType(map, CellType.FINISH);
+    }
+}
@@ -0,0 +1,985 @@
+package com.hippomaru.douckieTown.app;
+
+import com.hippomaru.douckieTown.metrics.SimulationMetrics;
+import com.hippomaru.douckieTown.model.interactive.Agent;
+import com.hippomaru.douckieTown.model.interactive.Direction;
+import com.hippomaru.douckieTown.model.interactive.EntityKind;
+import com.hippomaru.douckieTown.model.interactive.TrafficMember;
+import com.hippomaru.douckieTown.model.interactive.Transport;
+import com.hippomaru.douckieTown.model.map.CellGrid;
+import com.hippomaru.douckieTown.model.map.Coords;
+import com.hippomaru.douckieTown.model.map.CorridorGraph;
+import com.hippomaru.douckieTown.model.map.EntityRegistry;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.function.Consumer;
+
+// Движение по активному набору: за тик обрабатываются только сущности, которые могут сдвинуться.
+// Сущность, упёршаяся в занятую клетку, записывается в ожидающие этой клетки и засыпает.
+// Будит её освобождение клетки (слушатель CellGrid) или таймер: агента - к перепланированию,
+// транспорт - к истечению TRANSPORT_MAX_WAIT или к последнему шагу перед деспавном.
+// Пока клетка занята, проспанные тики детерминированы и досчитываются при пробуждении.
+// Внутри фазы сущности идут по возрастанию id: клетка, освобождённая раньше в той же фазе,
+// будит сущность с большим id ещё в этом тике, как при полном обходе.
+// Случайность транспорта зависит только от (seed, тик, id), поэтому пропуск тиков её не сдвигает.
+// Агент, заблокированный сразу после перепланирования, спит, пока не изменится занятость в радиусе штрафа:
+// до этого каждое перепланирование строило бы тот же маршрут, и его достаточно досчитать.
+// В режиме перемотки коридоры CorridorGraph пролетаются одним событием: агенты, идущие по коридору
+// в одну сторону, и транспорт, один на коридоре. Их ходы ни с кем не конфликтуют и досчитываются
+// при посадке - когда коридор впереди кончается, когда клетку полёта кто-то читает
+// или когда в коридор входят против потока.
+class ActiveSetEngine {
+    private static final int NONE = -1;
+    // Горизонт таймеров в тиках; более дальнее пробуждение переносится ближе, лишний настоящий шаг безопасен
+    private static final int WHEEL_SIZE = 256;
+
+    // Состояние сна по id лежит подряд, чтобы засыпание и пробуждение читали одну строку кэша.
+    // Тики хранятся младшими 32 битами: сравниваются только тики в пределах одного сна
+    private static final int STRIDE = 8;
+    private static final int WAITING_ON = 0;
+    private static final int NEXT_WAITER = 1;
+    private static final int PREVIOUS_WAITER = 2;
+    private static final int SLEPT_AT = 3;
+    private static final int WAKE_AT = 4;
+    // Неудачные попытки хода спящего транспорта до пробуждения по таймеру, посчитаны при засыпании
+    private static final int BLOCKED_UNTIL_WAKE = 5;
+    // Полёт по коридору: ребро и первый пролетаемый тик, посадка по таймеру - в WAKE_AT.
+    // Слоты сна в полёте не нужны: в них звено списка полётов ребра, у агента фаза полёта,
+    // у транспорта клетка и состояние при посадке
+    private static final int FLIGHT_EDGE = 6;
+    private static final int FLIGHT_FROM = 7;
+    private static final int NEXT_FLIGHT = NEXT_WAITER;
+    private static final int FLIGHT_PHASE = PREVIOUS_WAITER;
+    private static final int FLIGHT_CELL = PREVIOUS_WAITER;
+    private static final int FLIGHT_STATE = BLOCKED_UNTIL_WAKE;
+    // Короткий полёт не окупает запуск и посадку
+    private static final int MIN_FLIGHT_TICKS = 4;
+    // Сон агента в заторе (без полётов): 1 - перепланирование находит маршрут, 0 - нет, NONE - обычный сон.
+    // Метка сна отличает действующие записи наблюдателей участков от устаревших
+    private static final int GRIDLOCK = BLOCKED_UNTIL_WAKE;
+    private static final int WATCH_STAMP = FLIGHT_FROM;
+    // Участки карты 8x8 клеток для наблюдателей занятости
+    private static final int AREA_SHIFT = 3;
+
+    private final CellGrid map;
+    private final EntityRegistry entities;
+    private final double transportMoveProbability;
+    private final int transportMaxWait;
+    private final CounterRandom random;
+
+    private final BitSet activeAgents = new BitSet();
+    private final BitSet activeTransports = new BitSet();
+    private int[] sleepers = new int[0];
+
+    // Ожидающие клетки: голова списка по клетке, звенья - в sleepers.
+    // Клетка освобождается на каждом ходу, поэтому сначала проверяется компактный битсет
+    // клеток с ожидающими, а большой массив голов читается только для них
+    private final BitSet waitedCells = new BitSet();
+    private final int[] waitersHead;
+    // Колесо таймеров: id, которые нужно разбудить в тик t, лежат в ячейке t % WHEEL_SIZE
+    private final IntBuffer[] wheel = new IntBuffer[WHEEL_SIZE];
+    // Транспорт, исчерпавший шаги за тик: спящий исчерпать их не может, поэтому полный обход не нужен
+    private final List<Transport> expiredTransports = new ArrayList<>();
+    // Агенты в заторе по участкам, которые задевает их радиус штрафа: пары (id, метка сна).
+    // Изменение занятости клетки будит тех, в чей радиус она попала; устаревшие записи вычищаются лениво
+    private final int[] areaOf;
+    private final IntBuffer[] areaWatchers;
+    private final int areaRows;
+    private int watchStamp;
+    // Без сна заблокированные сущности обрабатываются каждый тик - эталон, с которым сверяется сон
+    private boolean sleeping = true;
+
+    // Полёты включены только на время перемотки. По ребру: число сущностей и отдельно транспорта,
+    // голова и длина списка полётов и их направление: +1 - от edgeFrom к edgeTo, -1 - обратно, 0 - летит транспорт.
+    // Полёты агентов в списке идут от заднего к переднему, по фазе: клетка запуска вдоль направления
+    // минус первый тик полёта. Позиция вдоль направления после хода в тике t - фаза + t + 1.
+    // У полётов свой генератор: посадка посреди хода транспорта не должна сбивать его жребий
+    private CorridorGraph corridors;
+    private int[] edgeOccupants;
+    private int[] edgeTransports;
+    private int[] edgeFlights;
+    private int[] edgeFlightCounts;
+    private byte[] edgeDirections;
+    private final BitSet flying = new BitSet();
+    private final CounterRandom flightRandom;
+    private int flownCell;
+    private Direction flownDirection;
+    private int flownWait;
+
+    ActiveSetEngine(CellGrid map, long seed, double transportMoveProbability, int transportMaxWait) {
+        this.map = map;
+        this.entities = map.getEntities();
+        this.transportMoveProbability = transportMoveProbability;
+        this.transportMaxWait = transportMaxWait;
+        this.random = new CounterRandom(seed);
+        this.flightRandom = new CounterRandom(seed);
+        this.waitersHead = new int[map.size()];
+        Arrays.fill(waitersHead, NONE);
+        this.areaRows = ((map.getHeight() - 1) >> AREA_SHIFT) + 1;
+        this.areaOf = new int[map.size()];
+        for (int cell = 0; cell < areaOf.length; cell++) {
+            areaOf[cell] = (map.xOf(cell) >> AREA_SHIFT) * areaRows + (map.yOf(cell) >> AREA_SHIFT);
+        }
+        this.areaWatchers = new IntBuffer[(((map.getWidth() - 1) >> AREA_SHIFT) + 1) * areaRows];
+        for (int i = 0; i < areaWatchers.length; i++) {
+            areaWatchers[i] = new IntBuffer();
+        }
+        for (int i = 0; i < WHEEL_SIZE; i++) {
+            wheel[i] = new IntBuffer();
+        }
+
+        synchronized (map) {
+            for (EntityKind kind : EntityKind.values()) {
+                for (int i = 0, count = entities.count(kind); i < count; i++) {
+                    track(entities.get(kind, i));
+                }
+            }
+            map.setVacancyListener(this::onVacated);
+        }
+    }
+
+    // Новая сущность на карте: до первой блокировки она активна
+    void track(TrafficMember member) {
+        int id = member.getId();
+        ensureCapacity(id);
+        int base = id * STRIDE;
+        sleepers[base + WAITING_ON] = NONE;
+        sleepers[base + SLEPT_AT] = NONE;
+        sleepers[base + WAKE_AT] = NONE;
+        sleepers[base + FLIGHT_EDGE] = NONE;
+        sleepers[base + GRIDLOCK] = NONE;
+        activeSet(member.getKind()).set(id);
+        occupancyChanged(entities.positionOf(member));
+        if (corridors != null) {
+            enterCell(NONE, entities.positionOf(member), member, 0);
+        }
+        if (member instanceof Transport transport && isExpired(transport)) {
+            expiredTransports.add(transport);
+        }
+    }
+
+    // Вызывать до освобождения id в реестре
+    void forget(TrafficMember member) {
+        int id = member.getId();
+        if (flying.get(id)) {
+            unlinkFlight(id);
+        }
+        unlinkWaiter(id);
+        sleepers[id * STRIDE + SLEPT_AT] = NONE;
+        sleepers[id * STRIDE + WAKE_AT] = NONE;
+        sleepers[id * STRIDE + GRIDLOCK] = NONE;
+        activeAgents.clear(id);
+        activeTransports.clear(id);
+    }
+
+    void moveAgents(long tick, SimulationMetrics metrics) {
+        synchronized (map) {
+            fireTimers(tick);
+            for (int id = activeAgents.nextSetBit(0); id >= 0; id = activeAgents.nextSetBit(id + 1)) {
+                Agent agent = (Agent) entities.get(id);
+                int skipped = skippedTicks(id, tick);
+                if (skipped >= 0) {
+                    skipSleep(agent, skipped);
+                    sleepers[id * STRIDE + SLEPT_AT] = NONE;
+                    sleepers[id * STRIDE + GRIDLOCK] = NONE;
+                }
+
+                // Перепланирование смотрит на занятость вокруг агента
+                boolean replanning = agent.getPlanner() != null && agent.blockedTicksBeforeReplan() <= 0;
+                if (replanning && !flying.isEmpty()) {
+                    landNear(agent, tick);
+                }
+                int replans = agent.getReplansCounter();
+                int intent = agent.planStep(agent.getPlanner());
+                if (intent >= 0) {
+                    landObserved(intent, EntityKind.AGENT, id, tick);
+                }
+                boolean moved = intent >= 0 && !map.isOccupied(intent);
+                if (moved) {
+                    int position = entities.positionOf(agent);
+                    map.setOccupant(position, null);
+                    map.setOccupant(intent, agent);
+                    occupancyChanged(intent);
+                    if (corridors != null) {
+                        enterCell(position, intent, agent, tick);
+                    }
+                }
+                agent.applyStep(intent, moved);
+
+                if (intent >= 0 && !moved) {
+                    int ticks = agent.blockedTicksBeforeReplan();
+                    // Полёты меняют занятость без событий карты, поэтому с ними агент спит только до таймера
+                    if (replanning && corridors == null) {
+                        sleepInGridlock(agent, intent, tick, agent.getReplansCounter() != replans);
+                    } else if (ticks > 0) {
+                        sleep(id, EntityKind.AGENT, intent, tick, tick + Math.min(ticks, WHEEL_SIZE - 2) + 1);
+                    }
+                } else if (moved && corridors != null) {
+                    launchAgent(agent, intent, tick);
+                }
+            }
+        }
+    }
+
+    void moveTransport(long tick, SimulationMetrics metrics) {
+        synchronized (map) {
+            for (int id = activeTransports.nextSetBit(0); id >= 0; id = activeTransports.nextSetBit(id + 1)) {
+                Transport transport = (Transport) entities.get(id);
+                int skipped = skippedTicks(id, tick);
+                if (skipped >= 0) {
+                    int base = id * STRIDE;
+                    int blocked = sleepers[base + WAKE_AT] == (int) tick
+                            ? skipSleep(transport, sleepers[base + BLOCKED_UNTIL_WAKE], skipped)
+                            : replaySleep(transport, tick - skipped, tick);
+                    if (metrics != null && blocked > 0) {
+                        metrics.recordBlockedTransportMoves(blocked);
+                    }
+                    sleepers[base + SLEPT_AT] = NONE;
+                }
+
+                int position = entities.positionOf(transport);
+                int possibleDirections = map.getPassableDirections(position);
+                if (possibleDirections == 0) {
+                    transport.setStepsCounter(transport.getStepsCounter() + 1);
+                    if (isExpired(transport)) {
+                        expiredTransports.add(transport);
+                    }
+                    continue;
+                }
+
+                random.reset(tick, id);
+                if (!transport.getCurrentDirection().in(possibleDirections) ||
+                        Integer.bitCount(possibleDirections) > 2 ||
+                        transport.getWaitCounter() >= transportMaxWait) {
+                    transport.chooseDirection(possibleDirections, random);
+                    transport.setWaitCounter(0);
+                }
+                int nextIndex = transport.getNextIndex(map, position);
+                landObserved(nextIndex, EntityKind.TRANSPORT, id, tick);
+                boolean moved = false;
+                if (random.nextDouble() < transportMoveProbability) {
+                    if (!map.isOccupied(nextIndex)) {
+                        map.setOccupant(position, null);
+                        map.setOccupant(nextIndex, transport);
+                        occupancyChanged(nextIndex);
+                        if (corridors != null) {
+                            enterCell(position, nextIndex, transport, tick);
+                        }
+                        moved = true;
+                    } else {
+                        transport.setWaitCounter(transport.getWaitCounter() + 1);
+                        if (metrics != null) {
+                            metrics.recordBlockedTransportMove();
+                        }
+                    }
+                }
+                transport.setStepsCounter(transport.getStepsCounter() + 1);
+                if (isExpired(transport)) {
+                    expiredTransports.add(transport);
+                    continue;
+                }
+
+                // На перекрёстке направление выбирается заново каждый тик, там ждать нечего
+                if (!moved && map.isOccupied(nextIndex) && Integer.bitCount(possibleDirections) <= 2) {
+                    long wake = transportWakeTick(transport, id, tick);
+                    if (wake > tick + 1) {
+                        sleep(id, EntityKind.TRANSPORT, nextIndex, tick, wake);
+                    }
+                } else if (corridors != null) {
+                    launchTransport(transport, moved ? nextIndex : position, tick);
+                }
+            }
+        }
+    }
+
+    // Уже уснувшие досыпают до пробуждения, новые засыпания не происходят
+    void setSleeping(boolean sleeping) {
+        this.sleeping = sleeping;
+    }
+
+    // Отдаёт транспорт, исчерпавший шаги с прошлого вызова, и очищает список
+    void drainExpiredTransports(Consumer<Transport> action) {
+        for (Transport transport : expiredTransports) {
+            if (corridors != null && corridors.edgeOf(entities.positionOf(transport)) != NONE) {
+                edgeTransports[corridors.edgeOf(entities.positionOf(transport))]--;
+            }
+            action.accept(transport);
+        }
+        expiredTransports.clear();
+    }
+
+    // Досчитывает проспанные тики до начала tick, чтобы счётчики можно было читать снаружи
+    // (снимок состояния, смена движка). Спящие сущности продолжают ждать.
+    void settle(long tick, SimulationMetrics metrics) {
+        synchronized (map) {
+            landAll(tick);
+            for (int id = 1, limit = sleepers.length / STRIDE; id < limit; id++) {
+                int skipped = skippedTicks(id, tick);
+                if (skipped <= 0) continue;
+                TrafficMember member = entities.get(id);
+                if (member instanceof Agent agent) {
+                    skipSleep(agent, skipped);
+                } else {
+                    int blocked = replaySleep((Transport) member, tick - skipped, tick);
+                    sleepers[id * STRIDE + BLOCKED_UNTIL_WAKE] -= blocked;
+                    if (metrics != null && blocked > 0) {
+                        metrics.recordBlockedTransportMoves(blocked);
+                    }
+                }
+                sleepers[id * STRIDE + SLEPT_AT] = (int) (tick - 1);
+            }
+        }
+    }
+
+    // Включает полёты по коридорам графа; счётчики рёбер строятся по текущим позициям
+    void enableCorridorFlights(CorridorGraph graph) {
+        if (graph.getMap() != map.getTopology()) {
+            throw new IllegalArgumentException("Corridor graph is built for another map");
+        }
+        synchronized (map) {
+            corridors = graph;
+            edgeOccupants = new int[graph.getEdgeCount()];
+            edgeTransports = new int[graph.getEdgeCount()];
+            edgeFlights = new int[graph.getEdgeCount()];
+            edgeFlightCounts = new int[graph.getEdgeCount()];
+            edgeDirections = new byte[graph.getEdgeCount()];
+            Arrays.fill(edgeFlights, NONE);
+            // Спящие в заторе ждут событий карты, которых полёты не шлют
+            wakeGridlocked();
+            for (EntityKind kind : EntityKind.values()) {
+                for (int i = 0, count = entities.count(kind); i < count; i++) {
+                    TrafficMember member = entities.get(kind, i);
+                    enterCell(NONE, entities.positionOf(member), member, 0);
+                }
+            }
+        }
+    }
+
+    // Будит спящих в заторе, например когда перепланирование начинает строить другие маршруты.
+    // Проспанные тики досчитываются при следующем ходе
+    void wakeGridlocked() {
+        synchronized (map) {
+            for (int id = 1, limit = sleepers.length / STRIDE; id < limit; id++) {
+                if (sleepers[id * STRIDE + GRIDLOCK] != NONE && sleepers[id * STRIDE + WAITING_ON] != NONE) {
+                    wake(id);
+                }
+            }
+        }
+    }
+
+    // Сажает все полёты к началу tick и возвращает поклеточный режим
+    void disableCorridorFlights(long tick) {
+        synchronized (map) {
+            landAll(tick);
+            corridors = null;
+            edgeOccupants = null;
+            edgeTransports = null;
+            edgeFlights = null;
+            edgeFlightCounts = null;
+            edgeDirections = null;
+        }
+    }
+
+    void close() {
+        synchronized (map) {
+            map.setVacancyListener(null);
+        }
+    }
+
+    // Сколько тиков до tick сущность проспала; -1, если досчитывать нечего
+    private int skippedTicks(int id, long tick) {
+        int sleptAt = sleepers[id * STRIDE + SLEPT_AT];
+        return sleptAt == NONE ? NONE : (int) tick - sleptAt - 1;
+    }
+
+    private static boolean isExpired(Transport transport) {
+        return transport.getStepsCounter() >= transport.getPossibleStepsCount();
+    }
+
+    // Спящий транспорт в каждом тике только тянет жребий хода: направление не меняется,
+    // клетка впереди занята. Возвращает число неудачных попыток в тиках [from, to)
+    private int replaySleep(Transport transport, long from, long to) {
+        int blocked = 0;
+        for (long tick = from; tick < to; tick++) {
+            if (random.reset(tick, transport.getId()).nextDouble() < transportMoveProbability) {
+                blocked++;
+            }
+        }
+        return skipSleep(transport, blocked, (int) (to - from));
+    }
+
+    private int skipSleep(Transport transport, int blocked, int ticks) {
+        transport.setWaitCounter(transport.getWaitCounter() + blocked);
+        transport.setStepsCounter(transport.getStepsCounter() + ticks);
+        return blocked;
+    }
+
+    private void skipSleep(Agent agent, int ticks) {
+        int gridlock = sleepers[agent.getId() * STRIDE + GRIDLOCK];
+        if (gridlock == NONE) {
+            agent.skipBlockedTicks(ticks);
+        } else {
+            agent.skipGridlockTicks(ticks, gridlock == 1);
+        }
+    }
+
+    // Сон до изменения занятости в радиусе штрафа; таймер на горизонте колеса - лишний настоящий шаг безопасен
+    private void sleepInGridlock(Agent agent, int cell, long tick, boolean replanFound) {
+        if (!sleeping) return;
+        int id = agent.getId();
+        sleep(id, EntityKind.AGENT, cell, tick, tick + WHEEL_SIZE - 1);
+        int base = id * STRIDE;
+        sleepers[base + GRIDLOCK] = replanFound ? 1 : 0;
+        int stamp = ++watchStamp;
+        sleepers[base + WATCH_STAMP] = stamp;
+
+        int radius = agent.getPlanner().getPenaltyRadius();
+        int x = agent.getCurrentCoords().x();
+        int y = agent.getCurrentCoords().y();
+        int fromColumn = Math.max(0, x - radius) >> AREA_SHIFT;
+        int toColumn = Math.min(map.getWidth() - 1, x + radius) >> AREA_SHIFT;
+        int fromRow = Math.max(0, y - radius) >> AREA_SHIFT;
+        int toRow = Math.min(map.getHeight() - 1, y + radius) >> AREA_SHIFT;
+        for (int column = fromColumn; column <= toColumn; column++) {
+            for (int row = fromRow; row <= toRow; row++) {
+                IntBuffer watchers = areaWatchers[column * areaRows + row];
+                // Перед ростом буфера выбрасываем устаревшие записи - как при росте массива, в среднем O(1)
+                if (watchers.size == watchers.values.length) {
+                    compactWatchers(watchers, NONE);
+                }
+                watchers.add(id);
+                watchers.add(stamp);
+            }
+        }
+    }
+
+    // Будит агентов в заторе, в радиус штрафа которых попадает cell
+    private void occupancyChanged(int cell) {
+        IntBuffer watchers = areaWatchers[areaOf[cell]];
+        if (watchers.size != 0) {
+            compactWatchers(watchers, cell);
+        }
+    }
+
+    // Оставляет действующие записи; если cell != NONE, будит и убирает тех, до кого она достаёт
+    private void compactWatchers(IntBuffer watchers, int cell) {
+        int kept = 0;
+        for (int i = 0; i < watchers.size; i += 2) {
+            int id = watchers.values[i];
+            int stamp = watchers.values[i + 1];
+            int base = id * STRIDE;
+            if (sleepers[base + WAITING_ON] == NONE || sleepers[base + GRIDLOCK] == NONE
+                    || sleepers[base + WATCH_STAMP] != stamp || !(entities.get(id) instanceof Agent agent)) {
+                continue;
+            }
+            if (cell != NONE && isNear(agent, cell)) {
+                wake(id);
+                continue;
+            }
+            watchers.values[kept++] = id;
+            watchers.values[kept++] = stamp;
+        }
+        watchers.size = kept;
+    }
+
+    private boolean isNear(Agent agent, int cell) {
+        int position = entities.positionOf(agent);
+        int distance = Math.abs(map.xOf(position) - map.xOf(cell)) + Math.abs(map.yOf(position) - map.yOf(cell));
+        return distance <= agent.getPlanner().getPenaltyRadius();
+    }
+
+    // Первый тик после tick, в котором транспорт нужно обработать по-настоящему:
+    // истекло ожидание и направление выбирается заново, либо это последний шаг перед деспавном.
+    // Попутно запоминает, сколько попыток хода до него будут неудачными
+    private long transportWakeTick(Transport transport, int id, long tick) {
+        int waitCounter = transport.getWaitCounter();
+        int stepsCounter = transport.getStepsCounter();
+        long next = tick + 1;
+        for (; next < tick + WHEEL_SIZE; next++) {
+            if (waitCounter >= transportMaxWait || stepsCounter + 1 >= transport.getPossibleStepsCount()) {
+                break;
+            }
+            if (random.reset(next, id).nextDouble() < transportMoveProbability) {
+                waitCounter++;
+            }
+            stepsCounter++;
+        }
+        sleepers[id * STRIDE + BLOCKED_UNTIL_WAKE] = waitCounter - transport.getWaitCounter();
+        return next;
+    }
+
+    private void sleep(int id, EntityKind kind, int cell, long tick, long wake) {
+        if (!sleeping) return;
+        activeSet(kind).clear(id);
+        int base = id * STRIDE;
+        sleepers[base + SLEPT_AT] = (int) tick;
+        sleepers[base + WAKE_AT] = (int) wake;
+        wheel[(int) (wake % WHEEL_SIZE)].add(id);
+
+        int head = waitersHead[cell];
+        sleepers[base + WAITING_ON] = cell;
+        sleepers[base + PREVIOUS_WAITER] = NONE;
+        sleepers[base + NEXT_WAITER] = head;
+        if (head != NONE) {
+            sleepers[head * STRIDE + PREVIOUS_WAITER] = id;
+        }
+        waitersHead[cell] = id;
+        waitedCells.set(cell);
+    }
+
+    // WAKE_AT остаётся: по нему при досчёте видно, разбудил ли таймер
+    private void wake(int id) {
+        unlinkWaiter(id);
+        activeSet(entities.get(id).getKind()).set(id);
+    }
+
+    private void onVacated(int cell) {
+        if (corridors != null && corridors.edgeOf(cell) != NONE) {
+            edgeOccupants[corridors.edgeOf(cell)]--;
+        }
+        occupancyChanged(cell);
+        if (!waitedCells.get(cell)) return;
+        while (waitersHead[cell] != NONE) {
+            wake(waitersHead[cell]);
+        }
+    }
+
+    private void fireTimers(long tick) {
+        IntBuffer due = wheel[(int) (tick % WHEEL_SIZE)];
+        for (int i = 0; i < due.size; i++) {
+            int id = due.values[i];
+            // Запись устарела, если сущность уже разбудила клетка или id достался другой
+            if (sleepers[id * STRIDE + WAKE_AT] != (int) tick) continue;
+            if (sleepers[id * STRIDE + WAITING_ON] != NONE) {
+                wake(id);
+            } else if (flying.get(id)) {
+                continueFlight(id, tick);
+            }
+        }
+        due.clear();
+    }
+
+    // Сущность перешла из from в cell (from = NONE - появилась на карте). Уход с ребра считает слушатель
+    // освобождения, транспорт по рёбрам - здесь. Вход в коридор не вслед за полётами агентов сажает их все:
+    // их ходы досчитаны в предположении, что впереди никто не появится
+    private void enterCell(int from, int cell, TrafficMember member, long tick) {
+        boolean transport = member.getKind() == EntityKind.TRANSPORT;
+        if (transport && from != NONE && corridors.edgeOf(from) != NONE) {
+            edgeTransports[corridors.edgeOf(from)]--;
+        }
+        int edge = corridors.edgeOf(cell);
+        if (edge == NONE) return;
+        edgeOccupants[edge]++;
+        if (transport) {
+            edgeTransports[edge]++;
+        }
+        if (edgeFlights[edge] != NONE && (transport || !followsFlights(edge, from, cell))) {
+            landEdge(edge, member.getKind(), member.getId(), tick);
+        }
+    }
+
+    // Ход по направлению полётов ребра: внутри коридора или вход с его начала
+    private boolean followsFlights(int edge, int from, int cell) {
+        int direction = edgeDirections[edge];
+        if (direction == 0 || from == NONE) return false;
+        int offset = corridors.offsetOf(cell);
+        if (corridors.edgeOf(from) == edge) {
+            return offset - corridors.offsetOf(from) == direction;
+        }
+        if (direction > 0) {
+            return offset == 0 && from == corridors.nodeCell(corridors.edgeFrom(edge));
+        }
+        return offset == corridors.edgeCellCount(edge) - 1 && from == corridors.nodeCell(corridors.edgeTo(edge));
+    }
+
+    // Агент летит, пока следующие клетки маршрута идут по коридору, и не дальше клетки перед
+    // ближайшей сущностью впереди или перед клеткой посадки ближайшего полёта впереди
+    private void launchAgent(Agent agent, int cell, long tick) {
+        int edge = corridors.edgeOf(cell);
+        if (edge == NONE || edgeTransports[edge] != 0 || waitedCells.get(cell)) return;
+        Coords[] route = agent.getChosenRoute();
+        int cursor = agent.getRouteCursor();
+        if (cursor + 1 >= route.length) return;
+        int offset = corridors.offsetOf(cell);
+        int next = map.index(route[cursor + 1]);
+        if (corridors.edgeOf(next) != edge) return;
+        int direction = corridors.offsetOf(next) - offset;
+        if (direction != 1 && direction != -1) return;
+        if (edgeFlights[edge] != NONE && edgeDirections[edge] != direction) return;
+
+        int phase = offset * direction - (int) (tick + 1);
+        int behind = NONE;
+        int ahead = edgeFlights[edge];
+        while (ahead != NONE && sleepers[ahead * STRIDE + FLIGHT_PHASE] - phase < 0) {
+            behind = ahead;
+            ahead = sleepers[ahead * STRIDE + NEXT_FLIGHT];
+        }
+        int ticks = flightTicks(agent.getId(), route, cursor, edge, offset, direction, phase, ahead, WHEEL_SIZE - 2);
+        if (ticks >= MIN_FLIGHT_TICKS) {
+            int id = agent.getId();
+            sleepers[id * STRIDE + FLIGHT_PHASE] = phase;
+            launch(id, EntityKind.AGENT, edge, behind, tick, ticks);
+            edgeDirections[edge] = (byte) direction;
+        }
+    }
+
+    // Сколько тиков агент может пролететь от клетки offset по маршруту с позиции cursor.
+    // Полёты впереди сели бы раньше тех, что за ними, поэтому ограничивает только ближайший
+    private int flightTicks(int id, Coords[] route, int cursor, int edge, int offset, int direction, int phase,
+                            int ahead, int limit) {
+        if (ahead != NONE) {
+            int base = ahead * STRIDE;
+            // Вплотную за полётом, который ходит позже в тике, агент упрётся в него
+            if (sleepers[base + FLIGHT_PHASE] - phase == 1 && ahead > id) return 0;
+            limit = Math.min(limit, sleepers[base + FLIGHT_PHASE] + sleepers[base + WAKE_AT] - offset * direction - 1);
+        }
+        int toEnd = direction > 0 ? corridors.edgeCellCount(edge) - 1 - offset : offset;
+        int reach = Math.min(Math.min(limit, toEnd), route.length - 1 - cursor);
+        if (reach <= 0) return 0;
+        // Кроме полётов на ребре стоит только сам агент - занятость клеток проверять не нужно,
+        // а прямой участок маршрута ищется делением пополам
+        if (edgeOccupants[edge] - edgeFlightCounts[edge] == (flying.get(id) ? 0 : 1)) {
+            if (straight(route, cursor, edge, offset, direction, reach)) return reach;
+            int low = 0;
+            while (reach - low > 1) {
+                int middle = (low + reach) >>> 1;
+                if (straight(route, cursor, edge, offset, direction, middle)) {
+                    low = middle;
+                } else {
+                    reach = middle;
+                }
+            }
+            return low;
+        }
+        int ticks = 0;
+        while (ticks < reach && straight(route, cursor, edge, offset, direction, ticks + 1)) {
+            int step = map.index(route[cursor + ticks + 1]);
+            if (map.isOccupied(step) && !flying.get(map.getOccupantId(step))) break;
+            ticks++;
+        }
+        return ticks;
+    }
+
+    // За шаг маршрут сдвигается по коридору не больше чем на клетку, поэтому первые steps шагов идут
+    // прямо по нему, только если через steps шагов агент на steps клеток дальше
+    private boolean straight(Coords[] route, int cursor, int edge, int offset, int direction, int steps) {
+        int cell = map.index(route[cursor + steps]);
+        return corridors.edgeOf(cell) == edge && corridors.offsetOf(cell) == offset + direction * steps;
+    }
+
+    // Транспорт летит только один на коридоре. Полёт проигрывается заранее: при посадке по таймеру итог готов
+    private void launchTransport(Transport transport, int cell, long tick) {
+        int edge = corridors.edgeOf(cell);
+        if (edge == NONE || edgeOccupants[edge] != 1 || waitedCells.get(cell)) return;
+        int ticks = flyTransport(transport, cell, edge, tick + 1, WHEEL_SIZE - 2);
+        if (ticks >= MIN_FLIGHT_TICKS) {
+            int base = transport.getId() * STRIDE;
+            sleepers[base + FLIGHT_CELL] = flownCell;
+            sleepers[base + FLIGHT_STATE] = flownWait << 2 | flownDirection.ordinal();
+            launch(transport.getId(), EntityKind.TRANSPORT, edge, NONE, tick, ticks);
+            edgeDirections[edge] = 0;
+        }
+    }
+
+    // Полёт встаёт в список ребра за behind (NONE - в голову)
+    private void launch(int id, EntityKind kind, int edge, int behind, long tick, int ticks) {
+        activeSet(kind).clear(id);
+        int base = id * STRIDE;
+        long land = tick + 1 + ticks;
+        sleepers[base + FLIGHT_EDGE] = edge;
+        sleepers[base + FLIGHT_FROM] = (int) (tick + 1);
+        sleepers[base + WAKE_AT] = (int) land;
+        wheel[(int) (land % WHEEL_SIZE)].add(id);
+        if (behind == NONE) {
+            sleepers[base + NEXT_FLIGHT] = edgeFlights[edge];
+            edgeFlights[edge] = id;
+        } else {
+            sleepers[base + NEXT_FLIGHT] = sleepers[behind * STRIDE + NEXT_FLIGHT];
+            sleepers[behind * STRIDE + NEXT_FLIGHT] = id;
+        }
+        edgeFlightCounts[edge]++;
+        flying.set(id);
+    }
+
+    // Полёт с таймером на tick продлевается, если коридор впереди позволяет, иначе садится.
+    // Транспорт садится и взлетает заново: его полёт проигрывается заранее
+    private void continueFlight(int id, long tick) {
+        TrafficMember member = entities.get(id);
+        if (member instanceof Agent agent) {
+            if (!extendFlight(agent, tick)) {
+                land(id, null, NONE, tick);
+            }
+        } else {
+            land(id, null, NONE, tick);
+            launchTransport((Transport) member, entities.positionOf(member), tick - 1);
+        }
+    }
+
+    // Продление полёта агента от его посадки, как запуск после хода в тике перед ней; место в списке ребра
+    // не меняется. Продлить можно и заранее: сущности на пути только уходят вперёд, а вошедшие в коридор
+    // сажают полёты или идут за ними. Поэтому полёт впереди, который сядет раньше, чем агент до него дойдёт,
+    // продлевается первым - иначе агент доходил бы только до его старой посадки
+    private boolean extendFlight(Agent agent, long tick) {
+        int id = agent.getId();
+        int base = id * STRIDE;
+        int edge = sleepers[base + FLIGHT_EDGE];
+        if (edgeTransports[edge] != 0) return false;
+        int direction = edgeDirections[edge];
+        int phase = sleepers[base + FLIGHT_PHASE];
+        int wake = sleepers[base + WAKE_AT];
+        int ahead = sleepers[base + NEXT_FLIGHT];
+        if (ahead != NONE && sleepers[ahead * STRIDE + WAKE_AT] - wake < sleepers[ahead * STRIDE + FLIGHT_PHASE] - phase) {
+            extendFlight((Agent) entities.get(ahead), tick);
+        }
+        int flown = wake - sleepers[base + FLIGHT_FROM];
+        int ticks = flightTicks(id, agent.getChosenRoute(), agent.getRouteCursor() + flown, edge,
+                (phase + wake) * direction, direction, phase, ahead, (int) tick + WHEEL_SIZE - 2 - wake);
+        if (ticks <= 0) return false;
+        long land = tick + (wake - (int) tick) + ticks;
+        sleepers[base + WAKE_AT] = (int) land;
+        wheel[(int) (land % WHEEL_SIZE)].add(id);
+        return true;
+    }
+
+    // Те же правила, что в moveTransport, для транспорта одного на коридоре: клетки впереди свободны.
+    // Не дальше limit тиков, до выхода из коридора или до последнего шага перед деспавном.
+    // Возвращает число пролетевших тиков, позиция и состояние после них - во flown*
+    private int flyTransport(Transport transport, int cell, int edge, long from, int limit) {
+        int id = transport.getId();
+        int steps = transport.getStepsCounter();
+        Direction direction = transport.getCurrentDirection();
+        int wait = transport.getWaitCounter();
+        int ticks = 0;
+        for (; ticks < limit && steps + 1 < transport.getPossibleStepsCount(); ticks++) {
+            int possibleDirections = map.getPassableDirections(cell);
+            Direction chosen = direction;
+            int chosenWait = wait;
+            flightRandom.reset(from + ticks, id);
+            if (!chosen.in(possibleDirections) || chosenWait >= transportMaxWait) {
+                chosen = Direction.randomFrom(possibleDirections, flightRandom);
+                chosenWait = 0;
+            }
+            int next = map.neighbour(cell, chosen);
+            if (corridors.edgeOf(next) != edge) break;
+            direction = chosen;
+            wait = chosenWait;
+            if (flightRandom.nextDouble() < transportMoveProbability) {
+                cell = next;
+            }
+            steps++;
+        }
+        flownCell = cell;
+        flownDirection = direction;
+        flownWait = wait;
+        return ticks;
+    }
+
+    // Досчитывает полёт, ставит сущность на карту и делает активной. Полёт досчитывается по tick включительно,
+    // если в настоящем обходе он уже сходил в этом тике раньше наблюдателя (агенты раньше транспорта,
+    // внутри фазы - по id), иначе по tick - 1. observerKind = null - посадка между тиками, до tick
+    private void land(int id, EntityKind observerKind, int observerId, long tick) {
+        int base = id * STRIDE;
+        int edge = sleepers[base + FLIGHT_EDGE];
+        long throughTick = observerKind != null && movedBefore(id, observerKind, observerId) ? tick : tick - 1;
+        int ticks = (int) throughTick - sleepers[base + FLIGHT_FROM] + 1;
+        int fullTicks = sleepers[base + WAKE_AT] - sleepers[base + FLIGHT_FROM];
+        unlinkFlight(id);
+        sleepers[base + WAKE_AT] = NONE;
+
+        TrafficMember member = entities.get(id);
+        int from = entities.positionOf(member);
+        int to;
+        if (member instanceof Agent agent) {
+            agent.skipFreeSteps(ticks);
+            to = map.index(agent.getCurrentCoords());
+        } else {
+            Transport transport = (Transport) member;
+            if (ticks == fullTicks) {
+                to = sleepers[base + FLIGHT_CELL];
+                transport.setCurrentDirection(Direction.byOrdinal(sleepers[base + FLIGHT_STATE] & 3));
+                transport.setWaitCounter(sleepers[base + FLIGHT_STATE] >>> 2);
+            } else {
+                flyTransport(transport, from, edge, throughTick - ticks + 1, ticks);
+                to = flownCell;
+                transport.setCurrentDirection(flownDirection);
+                transport.setWaitCounter(flownWait);
+            }
+            transport.setStepsCounter(transport.getStepsCounter() + ticks);
+        }
+
+        moveOnMap(member, edge, from, to, observerKind, observerId, tick);
+        activeSet(member.getKind()).set(id);
+    }
+
+    // Клетку запуска агента читают сзади: он переносится в текущую клетку и летит дальше,
+    // иначе посадка ведомого по цепочке сажала бы весь строй. Ещё не сдвинувшийся полёт садится
+    private void catchUp(int id, EntityKind observerKind, int observerId, long tick) {
+        int base = id * STRIDE;
+        long throughTick = observerKind != null && movedBefore(id, observerKind, observerId) ? tick : tick - 1;
+        int ticks = (int) throughTick - sleepers[base + FLIGHT_FROM] + 1;
+        if (ticks <= 0 || !(entities.get(id) instanceof Agent agent)) {
+            land(id, observerKind, observerId, tick);
+            return;
+        }
+        int from = entities.positionOf(agent);
+        agent.skipFreeSteps(ticks);
+        // Фаза при этом не меняется: клетка запуска и первый тик сдвигаются вместе
+        sleepers[base + FLIGHT_FROM] = (int) throughTick + 1;
+        moveOnMap(agent, sleepers[base + FLIGHT_EDGE], from, map.index(agent.getCurrentCoords()), observerKind, observerId, tick);
+    }
+
+    // На карте клетка to может быть ещё занята клеткой запуска полёта, ушедшего дальше
+    private void moveOnMap(TrafficMember member, int edge, int from, int to, EntityKind observerKind, int observerId, long tick) {
+        if (to == from) return;
+        if (map.isOccupied(to)) {
+            int occupant = map.getOccupantId(to);
+            if (!flying.get(occupant)) {
+                throw new IllegalStateException("Corridor flight of " + member.getId() + " lands on occupied cell " + to);
+            }
+            catchUp(occupant, observerKind, observerId, tick);
+        }
+        map.setOccupant(from, null);
+        map.setOccupant(to, member);
+        edgeOccupants[edge]++;
+    }
+
+    // Перед чтением клетки коридора садятся полёты, которые в ней сейчас, и уходит с неё полёт, чья это клетка запуска.
+    // Где летящий транспорт, без проигрыша неизвестно - он садится при чтении любой клетки коридора
+    private void landObserved(int cell, EntityKind observerKind, int observerId, long tick) {
+        if (corridors == null) return;
+        int edge = corridors.edgeOf(cell);
+        if (edge == NONE || edgeFlights[edge] == NONE) return;
+        if (edgeDirections[edge] == 0) {
+            landEdge(edge, observerKind, observerId, tick);
+            return;
+        }
+        int position = corridors.offsetOf(cell) * edgeDirections[edge];
+        int flight = edgeFlights[edge];
+        while (flight != NONE) {
+            int base = flight * STRIDE;
+            // Дальше по списку полёты уже впереди клетки
+            if (sleepers[base + FLIGHT_PHASE] + (int) tick - position > 0) break;
+            long throughTick = movedBefore(flight, observerKind, observerId) ? tick : tick - 1;
+            if (sleepers[base + FLIGHT_PHASE] + (int) throughTick + 1 == position) {
+                land(flight, observerKind, observerId, tick);
+                // Посадка могла посадить и другие полёты ребра
+                flight = edgeFlights[edge];
+            } else {
+                flight = sleepers[base + NEXT_FLIGHT];
+            }
+        }
+        if (map.isOccupied(cell) && flying.get(map.getOccupantId(cell))) {
+            catchUp(map.getOccupantId(cell), observerKind, observerId, tick);
+        }
+    }
+
+    private void landEdge(int edge, EntityKind observerKind, int observerId, long tick) {
+        while (edgeFlights[edge] != NONE) {
+            land(edgeFlights[edge], observerKind, observerId, tick);
+        }
+    }
+
+    // Планировщик читает клетки в радиусе штрафа вокруг агента - перед этим они наблюдаются, как при ходе.
+    // Полёт не покидает своего ребра, поэтому клетки без ребра или ребра без полётов отсекаются сразу,
+    // и цена не зависит от числа полётов на карте
+    private void landNear(Agent agent, long tick) {
+        int x = agent.getCurrentCoords().x();
+        int y = agent.getCurrentCoords().y();
+        int radius = agent.getPlanner().getPenaltyRadius();
+        for (int dx = -radius; dx <= radius; dx++) {
+            if (x + dx < 0 || x + dx >= map.getWidth()) continue;
+            int reach = radius - Math.abs(dx);
+            for (int dy = Math.max(-reach, -y); dy <= reach && y + dy < map.getHeight(); dy++) {
+                landObserved(map.index(x + dx, y + dy), EntityKind.AGENT, agent.getId(), tick);
+            }
+        }
+    }
+
+    private boolean movedBefore(int id, EntityKind observerKind, int observerId) {
+        EntityKind kind = entities.get(id).getKind();
+        return kind == observerKind ? id < observerId : kind == EntityKind.AGENT;
+    }
+
+    private void landAll(long tick) {
+        for (int id = flying.nextSetBit(0); id >= 0; id = flying.nextSetBit(id + 1)) {
+            land(id, null, NONE, tick);
+        }
+    }
+
+    // Списки полётов ребра короткие, поэтому односвязные
+    private void unlinkFlight(int id) {
+        int base = id * STRIDE;
+        int edge = sleepers[base + FLIGHT_EDGE];
+        if (edgeFlights[edge] == id) {
+            edgeFlights[edge] = sleepers[base + NEXT_FLIGHT];
+        } else {
+            int previous = edgeFlights[edge];
+            while (sleepers[previous * STRIDE + NEXT_FLIGHT] != id) {
+                previous = sleepers[previous * STRIDE + NEXT_FLIGHT];
+            }
+            sleepers[previous * STRIDE + NEXT_FLIGHT] = sleepers[base + NEXT_FLIGHT];
+        }
+        edgeFlightCounts[edge]--;
+        if (edgeFlights[edge] == NONE) {
+            edgeDirections[edge] = 0;
+        }
+        sleepers[base + FLIGHT_EDGE] = NONE;
+        flying.clear(id);
+    }
+
+    private void unlinkWaiter(int id) {
+        int base = id * STRIDE;
+        int cell = sleepers[base + WAITING_ON];
+        if (cell == NONE) return;
+        int previous = sleepers[base + PREVIOUS_WAITER];
+        int next = sleepers[base + NEXT_WAITER];
+        if (previous == NONE) {
+            waitersHead[cell] = next;
+            if (next == NONE) {
+                waitedCells.clear(cell);
+            }
+        } else {
+            sleepers[previous * STRIDE + NEXT_WAITER] = next;
+        }
+        if (next != NONE) {
+            sleepers[next * STRIDE + PREVIOUS_WAITER] = previous;
+        }
+        sleepers[base + WAITING_ON] = NONE;
+    }
+
+    private BitSet activeSet(EntityKind kind) {
+        return kind == EntityKind.AGENT ? activeAgents : activeTransports;
+    }
+
+    private void ensureCapacity(int id) {
+        if (id * STRIDE < sleepers.length) return;
+        int from = sleepers.length;
+        sleepers = Arrays.copyOf(sleepers, Math.max((id + 1) * STRIDE, Math.max(64 * STRIDE, from * 2)));
+        for (int base = from; base < sleepers.length; base += STRIDE) {
+            sleepers[base + WAITING_ON] = NONE;
+            sleepers[base + SLEPT_AT] = NONE;
+            sleepers[base + WAKE_AT] = NONE;
+            sleepers[base + FLIGHT_EDGE] = NONE;
+            sleepers[base + GRIDLOCK] = NONE;
+        }
+    }
+
+    private static final class IntBuffer {
+        int[] values = new int[16];
+        int size;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        void clear() {
+            size = 0;
+        }
+    }
+}
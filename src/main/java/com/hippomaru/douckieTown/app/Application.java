@@ -1,22 +1,208 @@
 package com.hippomaru.douckieTown.app;
 
+import com.hippomaru.douckieTown.app.scheduler.SchedulerType;
+import com.hippomaru.douckieTown.metrics.SimulationMetrics;
 import com.hippomaru.douckieTown.model.map.CellGrid;
+import com.hippomaru.douckieTown.replay.EventLogReader;
+import com.hippomaru.douckieTown.replay.EventLogRecorder;
+import com.hippomaru.douckieTown.replay.GridReplay;
+import com.hippomaru.douckieTown.results.TripSink;
+import com.hippomaru.douckieTown.view.LiveViewServer;
+import com.hippomaru.douckieTown.view.SwingVisualizer;
 
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
 import java.util.concurrent.TimeUnit;
 
 public class Application {
     public static void main(String[] args) throws InterruptedException {
-        CellGrid map = new CellGrid("src/main/resources/map_one_agent.txt");
-        CellGrid map3 = new CellGrid("src/main/resources/map_three_agents.txt");
-        CellGrid map5 = new CellGrid("src/main/resources/map_five_agents.txt");
+        boolean headless = Arrays.asList(args).contains("--headless");
+        PlanningMode planningMode = Arrays.asList(args).contains("--cooperative")
+                ? PlanningMode.COOPERATIVE
+                : PlanningMode.INDEPENDENT;
+        SchedulerType schedulerType = Arrays.stream(args)
+                .filter(arg -> arg.startsWith("--scheduler="))
+                .map(arg -> SchedulerType.valueOf(arg.substring("--scheduler=".length()).toUpperCase()))
+                .findFirst()
+                .orElse(SchedulerType.SEQUENTIAL);
 
-        GameManager manager = new GameManager(map5, 10, 0.04);
+        String seedOption = optionValue(args, "--seed=");
+        long seed = seedOption != null ? Long.parseLong(seedOption) : new Random().nextLong();
+        // --regions=<строки>x<столбцы>: параллельный по регионам движок на всех ядрах
+        String regionsOption = optionValue(args, "--regions=");
+        int[] regions = regionsOption != null ? parseRegions(regionsOption) : null;
 
+        String mapFile = optionValue(args, "--map=");
+        CellGrid map = CellGrid.load(Path.of(mapFile != null ? mapFile : "src/main/resources/map_five_agents.txt"));
+
+        String replayFile = optionValue(args, "--replay=");
+        if (replayFile != null) {
+            replay(map, Path.of(replayFile), headless);
+            return;
+        }
+
+        // --resume=<файл>: продолжение прогона из снимка; с --seed - другой прогон из того же состояния
+        String resumeFile = optionValue(args, "--resume=");
+        if (resumeFile != null && planningMode == PlanningMode.COOPERATIVE) {
+            throw new IllegalArgumentException("--resume does not support --cooperative");
+        }
+        GameManager manager;
+        if (resumeFile == null) {
+            manager = new GameManager(map, 10, 0.04, schedulerType.create(), planningMode, seed);
+        } else if (seedOption != null) {
+            manager = GameManager.restore(map, Path.of(resumeFile), schedulerType.create(), seed);
+        } else {
+            manager = GameManager.restore(map, Path.of(resumeFile), schedulerType.create());
+        }
+        if (regions != null) {
+            manager.enableRegionParallelEngine(regions[0], regions[1], Runtime.getRuntime().availableProcessors());
+        }
+        // --active-set: за тик обрабатываются только сущности, которые могут сдвинуться
+        if (Arrays.asList(args).contains("--active-set")) {
+            manager.enableActiveSetEngine();
+        }
+        // --hpa: маршруты агентов строятся иерархическим планировщиком по кластерам карты
+        if (Arrays.asList(args).contains("--hpa")) {
+            manager.enableHierarchicalRouting();
+        }
+        SimulationMetrics metrics = Arrays.asList(args).contains("--metrics") ? manager.enableMetrics() : null;
+        // --fast-forward=<тики>: прогрев без слушателей, запись и просмотр начинаются с его итога;
+        // с --active-set сущности проходят свободные коридоры одним событием
+        String fastForward = optionValue(args, "--fast-forward=");
+        if (fastForward != null) {
+            long start = System.nanoTime();
+            manager.fastForward(Long.parseLong(fastForward));
+            System.out.printf("Fast-forwarded to tick %d in %.3f s%n", manager.getTick(), (System.nanoTime() - start) / 1e9);
+        }
+        String recordFile = optionValue(args, "--record=");
+        EventLogRecorder recorder = recordFile != null ? new EventLogRecorder(Path.of(recordFile)) : null;
+        if (recorder != null) {
+            manager.addTickListener(recorder);
+        }
+        // --trips=<файл>: итог каждой поездки; .dttrips - бинарный поколоночный формат, .csv - CSV
+        String tripsFile = optionValue(args, "--trips=");
+        TripSink trips = tripsFile != null ? TripSink.open(Path.of(tripsFile)) : null;
+        if (trips != null) {
+            manager.addTripSink(trips);
+        }
+        // --live=<порт>: трансляция для браузера на http://localhost:<порт>/
+        String livePort = optionValue(args, "--live=");
+        LiveViewServer liveView = livePort != null ? new LiveViewServer(map, Integer.parseInt(livePort)) : null;
+        if (liveView != null) {
+            manager.addTickListener(liveView);
+            System.out.println("Live view: http://localhost:" + liveView.getPort() + "/");
+        }
+        // --snapshot=<тик>:<файл>: снимок состояния после указанного тика
+        String snapshot = optionValue(args, "--snapshot=");
+        if (snapshot != null) {
+            int separator = snapshot.indexOf(':');
+            long snapshotTick = separator > 0 ? parseTick(snapshot.substring(0, separator)) : -1;
+            if (snapshotTick < 0 || separator == snapshot.length() - 1) {
+                exitWithUsage("--snapshot=<tick>:<file>, got --snapshot=" + snapshot);
+            }
+            Path snapshotFile = Path.of(snapshot.substring(separator + 1));
+            manager.addTickListener(current -> {
+                if (current.getTick() == snapshotTick) {
+                    current.writeSnapshot(snapshotFile);
+                }
+            });
+        }
+
+        if (headless) {
+            runAtMaxSpeed(manager);
+        } else {
+            manager.addTickListener(new SwingVisualizer(map));
+            while (!manager.isFinished()) {
+                manager.doStep();
+                TimeUnit.MILLISECONDS.sleep(100);
+            }
+        }
+        manager.close();
+        if (recorder != null) {
+            recorder.close();
+        }
+        if (trips != null) {
+            trips.close();
+        }
+        if (liveView != null) {
+            liveView.close();
+        }
+        System.out.println(manager.getTripStatistics().getSummary());
+        if (metrics != null) {
+            System.out.println(metrics.getSummary());
+        }
+    }
+
+    private static String optionValue(String[] args, String prefix) {
+        return Arrays.stream(args)
+                .filter(arg -> arg.startsWith(prefix))
+                .map(arg -> arg.substring(prefix.length()))
+                .findFirst()
+                .orElse(null);
+    }
+
+    private static int[] parseRegions(String value) {
+        String[] parts = value.split("x", -1);
+        if (parts.length == 2) {
+            try {
+                int rows = Integer.parseInt(parts[0]);
+                int columns = Integer.parseInt(parts[1]);
+                if (rows > 0 && columns > 0) {
+                    return new int[]{rows, columns};
+                }
+            } catch (NumberFormatException ignored) {
+                // ниже - подсказка
+            }
+        }
+        exitWithUsage("--regions=<rows>x<columns> with positive numbers, got --regions=" + value);
+        return null;
+    }
+
+    // -1 - не число
+    private static long parseTick(String value) {
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static void exitWithUsage(String message) {
+        System.err.println("Usage: " + message);
+        System.exit(2);
+    }
+
+    // Воспроизведение записанного журнала: без окна - с максимальной скоростью
+    private static void replay(CellGrid map, Path file, boolean headless) throws InterruptedException {
+        try (EventLogReader reader = new EventLogReader(file)) {
+            GridReplay replay = new GridReplay(map, reader);
+            if (headless) {
+                long start = System.nanoTime();
+                long ticks = 0;
+                while (replay.step()) {
+                    ticks++;
+                }
+                double seconds = (System.nanoTime() - start) / 1e9;
+                System.out.printf("Replayed seed %d: %d ticks, time: %.3f s, %.1f ticks/sec%n",
+                        reader.getSeed(), ticks, seconds, ticks / seconds);
+                return;
+            }
+            SwingVisualizer visualizer = new SwingVisualizer(map);
+            while (replay.step()) {
+                visualizer.refresh();
+                TimeUnit.MILLISECONDS.sleep(100);
+            }
+        }
+    }
+
+    private static void runAtMaxSpeed(GameManager manager) {
+        long start = System.nanoTime();
         while (!manager.isFinished()) {
             manager.doStep();
-            TimeUnit.MILLISECONDS.sleep(100);
-        };
-        var successfulAgents = manager.getSuccessfulAgents();
-        successfulAgents.forEach(System.out::println);
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("Seed: %d, ticks: %d, time: %.3f s, %.1f ticks/sec%n",
+                manager.getSeed(), manager.getTick(), seconds, manager.getTick() / seconds);
     }
 }
@@ -0,0 +1,147 @@
+package com.hippomaru.douckieTown.app;
+
+import com.hippomaru.douckieTown.app.scheduler.SequentialAgentScheduler;
+import com.hippomaru.douckieTown.metrics.SimulationMetrics;
+import com.hippomaru.douckieTown.model.map.CellGrid;
+import com.hippomaru.douckieTown.model.map.MapRegistry;
+import com.hippomaru.douckieTown.model.map.MapTopology;
+import com.hippomaru.douckieTown.results.TripStatistics;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Пакетный прогон независимых headless-симуляций по сетке параметров на всех ядрах.
+// Каждая карта разбирается один раз в MapRegistry, прогоны делят её MapTopology и держат только свою занятость.
+// Результаты пишутся по мере завершения: .csv - CSV, иначе JSON Lines.
+// Аргументы:
+//   --maps=<файл>[,<файл>...]  --seeds=<n> | <from>..<to>  --max-agents=<n>[,...]
+//   --spawn=<p>[,...]  --threads=<n>  --max-ticks=<n>  --out=<файл>
+public class BatchRunner {
+    private static final String CSV_HEADER = "map,seed,maxAgents,transportSpawnProbability,ticks,finished,"
+            + "delivered,meanTripSteps,p99TripSteps,blockedAgentMoves,blockedTransportMoves,seconds";
+
+    record RunSpec(String mapName, MapTopology topology, long seed, int maxAgents, double transportSpawnProbability) {
+    }
+
+    record RunResult(RunSpec spec, long ticks, boolean finished, int delivered, double meanTripSteps,
+                     int p99TripSteps, long blockedAgentMoves, long blockedTransportMoves, double seconds) {
+
+        String toCsv() {
+            return String.format(Locale.ROOT, "%s,%d,%d,%s,%d,%b,%d,%.2f,%d,%d,%d,%.3f",
+                    spec.mapName(), spec.seed(), spec.maxAgents(), spec.transportSpawnProbability(), ticks,
+                    finished, delivered, meanTripSteps, p99TripSteps, blockedAgentMoves, blockedTransportMoves,
+                    seconds);
+        }
+
+        String toJson() {
+            return String.format(Locale.ROOT, "{\"map\":\"%s\",\"seed\":%d,\"maxAgents\":%d,"
+                            + "\"transportSpawnProbability\":%s,\"ticks\":%d,\"finished\":%b,\"delivered\":%d,"
+                            + "\"meanTripSteps\":%.2f,\"p99TripSteps\":%d,\"blockedAgentMoves\":%d,"
+                            + "\"blockedTransportMoves\":%d,\"seconds\":%.3f}",
+                    spec.mapName().replace("\\", "\\\\").replace("\"", "\\\""), spec.seed(), spec.maxAgents(),
+                    spec.transportSpawnProbability(), ticks, finished, delivered, meanTripSteps, p99TripSteps,
+                    blockedAgentMoves, blockedTransportMoves, seconds);
+        }
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        Map<String, String> options = ToolOptions.parse(args);
+        List<String> mapFiles = List.of(options.getOrDefault("maps", "src/main/resources/map_five_agents.txt").split(","));
+        long[] seeds = parseSeeds(options.getOrDefault("seeds", "10"));
+        int[] maxAgents = Arrays.stream(options.getOrDefault("max-agents", "10").split(","))
+                .mapToInt(Integer::parseInt).toArray();
+        double[] spawnProbabilities = Arrays.stream(options.getOrDefault("spawn", "0.04").split(","))
+                .mapToDouble(Double::parseDouble).toArray();
+        int threads = Integer.parseInt(options.getOrDefault("threads",
+                String.valueOf(Runtime.getRuntime().availableProcessors())));
+        long maxTicks = Long.parseLong(options.getOrDefault("max-ticks", "100000"));
+        Path out = Path.of(options.getOrDefault("out", "batch-results.csv"));
+
+        List<RunSpec> specs = new ArrayList<>();
+        for (String mapFile : mapFiles) {
+            MapTopology topology = MapRegistry.topology(Path.of(mapFile));
+            // Поле расстояний строится один раз до старта потоков
+            topology.getFinishDistanceField();
+            for (int agents : maxAgents) {
+                for (double probability : spawnProbabilities) {
+                    for (long seed : seeds) {
+                        specs.add(new RunSpec(mapFile, topology, seed, agents, probability));
+                    }
+                }
+            }
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        ExecutorCompletionService<RunResult> completion = new ExecutorCompletionService<>(executor);
+        boolean csv = out.getFileName().toString().endsWith(".csv");
+        long start = System.nanoTime();
+        try (BufferedWriter writer = Files.newBufferedWriter(out)) {
+            for (RunSpec spec : specs) {
+                completion.submit(() -> run(spec, maxTicks));
+            }
+            if (csv) {
+                writer.write(CSV_HEADER);
+                writer.newLine();
+            }
+            for (int i = 0; i < specs.size(); i++) {
+                RunResult result = completion.take().get();
+                writer.write(csv ? result.toCsv() : result.toJson());
+                writer.newLine();
+                // Частичные результаты видны, пока пакет ещё идёт
+                writer.flush();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write results: " + out, e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Simulation run failed", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf(Locale.ROOT, "Runs: %d, threads: %d, time: %.3f s, %.2f runs/sec, results: %s%n",
+                specs.size(), threads, seconds, specs.size() / seconds, out);
+    }
+
+    static RunResult run(RunSpec spec, long maxTicks) {
+        long start = System.nanoTime();
+        try (GameManager manager = new GameManager(new CellGrid(spec.topology()), spec.maxAgents(),
+                spec.transportSpawnProbability(), new SequentialAgentScheduler(), PlanningMode.INDEPENDENT,
+                spec.seed())) {
+            SimulationMetrics metrics = manager.enableMetrics(false);
+            while (!manager.isFinished() && manager.getTick() < maxTicks) {
+                manager.doStep();
+            }
+
+            TripStatistics trips = manager.getTripStatistics();
+            return new RunResult(spec, manager.getTick(), manager.isFinished(), (int) trips.getCount(),
+                    trips.getMeanSteps(), trips.getStepsPercentile(99),
+                    metrics.getBlockedAgentMoves(), metrics.getBlockedTransportMoves(),
+                    (System.nanoTime() - start) / 1e9);
+        }
+    }
+
+    // "n" - seed 0..n-1, "from..to" - включительно
+    private static long[] parseSeeds(String value) {
+        int range = value.indexOf("..");
+        long from = range < 0 ? 0 : Long.parseLong(value.substring(0, range));
+        long to = range < 0 ? Long.parseLong(value) - 1 : Long.parseLong(value.substring(range + 2));
+        long[] seeds = new long[(int) (to - from + 1)];
+        for (int i = 0; i < seeds.length; i++) {
+            seeds[i] = from + i;
+        }
+        return seeds;
+    }
+}
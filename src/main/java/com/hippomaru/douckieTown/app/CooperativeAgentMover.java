@@ -0,0 +1,100 @@
+package com.hippomaru.douckieTown.app;
+
+import com.hippomaru.douckieTown.model.interactive.Agent;
+import com.hippomaru.douckieTown.model.map.CellGrid;
+import com.hippomaru.douckieTown.model.map.Coords;
+import com.hippomaru.douckieTown.model.routing.ReservationTable;
+import com.hippomaru.douckieTown.model.routing.SpaceTimePlanner;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Кооперативное движение агентов: планирование по резервациям в порядке спавна,
+// затем разрешение ходов так, чтобы освобождающиеся клетки занимались в том же тике
+public class CooperativeAgentMover {
+    private final CellGrid map;
+    private final ReservationTable reservations = new ReservationTable();
+    private final SpaceTimePlanner planner;
+    private final int replanInterval;
+    private final Map<Agent, Long> planTicks = new IdentityHashMap<>();
+    private final List<Agent> toPlan = new ArrayList<>();
+    private final List<Agent> pending = new ArrayList<>();
+
+    public CooperativeAgentMover(CellGrid map) {
+        this.map = map;
+        this.planner = new SpaceTimePlanner(map, reservations);
+        this.replanInterval = Math.max(1, planner.getWindow() / 2);
+    }
+
+    public void moveAgents(List<Agent> agents, long tick) {
+        synchronized (map) {
+            toPlan.clear();
+            for (Agent agent : agents) {
+                if (needsPlan(agent)) {
+                    forget(agent);
+                    // Текущую клетку держим сразу, чтобы агенты с большим приоритетом не считали её занятой транспортом
+                    reservations.reserve(map.index(agent.getCurrentCoords()), tick, agent.getId());
+                    toPlan.add(agent);
+                }
+            }
+            for (Agent agent : toPlan) {
+                plan(agent, tick);
+            }
+            resolveMoves(agents);
+        }
+    }
+
+    public void forget(Agent agent) {
+        Long planTick = planTicks.remove(agent);
+        if (planTick != null) {
+            planner.release(agent.getChosenRoute(), planTick, agent.getId());
+        }
+    }
+
+    private boolean needsPlan(Agent agent) {
+        return !planTicks.containsKey(agent)
+                || agent.getBlockedTicks() > 0
+                || agent.getRouteCursor() >= replanInterval
+                || agent.getNextCoords() == null;
+    }
+
+    private void plan(Agent agent, long tick) {
+        Coords current = agent.getCurrentCoords();
+        Coords[] route = planner.plan(current, agent.getId(), tick);
+        if (route == null) {
+            reservations.release(map.index(current), tick, agent.getId());
+            route = new Coords[]{current};
+        } else {
+            planTicks.put(agent, tick);
+        }
+        agent.setChosenRoute(route);
+        agent.setRouteCursor(0);
+        agent.setBlockedTicks(0);
+    }
+
+    // Повторяем проходы, пока кто-то сдвинулся: агент за уходящим соседом тоже успевает сделать шаг
+    private void resolveMoves(List<Agent> agents) {
+        pending.clear();
+        pending.addAll(agents);
+        boolean progress = true;
+        while (progress && !pending.isEmpty()) {
+            progress = false;
+            int kept = 0;
+            for (Agent agent : pending) {
+                Coords next = agent.getNextCoords();
+                if (next == null || next.equals(agent.getCurrentCoords()) || !map.isOccupied(map.index(next))) {
+                    agent.step();
+                    progress = true;
+                } else {
+                    pending.set(kept++, agent);
+                }
+            }
+            pending.subList(kept, pending.size()).clear();
+        }
+        for (Agent agent : pending) {
+            agent.step();
+        }
+    }
+}
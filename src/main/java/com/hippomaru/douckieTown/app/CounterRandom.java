@@ -0,0 +1,34 @@
+package com.hippomaru.douckieTown.app;
+
+import java.util.random.RandomGenerator;
+
+// Генератор, состояние которого задаётся ключом (seed, тик, сущность).
+// Последовательность для сущности не зависит от того, каким потоком и в каком порядке её обрабатывают.
+final class CounterRandom implements RandomGenerator {
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+
+    private final long seed;
+    private long state;
+
+    CounterRandom(long seed) {
+        this.seed = seed;
+    }
+
+    CounterRandom reset(long tick, int id) {
+        state = mix(seed ^ mix(tick * GOLDEN_GAMMA + id));
+        return this;
+    }
+
+    @Override
+    public long nextLong() {
+        state += GOLDEN_GAMMA;
+        return mix(state);
+    }
+
+    // Финализатор SplitMix64
+    static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
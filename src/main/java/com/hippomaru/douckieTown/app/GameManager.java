@@ -1,25 +1,33 @@
 package com.hippomaru.douckieTown.app;
 
+import com.hippomaru.douckieTown.app.scheduler.AgentScheduler;
+import com.hippomaru.douckieTown.app.scheduler.SequentialAgentScheduler;
 import com.hippomaru.douckieTown.model.interactive.Agent;
 import com.hippomaru.douckieTown.model.interactive.Direction;
-import com.hippomaru.douckieTown.model.interactive.TrafficMember;
+import com.hippomaru.douckieTown.model.interactive.EntityKind;
 import com.hippomaru.douckieTown.model.map.Coords;
 import com.hippomaru.douckieTown.model.interactive.Transport;
-import com.hippomaru.douckieTown.model.map.Cell;
 import com.hippomaru.douckieTown.model.map.CellGrid;
 import com.hippomaru.douckieTown.model.map.CellType;
+import com.hippomaru.douckieTown.model.map.EntityRegistry;
+import com.hippomaru.douckieTown.metrics.SimulationMetrics;
+import com.hippomaru.douckieTown.metrics.TickPhase;
+import com.hippomaru.douckieTown.model.routing.CongestionAwarePlanner;
+import com.hippomaru.douckieTown.model.routing.HierarchicalPlanner;
+import com.hippomaru.douckieTown.results.TripRecord;
+import com.hippomaru.douckieTown.results.TripSink;
+import com.hippomaru.douckieTown.results.TripStatistics;
 import lombok.Getter;
 import lombok.Setter;
 
-import javax.swing.*;
-import java.awt.*;
+import java.nio.file.Path;
 import java.util.*;
 import java.util.List;
 import java.util.concurrent.*;
 
 @Getter
 @Setter
-public class GameManager {
+public class GameManager implements AutoCloseable {
 
     private final double TRANSPORT_SPAWN_PROBABILITY;
     private final static double TRANSPORT_MOVE_PROBABILITY = 0.7;
@@ -27,25 +35,72 @@ public class GameManager {
     private final int MAX_AGENTS;
     private final static int RESPAWN_COUNTER  = 7;
 
-    private List<Agent> successfulAgents = new ArrayList<>();
     private final CellGrid map;
     private final Map<CellType, List<Coords>> CELL_TYPES_COORDS;
-    private final Map<String, List<Coords>> TRAFFIC_MEMBER_COORDS;
-    private final Random random = new Random();
+    private final EntityRegistry entities;
+    // Каждая подсистема получает свой поток случайности из seed: изменение расхода
+    // случайных чисел в одной из них не сдвигает последовательности остальных
+    private final long seed;
+    private final SplitMixRandom spawnRandom;
+    private final long engineSeed;
 
     private List<Agent> agents = Collections.synchronizedList(new ArrayList<>());
+    private final List<Agent> agentsBuffer = new ArrayList<>();
 
     private int spawn_tick = 0;
     private int agents_counter = 0;
 
-    private JFrame frame;
-    private MapPanel mapPanel;
-    private static final int CELL_SIZE = 20;
+    private final AgentScheduler scheduler;
+    private final CongestionAwarePlanner planner;
+    private final CooperativeAgentMover cooperativeMover;
+    // Одна область с ходами от планировщика; --regions лишь делит ту же работу на части
+    private final RegionParallelEngine defaultEngine;
+    private RegionParallelEngine parallelEngine;
+    private ActiveSetEngine activeSetEngine;
+    private HierarchicalPlanner hierarchicalPlanner;
+    private HierarchicalPlanner.Destination finishDestination;
+    private long tick = 0;
+    private SimulationMetrics metrics;
+    private long lockWaitNanos;
+    private final List<TickListener> listeners = new CopyOnWriteArrayList<>();
+    // Доставленные агенты не хранятся: при деспавне остаётся только запись о поездке
+    private final TripStatistics tripStatistics = new TripStatistics();
+    private final List<TripSink> tripSinks = new CopyOnWriteArrayList<>();
 
     public GameManager(CellGrid map, int maxAgents, double transportSpawnProbability){
+        this(map, maxAgents, transportSpawnProbability, new SequentialAgentScheduler(), PlanningMode.INDEPENDENT);
+    }
+
+    public GameManager(CellGrid map, int maxAgents, double transportSpawnProbability, AgentScheduler scheduler){
+        this(map, maxAgents, transportSpawnProbability, scheduler, PlanningMode.INDEPENDENT);
+    }
+
+    public GameManager(CellGrid map, int maxAgents, double transportSpawnProbability,
+                       AgentScheduler scheduler, PlanningMode planningMode){
+        this(map, maxAgents, transportSpawnProbability, scheduler, planningMode, new SplittableRandom().nextLong());
+    }
+
+    public GameManager(CellGrid map, int maxAgents, double transportSpawnProbability,
+                       AgentScheduler scheduler, PlanningMode planningMode, long seed){
+        this(map, maxAgents, transportSpawnProbability, scheduler, planningMode, seed, true);
+    }
+
+    // Без начального спавна: состояние заполняет SimulationSnapshot
+    GameManager(CellGrid map, int maxAgents, double transportSpawnProbability,
+                AgentScheduler scheduler, PlanningMode planningMode, long seed, boolean spawnInitial){
+        this.seed = seed;
+        SplittableRandom root = new SplittableRandom(seed);
+        this.spawnRandom = new SplitMixRandom(root.nextLong());
+        this.engineSeed = root.nextLong();
+        this.scheduler = scheduler;
         this.TRANSPORT_SPAWN_PROBABILITY = transportSpawnProbability;
         this.MAX_AGENTS = maxAgents;
         this.map = map;
+        this.entities = map.getEntities();
+        this.planner = planningMode == PlanningMode.INDEPENDENT ? new CongestionAwarePlanner(map) : null;
+        this.cooperativeMover = planningMode == PlanningMode.COOPERATIVE ? new CooperativeAgentMover(map) : null;
+        this.defaultEngine = new RegionParallelEngine(map, scheduler, engineSeed,
+                TRANSPORT_MOVE_PROBABILITY, TRANSPORT_MAX_WAIT);
 
         // Инициализация карт с изменяемыми списками
         CELL_TYPES_COORDS = new EnumMap<>(CellType.class);
@@ -53,117 +108,257 @@ public class GameManager {
             CELL_TYPES_COORDS.put(type, new ArrayList<>());
         }
 
-        TRAFFIC_MEMBER_COORDS = new HashMap<>();
-        TRAFFIC_MEMBER_COORDS.put("TRANSPORT", new ArrayList<>());
-        TRAFFIC_MEMBER_COORDS.put("AGENTS_ON_INIT", new ArrayList<>());
-
         // Заполнение координат
         for (int x = 0; x < map.getWidth(); x++) {
             for (int y = 0; y < map.getHeight(); y++) {
-                Cell cell = map.getGrid()[x][y];
-                CELL_TYPES_COORDS.get(cell.getCellType()).add(cell.getCoords());
+                CELL_TYPES_COORDS.get(map.getCellType(x, y)).add(new Coords(x, y));
             }
         }
 
-        // Инициализация графического интерфейса
-        initGUI();
-
-        spawnAgents();
-        spawnTransport();
-        updateVisualization(); // Первоначальная отрисовка
+        if (spawnInitial) {
+            spawnAgents(tick);
+            spawnTransport();
+        }
     }
 
-    private void initGUI() {
-        frame = new JFrame("Douckie Town Simulation");
-        frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+    // Восстанавливает симуляцию из снимка на карте без сущностей и продолжает её с того же места:
+    // seed, генераторы, движок и HPA берутся из снимка
+    public static GameManager restore(CellGrid map, Path snapshot, AgentScheduler scheduler) {
+        return SimulationSnapshot.read(map, snapshot, scheduler, false, 0);
+    }
 
-        mapPanel = new MapPanel();
-        mapPanel.setPreferredSize(new Dimension(
-                (int) map.getHeight() * CELL_SIZE,
-                (int) map.getWidth() * CELL_SIZE
-        ));
+    // То же состояние, но дальнейшая случайность - от нового seed: из одного снимка расходятся разные прогоны
+    public static GameManager restore(CellGrid map, Path snapshot, AgentScheduler scheduler, long seed) {
+        return SimulationSnapshot.read(map, snapshot, scheduler, true, seed);
+    }
 
-        frame.add(mapPanel);
-        frame.pack();
-        frame.setLocationRelativeTo(null);
-        frame.setVisible(true);
+    // Пишет динамическое состояние между тиками: агентов, транспорт, счётчики и генераторы
+    public void writeSnapshot(Path snapshot) {
+        if (cooperativeMover != null) {
+            throw new IllegalStateException("Snapshots do not support cooperative planning");
+        }
+        if (activeSetEngine != null) {
+            activeSetEngine.settle(tick, metrics);
+        }
+        // Снимок хранит маршрут целиком: недостроенные участки HPA* в него не попадают
+        if (hierarchicalPlanner != null) {
+            synchronized (agents) {
+                agents.forEach(Agent::refineRemainingRoute);
+            }
+        }
+        SimulationSnapshot.write(this, snapshot);
     }
 
     public void doStep() {
+        advance();
+        notifyListeners();
+    }
+
+    // Перемотка на ticks тиков (или до завершения) без промежуточных уведомлений слушателей.
+    // На активном наборе идёт с полётами по коридорам CorridorGraph: сущность, одна на коридоре,
+    // проходит его одним событием и досчитывается, когда на её коридор кто-то смотрит.
+    // Результат тот же, что у ticks вызовов doStep. Остальные движки разрешают конфликты иначе,
+    // чем активный набор, поэтому с ними перемотка - обычные шаги своим движком, только без уведомлений
+    public void fastForward(long ticks) {
+        if (activeSetEngine == null) {
+            advance(ticks);
+            notifyListeners();
+            return;
+        }
+        activeSetEngine.enableCorridorFlights(map.getTopology().getCorridorGraph());
+        try {
+            advance(ticks);
+        } finally {
+            activeSetEngine.disableCorridorFlights(tick);
+        }
+        notifyListeners();
+    }
+
+    private void advance(long ticks) {
+        for (long i = 0; i < ticks && !isFinished(); i++) {
+            advance();
+        }
+    }
+
+    private void advance() {
+        long start = System.nanoTime();
+        long mark = start;
         despawnAgents();
+        mark = recordPhase(TickPhase.DESPAWN_AGENTS, mark);
         despawnTransport();
+        mark = recordPhase(TickPhase.DESPAWN_TRANSPORT, mark);
         moveAgents();
+        mark = recordPhase(TickPhase.MOVE_AGENTS, mark);
         moveTransport();
+        mark = recordPhase(TickPhase.MOVE_TRANSPORT, mark);
 
         spawn_tick++;
         if (spawn_tick % RESPAWN_COUNTER == 0) {
-            spawnAgents();
+            // Появившиеся в конце тика агенты видны с состояния следующего тика
+            spawnAgents(tick + 1);
             spawn_tick = 0;
         }
+        mark = recordPhase(TickPhase.SPAWN_AGENTS, mark);
 
         spawnTransport();
-        updateVisualization();
+        recordPhase(TickPhase.SPAWN_TRANSPORT, mark);
+        tick++;
+        if (metrics != null) {
+            metrics.recordTick(tick, System.nanoTime() - start, agents.size(), entities.count(EntityKind.TRANSPORT));
+        }
     }
 
-    private void updateVisualization() {
-        mapPanel.repaint();
+    // Включает сбор метрик: JFR-события на каждый тик и MBean в платформенном MBeanServer
+    public SimulationMetrics enableMetrics() {
+        return enableMetrics(true);
     }
 
-    // Внутренний класс для отрисовки карты
-    private class MapPanel extends JPanel {
-        @Override
-        protected void paintComponent(Graphics g) {
-            super.paintComponent(g);
-            synchronized (map) {
-                drawMap(g);
+    // Без MBean - для пакетных прогонов, где счётчики читаются напрямую
+    public SimulationMetrics enableMetrics(boolean registerMBean) {
+        if (metrics == null) {
+            metrics = new SimulationMetrics();
+            if (registerMBean) {
+                metrics.register();
+            }
+            synchronized (agents) {
+                agents.forEach(agent -> agent.setMetrics(metrics));
             }
         }
+        return metrics;
+    }
 
-        private void drawMap(Graphics g) {
-            // Отрисовка фона ячеек
-            for (int x = 0; x < map.getWidth(); x++) {
-                for (int y = 0; y < map.getHeight(); y++) {
-                    Cell cell = map.getGrid()[x][y];
-                    drawCellBackground(g, cell, x, y);
+    // Переводит движение на параллельный по регионам движок; результат зависит только от seed
+    public void enableRegionParallelEngine(int regionRows, int regionColumns, int parallelism) {
+        if (cooperativeMover != null) {
+            throw new IllegalStateException("Region parallel engine does not support cooperative planning");
+        }
+        disableActiveSetEngine();
+        if (parallelEngine != null) {
+            parallelEngine.close();
+        }
+        parallelEngine = new RegionParallelEngine(map, regionRows, regionColumns, parallelism, engineSeed,
+                TRANSPORT_MOVE_PROBABILITY, TRANSPORT_MAX_WAIT);
+    }
 
-                    // Отрисовка сущностей
-                    if (cell.getCarriedEntity() != null) {
-                        drawEntity(g, cell.getCarriedEntity(), x, y);
-                    }
+    // Переводит движение на активный набор: заблокированные сущности спят до освобождения клетки
+    public void enableActiveSetEngine() {
+        if (cooperativeMover != null) {
+            throw new IllegalStateException("Active set engine does not support cooperative planning");
+        }
+        if (parallelEngine != null) {
+            parallelEngine.close();
+            parallelEngine = null;
+        }
+        if (activeSetEngine == null) {
+            activeSetEngine = new ActiveSetEngine(map, engineSeed, TRANSPORT_MOVE_PROBABILITY, TRANSPORT_MAX_WAIT);
+        }
+    }
+
+    // Начальные маршруты новых агентов строятся HPA* по общему графу входов кластеров
+    public void enableHierarchicalRouting() {
+        enableHierarchicalRouting(new HierarchicalPlanner(map.getTopology()));
+    }
+
+    // Планировщик можно разделить между симуляциями на одной топологии
+    public void enableHierarchicalRouting(HierarchicalPlanner hierarchicalPlanner) {
+        if (cooperativeMover != null) {
+            throw new IllegalStateException("Hierarchical routing does not support cooperative planning");
+        }
+        if (hierarchicalPlanner.getMap() != map.getTopology()) {
+            throw new IllegalArgumentException("Planner is built for another map");
+        }
+        this.hierarchicalPlanner = hierarchicalPlanner;
+        this.finishDestination = hierarchicalPlanner.destination(CellType.FINISH);
+        if (activeSetEngine != null) {
+            activeSetEngine.wakeGridlocked();
+        }
+        // Агенты начального спавна ещё не сделали ни шага - перестраиваем и их;
+        // остальные переходят на HPA* при следующем перепланировании
+        synchronized (agents) {
+            for (Agent agent : agents) {
+                agent.setDestination(finishDestination);
+                if (agent.getStepsCounter() == 0) {
+                    agent.followPath(hierarchicalPlanner.plan(agent.getCurrentCoords(), finishDestination));
                 }
             }
         }
+    }
+
+    private void disableActiveSetEngine() {
+        if (activeSetEngine != null) {
+            activeSetEngine.settle(tick, metrics);
+            activeSetEngine.close();
+            activeSetEngine = null;
+        }
+    }
 
-        private void drawCellBackground(Graphics g, Cell cell, int x, int y) {
-            Color color = switch (cell.getCellType()) {
-                case WALL -> Color.GREEN;
-                case AGENT_SPAWN -> Color.DARK_GRAY;
-                case ROAD -> Color.LIGHT_GRAY;
-                case FINISH -> Color.BLUE;
-                case TRANSPORT_SPAWN -> new Color(139, 69, 19); // Коричневый
-                default -> Color.WHITE;
-            };
+    private long recordPhase(TickPhase phase, long since) {
+        if (metrics == null) return since;
+        long now = System.nanoTime();
+        metrics.recordPhase(phase, now - since);
+        return now;
+    }
 
-            g.setColor(color);
-            g.fillRect(y * CELL_SIZE, x * CELL_SIZE, CELL_SIZE, CELL_SIZE);
+    private long lockRequested() {
+        return metrics == null ? 0 : System.nanoTime();
+    }
+
+    private long lockAcquired(long requested) {
+        if (metrics == null) return 0;
+        long now = System.nanoTime();
+        lockWaitNanos = now - requested;
+        return now;
+    }
+
+    private void lockReleased(long acquired) {
+        if (metrics != null) {
+            metrics.recordMapLock(lockWaitNanos, System.nanoTime() - acquired);
         }
+    }
 
-        private void drawEntity(Graphics g, TrafficMember entity, int x, int y) {
-            if (entity instanceof Agent) {
-                g.setColor(Color.BLACK);
-            } else if (entity instanceof Transport) {
-                g.setColor(Color.YELLOW);
-            } else {
-                return;
-            }
+    public void addTickListener(TickListener listener) {
+        listeners.add(listener);
+        listener.onTick(this);
+    }
+
+    public void removeTickListener(TickListener listener) {
+        listeners.remove(listener);
+    }
 
-            // Отрисовка круга (сущности)
-            g.fillOval(
-                    y * CELL_SIZE,
-                    x * CELL_SIZE,
-                    CELL_SIZE,
-                    CELL_SIZE
-            );
+    // Sink получает поездки, завершённые после подключения; закрывает его вызывающий
+    public void addTripSink(TripSink sink) {
+        tripSinks.add(sink);
+    }
+
+    public void removeTripSink(TripSink sink) {
+        tripSinks.remove(sink);
+    }
+
+    private void recordTrip(Agent agent) {
+        TripRecord trip = new TripRecord(agent.getSpawnTick(), tick, agent.getStepsCounter(),
+                agent.getBlockedStepsCounter(), agent.getSuccessStepsCounter(), agent.getReplansCounter());
+        tripStatistics.accept(trip);
+        for (TripSink sink : tripSinks) {
+            sink.accept(trip);
+        }
+    }
+
+    private void notifyListeners() {
+        for (TickListener listener : listeners) {
+            listener.onTick(this);
+        }
+    }
+
+    @Override
+    public void close() {
+        scheduler.close();
+        disableActiveSetEngine();
+        if (parallelEngine != null) {
+            parallelEngine.close();
+        }
+        defaultEngine.close();
+        if (metrics != null) {
+            metrics.unregister();
         }
     }
 
@@ -171,151 +366,140 @@ public class GameManager {
         return agents.isEmpty() && agents_counter >= MAX_AGENTS;
     }
 
-    private void spawnAgents(){
+    // spawnTick - номер состояния, в котором агент впервые на карте; тик финиша считается так же,
+    // поэтому длительность поездки совпадает с числом её шагов
+    void spawnAgents(long spawnTick){
+        long requested = lockRequested();
         synchronized (map) {
+            long acquired = lockAcquired(requested);
             for (Coords coords : CELL_TYPES_COORDS.get(CellType.AGENT_SPAWN)) {
                 if (agents_counter >= MAX_AGENTS) break;
-                Cell cell = map.getGrid()[coords.x()][coords.y()];
-                if (cell.getCarriedEntity() != null) continue;
+                if (map.isOccupied(map.index(coords))) continue;
                 Agent agent = new Agent();
                 agent.setCurrentDirection(Direction.UP);
                 agent.setCurrentCoords(coords);
                 agent.setMap(map);
-                agent.analyzeMap(map, coords, CELL_TYPES_COORDS.get(CellType.FINISH));
-                cell.setCarriedEntity(agent);
-                TRAFFIC_MEMBER_COORDS.get("AGENTS_ON_INIT").add(coords);
+                agent.setPlanner(planner);
+                agent.setMetrics(metrics);
+                agent.setSpawnTick(spawnTick);
+                agent.setDestination(finishDestination);
+                if (hierarchicalPlanner != null) {
+                    agent.followPath(hierarchicalPlanner.plan(coords, finishDestination));
+                } else {
+                    agent.analyzeMap(map, coords);
+                }
+                map.setOccupant(coords, agent);
+                if (activeSetEngine != null) {
+                    activeSetEngine.track(agent);
+                }
 
-                // Запуск потока агента
-                Thread agentThread = new Thread(agent);
-                agentThread.start();
                 agents.add(agent);
+                scheduler.onSpawn(agent);
 
                 agents_counter++;
             }
+            lockReleased(acquired);
         }
     }
 
-    private void spawnTransport(){
+    void spawnTransport(){
+        long requested = lockRequested();
         synchronized (map) {
+            long acquired = lockAcquired(requested);
             for (Coords coords : CELL_TYPES_COORDS.get(CellType.TRANSPORT_SPAWN)) {
-                Cell cell = map.getGrid()[coords.x()][coords.y()];
-                if (cell.getCarriedEntity() == null &&
-                        random.nextDouble() < TRANSPORT_SPAWN_PROBABILITY) {
-                    Transport transport = new Transport();
-                    List<Direction> possibleDirections = getPossibleDirections(coords);
-                    transport.chooseDirection(possibleDirections);
-                    cell.setCarriedEntity(transport);
-                    TRAFFIC_MEMBER_COORDS.get("TRANSPORT").add(coords);
+                int index = map.index(coords);
+                int possibleDirections = map.getPassableDirections(index);
+                if (!map.isOccupied(index) && possibleDirections != 0 &&
+                        spawnRandom.nextDouble() < TRANSPORT_SPAWN_PROBABILITY) {
+                    int stepsCount = Transport.randomStepsCount(spawnRandom);
+                    Transport transport = map.getTransports().spawn(stepsCount,
+                            Direction.randomFrom(possibleDirections, spawnRandom));
+                    map.setOccupant(index, transport);
+                    if (activeSetEngine != null) {
+                        activeSetEngine.track(transport);
+                    }
                 }
             }
+            lockReleased(acquired);
         }
     }
 
-    private void despawnAgents(){
+    void despawnAgents(){
+        long requested = lockRequested();
         synchronized (map) {
+            long acquired = lockAcquired(requested);
             for (Coords coords : CELL_TYPES_COORDS.get(CellType.FINISH)) {
-                Cell cell = map.getGrid()[coords.x()][coords.y()];
-                if (cell.getCarriedEntity() instanceof Agent agent) {
-                    successfulAgents.add(agent);
-                    cell.setCarriedEntity(null);
-                    TRAFFIC_MEMBER_COORDS.get("AGENTS_ON_INIT").remove(coords);
-
-                    // Остановка потока и удаление агента
-                    agent.stop();
+                if (map.getOccupant(coords) instanceof Agent agent) {
+                    recordTrip(agent);
+                    map.setOccupant(coords, null);
+                    if (cooperativeMover != null) {
+                        cooperativeMover.forget(agent);
+                    }
+                    if (activeSetEngine != null) {
+                        activeSetEngine.forget(agent);
+                    }
+                    map.release(agent);
+
                     agents.remove(agent);
+                    scheduler.onDespawn(agent);
                 }
             }
+            lockReleased(acquired);
         }
     }
 
-    private void despawnTransport(){
+    void despawnTransport(){
+        long requested = lockRequested();
         synchronized (map) {
-            List<Coords> tempCoords = List.copyOf(TRAFFIC_MEMBER_COORDS.get("TRANSPORT"));
-            for (Coords coords : tempCoords) {
-                Cell cell = map.getGrid()[coords.x()][coords.y()];
-                if (cell.getCarriedEntity() instanceof Transport transport) {
-                    if (transport.getStepsCounter() >= transport.getPossibleStepsCount()) {
-                        cell.setCarriedEntity(null);
-                        TRAFFIC_MEMBER_COORDS.get("TRANSPORT").remove(coords);
-                    }
-                }
+            long acquired = lockAcquired(requested);
+            if (activeSetEngine != null) {
+                activeSetEngine.drainExpiredTransports(this::removeTransport);
+            } else {
+                map.getTransports().despawnExpired();
             }
+            lockReleased(acquired);
         }
     }
 
-    private void moveAgents(){
-        List<Agent> currentAgents;
-        synchronized (agents) {
-            currentAgents = new ArrayList<>(agents);
+    private void removeTransport(Transport transport) {
+        map.setOccupant(entities.positionOf(transport), null);
+        if (activeSetEngine != null) {
+            activeSetEngine.forget(transport);
         }
+        map.release(transport);
+    }
 
-        if (currentAgents.isEmpty()) return;
-
-        CountDownLatch latch = new CountDownLatch(currentAgents.size());
-        for (Agent agent : currentAgents) {
-            agent.prepareStep(latch);
-            agent.requestStep();
+    void moveAgents(){
+        if (parallelEngine != null) {
+            parallelEngine.moveAgents(tick, metrics);
+            return;
         }
-
-        try {
-            latch.await();
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
+        if (activeSetEngine != null) {
+            activeSetEngine.moveAgents(tick, metrics);
+            return;
         }
-    }
-
-    private void moveTransport(){
-        synchronized (map) {
-            List<Coords> tempCoords = List.copyOf(TRAFFIC_MEMBER_COORDS.get("TRANSPORT"));
-            for (Coords coords : tempCoords) {
-                Cell curCell = map.getGrid()[coords.x()][coords.y()];
-                if (!(curCell.getCarriedEntity() instanceof Transport transport)) continue;
-
-                if (!isPossibleToMove(transport.getNextCoords(coords)) ||
-                        getPossibleDirections(coords).size() > 2 ||
-                        transport.getWaitCounter() >= TRANSPORT_MAX_WAIT) {
-                    transport.chooseDirection(getPossibleDirections(coords));
-                    transport.setWaitCounter(0);
-                }
-                Coords nextCoords = transport.getNextCoords(coords);
-                if (random.nextDouble() < TRANSPORT_MOVE_PROBABILITY) {
-                    Cell nextCell = map.getGrid()[nextCoords.x()][nextCoords.y()];
-                    if (nextCell.getCarriedEntity() == null) {
-                        TRAFFIC_MEMBER_COORDS.get("TRANSPORT").remove(coords);
-                        TRAFFIC_MEMBER_COORDS.get("TRANSPORT").add(nextCoords);
-                        curCell.setCarriedEntity(null);
-                        nextCell.setCarriedEntity(transport);
-                    } else {
-                        transport.setWaitCounter(transport.getWaitCounter() + 1);
-                    }
-                }
-                transport.setStepsCounter(transport.getStepsCounter() + 1);
-            }
+        if (cooperativeMover == null) {
+            defaultEngine.moveAgents(tick, metrics);
+            return;
         }
+        // Буфер переиспользуется между тиками, чтобы не копировать список заново
+        List<Agent> currentAgents = agentsBuffer;
+        currentAgents.clear();
+        synchronized (agents) {
+            currentAgents.addAll(agents);
+        }
+        cooperativeMover.moveAgents(currentAgents, tick);
     }
 
-    private List<Direction> getPossibleDirections(Coords coords) {
-        int x = coords.x();
-        int y = coords.y();
-
-        Map<Direction, Coords> neighbours = Map.of(
-                Direction.LEFT, new Coords(x - 1, y),
-                Direction.RIGHT, new Coords(x + 1, y),
-                Direction.DOWN, new Coords(x, y - 1),
-                Direction.UP, new Coords(x, y + 1)
-        );
-
-        return neighbours.entrySet().stream()
-                .filter((entry -> isPossibleToMove(entry.getValue())))
-                .map((Map.Entry::getKey))
-                .toList();
-    }
-
-    private boolean isPossibleToMove(Coords coords) {
-        int x = coords.x();
-        int y = coords.y();
-        return x >= 0 && x < map.getWidth() &&
-                y >= 0 && y < map.getHeight() &&
-                map.getGrid()[x][y].getCellType() != CellType.WALL;
+    void moveTransport(){
+        if (parallelEngine != null) {
+            parallelEngine.moveTransport(tick, metrics);
+            return;
+        }
+        if (activeSetEngine != null) {
+            activeSetEngine.moveTransport(tick, metrics);
+            return;
+        }
+        defaultEngine.moveTransport(tick, metrics);
     }
 }
\ No newline at end of file
@@ -0,0 +1,23 @@
+package com.hippomaru.douckieTown.app;
+
+import com.hippomaru.douckieTown.model.map.BinaryMapFormat;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+// Перевод текстовой карты в бинарный формат: MapConverter <map.txt> <map.dtmap>
+public class MapConverter {
+    public static void main(String[] args) throws Exception {
+        if (args.length != 2) {
+            System.err.println("Usage: MapConverter <input.txt> <output" + BinaryMapFormat.EXTENSION + ">");
+            System.exit(2);
+        }
+        Path input = Path.of(args[0]);
+        Path output = Path.of(args[1]);
+
+        long start = System.nanoTime();
+        BinaryMapFormat.convertText(input, output);
+        System.out.printf("Converted %s (%d bytes) to %s (%d bytes) in %.1f ms%n",
+                input, Files.size(input), output, Files.size(output), (System.nanoTime() - start) / 1e6);
+    }
+}
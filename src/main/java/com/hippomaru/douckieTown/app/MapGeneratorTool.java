@@ -0,0 +1,37 @@
+package com.hippomaru.douckieTown.app;
+
+import com.hippomaru.douckieTown.model.map.MapGenerator;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+
+// Генерация большой карты прямо в файл: .dtmap - бинарный формат, иначе текстовый.
+// Аргументы:
+//   --width=<n>  --height=<n>  --seed=<n>  --out=<файл>
+//   --spacing=<n>  --loops=<p>  --min-corridor=<n>  --max-corridor=<n>
+//   --agent-spawns=<n>  --transport-spawns=<n>  --finishes=<n>  (по умолчанию - по числу перекрёстков,
+//   сколько поместится)
+public class MapGeneratorTool {
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = ToolOptions.parse(args);
+        int width = Integer.parseInt(options.getOrDefault("width", "1000"));
+        int height = Integer.parseInt(options.getOrDefault("height", "1000"));
+        Path out = Path.of(options.getOrDefault("out", "generated.dtmap"));
+
+        MapGenerator generator = new MapGenerator(width, height,
+                Long.parseLong(options.getOrDefault("seed", "0")),
+                Integer.parseInt(options.getOrDefault("spacing", "8")),
+                Double.parseDouble(options.getOrDefault("loops", "0.3")),
+                Integer.parseInt(options.getOrDefault("min-corridor", "1")),
+                Integer.parseInt(options.getOrDefault("max-corridor", "2")),
+                Integer.parseInt(options.getOrDefault("agent-spawns", "-1")),
+                Integer.parseInt(options.getOrDefault("transport-spawns", "-1")),
+                Integer.parseInt(options.getOrDefault("finishes", "-1")));
+
+        long start = System.nanoTime();
+        generator.write(out);
+        System.out.printf("Generated %dx%d map to %s (%d bytes) in %.1f ms%n",
+                width, height, out, Files.size(out), (System.nanoTime() - start) / 1e6);
+    }
+}
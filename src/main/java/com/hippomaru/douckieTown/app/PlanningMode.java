@@ -0,0 +1,8 @@
+package com.hippomaru.douckieTown.app;
+
+public enum PlanningMode {
+    // Каждый агент планирует сам и перестраивает маршрут при блокировке
+    INDEPENDENT,
+    // Агенты резервируют клетки по времени и двигаются согласованно
+    COOPERATIVE
+}
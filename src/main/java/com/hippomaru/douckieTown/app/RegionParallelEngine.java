@@ -0,0 +1,336 @@
+package com.hippomaru.douckieTown.app;
+
+import com.hippomaru.douckieTown.app.scheduler.AgentScheduler;
+import com.hippomaru.douckieTown.metrics.SimulationMetrics;
+import com.hippomaru.douckieTown.model.interactive.Agent;
+import com.hippomaru.douckieTown.model.interactive.EntityKind;
+import com.hippomaru.douckieTown.model.interactive.TrafficMember;
+import com.hippomaru.douckieTown.model.interactive.Transport;
+import com.hippomaru.douckieTown.model.map.CellGrid;
+import com.hippomaru.douckieTown.model.map.EntityRegistry;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+// Движение агентов и транспорта, распараллеленное по прямоугольным регионам карты.
+// Каждая фаза движения считается в три шага:
+//   1) намерения: каждый регион по состоянию начала фазы выбирает клетки для своих сущностей
+//      и заявляет свободные клетки; заявки на клетки соседних регионов уходят в исходящий буфер;
+//   2) передача на границе: регион забирает из буферов соседей заявки на свои клетки;
+//   3) применение: сущность переезжает, если её заявка победила.
+// Конфликт за клетку выигрывает меньший id, а случайность транспорта зависит только от (seed, тик, id),
+// поэтому результат не зависит ни от числа регионов, ни от числа потоков.
+// Одна область - движок GameManager по умолчанию: ходы агентов в ней выбирает AgentScheduler,
+// поэтому --regions=RxC и обычный прогон с тем же seed совпадают.
+class RegionParallelEngine implements AutoCloseable {
+    private static final int NO_CLAIM = EntityRegistry.NO_ENTITY;
+    private static final int PLAN = 0;
+    private static final int HANDOFF = 1;
+    private static final int APPLY = 2;
+
+    private final CellGrid map;
+    private final EntityRegistry entities;
+    private final double transportMoveProbability;
+    private final int transportMaxWait;
+
+    private final int regionColumns;
+    private final int[] regionRowOfX;
+    private final int[] regionColumnOfY;
+    private final Region[] regions;
+    // Победившая заявка на клетку; пишет только регион, которому клетка принадлежит
+    private final int[] claims;
+
+    private final ForkJoinPool pool;
+    // Только у единственной области: выбор ходов агентов отдаётся планировщику
+    private final AgentScheduler scheduler;
+    private final List<Agent> plannedAgents = new ArrayList<>();
+
+    // Движок по умолчанию: одна область, выбор ходов агентов - на планировщике
+    RegionParallelEngine(CellGrid map, AgentScheduler scheduler, long seed,
+                         double transportMoveProbability, int transportMaxWait) {
+        this(map, 1, 1, 1, seed, transportMoveProbability, transportMaxWait, scheduler);
+    }
+
+    RegionParallelEngine(CellGrid map, int regionRows, int regionColumns, int parallelism, long seed,
+                         double transportMoveProbability, int transportMaxWait) {
+        this(map, regionRows, regionColumns, parallelism, seed, transportMoveProbability, transportMaxWait, null);
+    }
+
+    private RegionParallelEngine(CellGrid map, int regionRows, int regionColumns, int parallelism, long seed,
+                                 double transportMoveProbability, int transportMaxWait, AgentScheduler scheduler) {
+        if (regionRows <= 0 || regionColumns <= 0) {
+            throw new IllegalArgumentException("Region grid must be positive: " + regionRows + "x" + regionColumns);
+        }
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("Parallelism must be positive: " + parallelism);
+        }
+        this.map = map;
+        this.entities = map.getEntities();
+        this.transportMoveProbability = transportMoveProbability;
+        this.transportMaxWait = transportMaxWait;
+
+        int rows = Math.min(regionRows, map.getWidth());
+        this.regionColumns = Math.min(regionColumns, map.getHeight());
+        this.regionRowOfX = bands(map.getWidth(), rows);
+        this.regionColumnOfY = bands(map.getHeight(), this.regionColumns);
+        this.regions = new Region[rows * this.regionColumns];
+        for (int i = 0; i < regions.length; i++) {
+            regions[i] = new Region(seed);
+        }
+        this.claims = new int[map.size()];
+
+        this.pool = parallelism > 1 ? new ForkJoinPool(parallelism) : null;
+        this.scheduler = scheduler;
+    }
+
+    // Номер полосы для каждой координаты, полосы почти равной длины
+    private static int[] bands(int length, int bands) {
+        int[] bandOf = new int[length];
+        for (int i = 0; i < length; i++) {
+            bandOf[i] = (int) ((long) i * bands / length);
+        }
+        return bandOf;
+    }
+
+    private int regionOf(int index) {
+        return regionRowOfX[map.xOf(index)] * regionColumns + regionColumnOfY[map.yOf(index)];
+    }
+
+    void moveAgents(long tick, SimulationMetrics metrics) {
+        move(EntityKind.AGENT, tick, metrics);
+    }
+
+    void moveTransport(long tick, SimulationMetrics metrics) {
+        move(EntityKind.TRANSPORT, tick, metrics);
+    }
+
+    private void move(EntityKind kind, long tick, SimulationMetrics metrics) {
+        long requested = metrics != null ? System.nanoTime() : 0;
+        synchronized (map) {
+            long acquired = metrics != null ? System.nanoTime() : 0;
+            distribute(kind);
+            runPhase(PLAN, kind, tick, metrics);
+            runPhase(HANDOFF, kind, tick, metrics);
+            runPhase(APPLY, kind, tick, metrics);
+            if (metrics != null) {
+                metrics.recordMapLock(acquired - requested, System.nanoTime() - acquired);
+            }
+        }
+    }
+
+    // Раскладывает сущности по регионам в порядке плотного списка реестра
+    private void distribute(EntityKind kind) {
+        for (Region region : regions) {
+            region.members.clear();
+        }
+        for (int i = 0, count = entities.count(kind); i < count; i++) {
+            TrafficMember member = entities.get(kind, i);
+            regions[regionOf(entities.positionOf(member))].members.add(member.getId());
+        }
+    }
+
+    // Без пула фазы идут прямыми вызовами: движок по умолчанию не создаёт объектов на тик
+    private void runPhase(int phase, EntityKind kind, long tick, SimulationMetrics metrics) {
+        if (pool == null || regions.length == 1) {
+            for (int region = 0; region < regions.length; region++) {
+                runRegion(phase, region, kind, tick, metrics);
+            }
+            return;
+        }
+        pool.invoke(new RegionAction(phase, kind, tick, metrics, 0, regions.length));
+    }
+
+    private void runRegion(int phase, int region, EntityKind kind, long tick, SimulationMetrics metrics) {
+        switch (phase) {
+            case PLAN -> planRegion(regions[region], region, kind, tick, metrics);
+            case HANDOFF -> acceptHandoff(regions[region], region);
+            default -> applyRegion(regions[region], kind, metrics);
+        }
+    }
+
+    private void planRegion(Region region, int regionIndex, EntityKind kind, long tick, SimulationMetrics metrics) {
+        // Заявки прошлой фазы больше никто не читает
+        for (int i = 0; i < region.claimedCells.size; i++) {
+            claims[region.claimedCells.values[i]] = NO_CLAIM;
+        }
+        region.claimedCells.clear();
+        region.outbox.clear();
+        region.intents.clear();
+
+        if (kind == EntityKind.AGENT && scheduler != null) {
+            prepareAgents(region, metrics);
+        }
+        for (int i = 0; i < region.members.size; i++) {
+            int id = region.members.values[i];
+            int intent;
+            if (kind == EntityKind.TRANSPORT) {
+                intent = planTransport((Transport) entities.get(id), tick, region.random);
+            } else if (scheduler != null) {
+                intent = plannedAgents.get(i).getPendingIntent();
+            } else {
+                intent = planAgent((Agent) entities.get(id));
+            }
+            region.intents.add(intent);
+            // Занятая в начале фазы клетка недоступна, даже если её хозяин сейчас уедет
+            if (intent < 0 || map.isOccupied(intent)) continue;
+            if (regionOf(intent) == regionIndex) {
+                claim(region, intent, id);
+            } else {
+                region.outbox.add(intent);
+                region.outbox.add(id);
+            }
+        }
+    }
+
+    // Планировщик агентов потокобезопасен, пока занятость карты не меняется
+    private int planAgent(Agent agent) {
+        return agent.planStep(agent.getPlanner());
+    }
+
+    // Ходы всех агентов единственной области выбирает планировщик, в порядке её списка
+    private void prepareAgents(Region region, SimulationMetrics metrics) {
+        plannedAgents.clear();
+        for (int i = 0; i < region.members.size; i++) {
+            plannedAgents.add((Agent) entities.get(region.members.values[i]));
+        }
+        long start = metrics != null ? System.nanoTime() : 0;
+        scheduler.prepareAll(plannedAgents);
+        if (metrics != null) {
+            metrics.recordAgentStepWait(System.nanoTime() - start);
+        }
+    }
+
+    private int planTransport(Transport transport, long tick, CounterRandom random) {
+        random.reset(tick, transport.getId());
+        int position = entities.positionOf(transport);
+        int possibleDirections = map.getPassableDirections(position);
+        if (possibleDirections == 0) return Agent.STAY;
+
+        if (!transport.getCurrentDirection().in(possibleDirections) ||
+                Integer.bitCount(possibleDirections) > 2 ||
+                transport.getWaitCounter() >= transportMaxWait) {
+            transport.chooseDirection(possibleDirections, random);
+            transport.setWaitCounter(0);
+        }
+        if (random.nextDouble() >= transportMoveProbability) return Agent.STAY;
+        return transport.getNextIndex(map, position);
+    }
+
+    private void acceptHandoff(Region region, int regionIndex) {
+        for (Region neighbour : regions) {
+            if (neighbour == region) continue;
+            IntBuffer outbox = neighbour.outbox;
+            for (int i = 0; i < outbox.size; i += 2) {
+                int cell = outbox.values[i];
+                if (regionOf(cell) == regionIndex) {
+                    claim(region, cell, outbox.values[i + 1]);
+                }
+            }
+        }
+    }
+
+    private void claim(Region region, int cell, int id) {
+        int current = claims[cell];
+        if (current == NO_CLAIM) {
+            claims[cell] = id;
+            region.claimedCells.add(cell);
+        } else if (id < current) {
+            claims[cell] = id;
+        }
+    }
+
+    // Клетки победителей свободны с начала фазы и уникальны, поэтому регионы пишут в непересекающиеся ячейки
+    private void applyRegion(Region region, EntityKind kind, SimulationMetrics metrics) {
+        for (int i = 0; i < region.members.size; i++) {
+            int id = region.members.values[i];
+            int intent = region.intents.values[i];
+            TrafficMember member = entities.get(id);
+            boolean moved = intent >= 0 && claims[intent] == id;
+            if (moved) {
+                map.setOccupant(entities.positionOf(member), null);
+                map.setOccupant(intent, member);
+            }
+
+            if (kind == EntityKind.AGENT) {
+                ((Agent) member).applyStep(intent, moved);
+                continue;
+            }
+            Transport transport = (Transport) member;
+            if (intent >= 0 && !moved) {
+                transport.setWaitCounter(transport.getWaitCounter() + 1);
+                if (metrics != null) {
+                    metrics.recordBlockedTransportMove();
+                }
+            }
+            transport.setStepsCounter(transport.getStepsCounter() + 1);
+        }
+    }
+
+    @Override
+    public void close() {
+        if (pool != null) {
+            pool.shutdown();
+        }
+    }
+
+    private static final class Region {
+        final IntBuffer members = new IntBuffer();
+        final IntBuffer intents = new IntBuffer();
+        // Пары (клетка, id) с заявками на клетки других регионов
+        final IntBuffer outbox = new IntBuffer();
+        final IntBuffer claimedCells = new IntBuffer();
+        final CounterRandom random;
+
+        Region(long seed) {
+            this.random = new CounterRandom(seed);
+        }
+    }
+
+    private static final class IntBuffer {
+        int[] values = new int[16];
+        int size;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        void clear() {
+            size = 0;
+        }
+    }
+
+    private final class RegionAction extends RecursiveAction {
+        private final int phase;
+        private final EntityKind kind;
+        private final long tick;
+        private final SimulationMetrics metrics;
+        private final int from;
+        private final int to;
+
+        RegionAction(int phase, EntityKind kind, long tick, SimulationMetrics metrics, int from, int to) {
+            this.phase = phase;
+            this.kind = kind;
+            this.tick = tick;
+            this.metrics = metrics;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from == 1) {
+                runRegion(phase, from, kind, tick, metrics);
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new RegionAction(phase, kind, tick, metrics, from, mid),
+                    new RegionAction(phase, kind, tick, metrics, mid, to));
+        }
+    }
+}
@@ -0,0 +1,294 @@
+package com.hippomaru.douckieTown.app;
+
+import com.hippomaru.douckieTown.app.scheduler.AgentScheduler;
+import com.hippomaru.douckieTown.model.interactive.Agent;
+import com.hippomaru.douckieTown.model.interactive.Direction;
+import com.hippomaru.douckieTown.model.interactive.EntityKind;
+import com.hippomaru.douckieTown.model.interactive.Transport;
+import com.hippomaru.douckieTown.model.map.CellGrid;
+import com.hippomaru.douckieTown.model.map.Coords;
+import com.hippomaru.douckieTown.model.map.EntityRegistry;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+// Снимок динамического состояния: счётчики GameManager, итоги поездок, агенты с маршрутами и транспорт.
+// Статическая карта в снимок не входит, восстанавливать нужно на такую же карту без сущностей.
+// Маршруты пишутся разностями соседних клеток (zigzag varint), обычно байт на шаг.
+// Чтобы восстановленный прогон продолжал исходный, в снимке есть всё, от чего зависят следующие тики:
+// seed и состояние генератора спавна, движок и HPA, id сущностей с порядком реестра и стеком свободных id.
+// Сон активного набора не сохраняется: после settle он ничего не меняет, движок заново будит всех.
+// Кооперативное планирование держит резервации между тиками, снимок его не поддерживает.
+final class SimulationSnapshot {
+    private static final int MAGIC = 0x4454534E; // "DTSN"
+    private static final int VERSION = 4;
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final Direction[] DIRECTIONS = Direction.values();
+
+    private static final int ENGINE_DEFAULT = 0;
+    private static final int ENGINE_ACTIVE_SET = 1;
+    private static final int ENGINE_REGIONS = 2;
+
+    private record TransportState(int id, int position, Direction direction, int lifetime,
+                                  int stepsCounter, int waitCounter) {
+    }
+
+    private SimulationSnapshot() {
+    }
+
+    static void write(GameManager manager, Path file) {
+        CellGrid map = manager.getMap();
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(file), BUFFER_SIZE))) {
+            synchronized (map) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(map.getWidth());
+                out.writeInt(map.getHeight());
+                out.writeInt(manager.getMAX_AGENTS());
+                out.writeDouble(manager.getTRANSPORT_SPAWN_PROBABILITY());
+                out.writeLong(manager.getSeed());
+                out.writeLong(manager.getSpawnRandom().getState());
+                writeEngine(out, manager);
+                out.writeBoolean(manager.getHierarchicalPlanner() != null);
+                out.writeLong(manager.getTick());
+                out.writeInt(manager.getSpawn_tick());
+                out.writeInt(manager.getAgents_counter());
+
+                manager.getTripStatistics().writeTo(out);
+
+                EntityRegistry entities = map.getEntities();
+                writeVarInt(out, entities.idLimit());
+                int[] freeIds = entities.freeIds();
+                writeVarInt(out, freeIds.length);
+                for (int id : freeIds) {
+                    writeVarInt(out, id);
+                }
+
+                // Порядок шага на ходы не влияет: конфликт за клетку выигрывает меньший id
+                int agents = entities.count(EntityKind.AGENT);
+                writeVarInt(out, agents);
+                for (int i = 0; i < agents; i++) {
+                    writeAgent(out, map, (Agent) entities.get(EntityKind.AGENT, i));
+                }
+
+                int transports = entities.count(EntityKind.TRANSPORT);
+                writeVarInt(out, transports);
+                for (int i = 0; i < transports; i++) {
+                    Transport transport = (Transport) entities.get(EntityKind.TRANSPORT, i);
+                    writeVarInt(out, transport.getId());
+                    writeVarInt(out, entities.positionOf(transport));
+                    writeDirection(out, transport.getCurrentDirection());
+                    writeVarInt(out, transport.getPossibleStepsCount());
+                    writeVarInt(out, transport.getStepsCounter());
+                    writeVarInt(out, transport.getWaitCounter());
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write snapshot: " + file, e);
+        }
+    }
+
+    // Разбиение на регионы на результат не влияет, поэтому пишется только сам движок
+    private static void writeEngine(DataOutputStream out, GameManager manager) throws IOException {
+        if (manager.getParallelEngine() != null) {
+            out.writeByte(ENGINE_REGIONS);
+        } else {
+            out.writeByte(manager.getActiveSetEngine() != null ? ENGINE_ACTIVE_SET : ENGINE_DEFAULT);
+        }
+    }
+
+    // reseed - продолжить с новым seed вместо сохранённых генераторов
+    static GameManager read(CellGrid map, Path file, AgentScheduler scheduler, boolean reseed, long seed) {
+        EntityRegistry entities = map.getEntities();
+        if (entities.count(EntityKind.AGENT) + entities.count(EntityKind.TRANSPORT) != 0) {
+            throw new IllegalStateException("Snapshot must be restored onto a map without entities");
+        }
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(Files.newInputStream(file), BUFFER_SIZE))) {
+            if (in.readInt() != MAGIC) {
+                throw new IllegalArgumentException("Not a snapshot: " + file);
+            }
+            int version = in.readInt();
+            if (version != VERSION) {
+                throw new IllegalArgumentException("Unsupported snapshot version " + version + ": " + file);
+            }
+            int width = in.readInt();
+            int height = in.readInt();
+            if (width != map.getWidth() || height != map.getHeight()) {
+                throw new IllegalArgumentException("Snapshot was taken on a " + width + "x" + height
+                        + " map, got " + map.getWidth() + "x" + map.getHeight());
+            }
+            int maxAgents = in.readInt();
+            double transportSpawnProbability = in.readDouble();
+            long savedSeed = in.readLong();
+            long spawnState = in.readLong();
+            int engine = in.readByte();
+            if (engine != ENGINE_DEFAULT && engine != ENGINE_ACTIVE_SET && engine != ENGINE_REGIONS) {
+                throw new IllegalArgumentException("Unknown engine " + engine + " in snapshot: " + file);
+            }
+            boolean hierarchical = in.readBoolean();
+
+            GameManager manager = new GameManager(map, maxAgents, transportSpawnProbability,
+                    scheduler, PlanningMode.INDEPENDENT, reseed ? seed : savedSeed, false);
+            if (!reseed) {
+                manager.getSpawnRandom().setState(spawnState);
+            }
+            if (hierarchical) {
+                manager.enableHierarchicalRouting();
+            }
+            manager.setTick(in.readLong());
+            manager.setSpawn_tick(in.readInt());
+            manager.setAgents_counter(in.readInt());
+            manager.getTripStatistics().readFrom(in);
+
+            int nextId = readVarInt(in);
+            int[] freeIds = readIds(in, readVarInt(in));
+            Agent[] agents = new Agent[readVarInt(in)];
+            int[] agentIds = new int[agents.length];
+            for (int i = 0; i < agents.length; i++) {
+                agentIds[i] = readVarInt(in);
+                agents[i] = readAgent(in, manager);
+            }
+            TransportState[] transports = new TransportState[readVarInt(in)];
+            for (int i = 0; i < transports.length; i++) {
+                transports[i] = new TransportState(readVarInt(in), readVarInt(in), readDirection(in),
+                        readVarInt(in), readVarInt(in), readVarInt(in));
+            }
+
+            // Регистрация в сохранённом порядке возвращает сущностям их id
+            int[] ids = new int[agents.length + transports.length];
+            System.arraycopy(agentIds, 0, ids, 0, agents.length);
+            for (int i = 0; i < transports.length; i++) {
+                ids[agents.length + i] = transports[i].id();
+            }
+            entities.restoreIds(nextId, freeIds, ids);
+            for (Agent agent : agents) {
+                map.setOccupant(agent.getCurrentCoords(), agent);
+                manager.getAgents().add(agent);
+                scheduler.onSpawn(agent);
+            }
+            for (TransportState state : transports) {
+                Transport transport = map.getTransports().spawn(state.lifetime(), state.direction());
+                transport.setStepsCounter(state.stepsCounter());
+                transport.setWaitCounter(state.waitCounter());
+                map.setOccupant(state.position(), transport);
+            }
+
+            if (engine == ENGINE_ACTIVE_SET) {
+                manager.enableActiveSetEngine();
+            } else if (engine == ENGINE_REGIONS) {
+                int parallelism = Runtime.getRuntime().availableProcessors();
+                int side = (int) Math.ceil(Math.sqrt(parallelism));
+                manager.enableRegionParallelEngine(side, side, parallelism);
+            }
+            return manager;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read snapshot: " + file, e);
+        }
+    }
+
+    private static int[] readIds(DataInputStream in, int count) throws IOException {
+        int[] ids = new int[count];
+        for (int i = 0; i < count; i++) {
+            ids[i] = readVarInt(in);
+        }
+        return ids;
+    }
+
+    private static void writeAgent(DataOutputStream out, CellGrid map, Agent agent) throws IOException {
+        writeVarInt(out, agent.getId());
+        writeVarInt(out, map.index(agent.getCurrentCoords()));
+        writeDirection(out, agent.getCurrentDirection());
+
+        Coords[] route = agent.getChosenRoute();
+        int length = route == null ? 0 : route.length;
+        writeVarInt(out, length);
+        int previous = 0;
+        for (int i = 0; i < length; i++) {
+            int cell = map.index(route[i]);
+            writeVarInt(out, zigzag(cell - previous));
+            previous = cell;
+        }
+
+        writeVarInt(out, agent.getRouteCursor());
+        writeVarInt(out, agent.getSuccessStepsCounter());
+        writeVarInt(out, agent.getStepsCounter());
+        writeVarInt(out, agent.getBlockedTicks());
+        writeVarInt(out, agent.getReplansCounter());
+        writeVarInt(out, agent.getBlockedStepsCounter());
+        out.writeLong(agent.getSpawnTick());
+    }
+
+    private static Agent readAgent(DataInputStream in, GameManager manager) throws IOException {
+        CellGrid map = manager.getMap();
+        Agent agent = new Agent();
+        agent.setCurrentCoords(map.coordsOf(readVarInt(in)));
+        agent.setCurrentDirection(readDirection(in));
+
+        int length = readVarInt(in);
+        if (length > 0) {
+            Coords[] route = new Coords[length];
+            int cell = 0;
+            for (int i = 0; i < length; i++) {
+                cell += unzigzag(readVarInt(in));
+                route[i] = map.coordsOf(cell);
+            }
+            agent.setChosenRoute(route);
+        }
+
+        agent.setRouteCursor(readVarInt(in));
+        agent.setSuccessStepsCounter(readVarInt(in));
+        agent.setStepsCounter(readVarInt(in));
+        agent.setBlockedTicks(readVarInt(in));
+        agent.setReplansCounter(readVarInt(in));
+        agent.setBlockedStepsCounter(readVarInt(in));
+        agent.setSpawnTick(in.readLong());
+        agent.setMap(map);
+        agent.setPlanner(manager.getPlanner());
+        agent.setDestination(manager.getFinishDestination());
+        agent.setMetrics(manager.getMetrics());
+        return agent;
+    }
+
+    private static void writeDirection(DataOutputStream out, Direction direction) throws IOException {
+        out.writeByte(direction == null ? -1 : direction.ordinal());
+    }
+
+    private static Direction readDirection(DataInputStream in) throws IOException {
+        int ordinal = in.readByte();
+        return ordinal < 0 ? null : DIRECTIONS[ordinal];
+    }
+
+    private static int zigzag(int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    private static int unzigzag(int value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static void writeVarInt(DataOutputStream out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    private static int readVarInt(DataInputStream in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            byte b = in.readByte();
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) return value;
+        }
+        throw new IOException("Malformed varint in snapshot");
+    }
+}
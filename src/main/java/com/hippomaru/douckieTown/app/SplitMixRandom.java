@@ -0,0 +1,29 @@
+package com.hippomaru.douckieTown.app;
+
+import java.util.random.RandomGenerator;
+
+// Последовательный поток SplitMix64 с открытым состоянием: снимок записывает его
+// и продолжает последовательность с того же места
+final class SplitMixRandom implements RandomGenerator {
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+
+    private long state;
+
+    SplitMixRandom(long seed) {
+        this.state = seed;
+    }
+
+    long getState() {
+        return state;
+    }
+
+    void setState(long state) {
+        this.state = state;
+    }
+
+    @Override
+    public long nextLong() {
+        state += GOLDEN_GAMMA;
+        return CounterRandom.mix(state);
+    }
+}
@@ -0,0 +1,6 @@
+package com.hippomaru.douckieTown.app;
+
+@FunctionalInterface
+public interface TickListener {
+    void onTick(GameManager manager);
+}
@@ -0,0 +1,21 @@
+package com.hippomaru.douckieTown.app;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Аргументы консольных утилит вида --name=value
+final class ToolOptions {
+    private ToolOptions() {
+    }
+
+    static Map<String, String> parse(String[] args) {
+        Map<String, String> options = new LinkedHashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("Expected --name=value, got " + arg);
+            }
+            options.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+        }
+        return options;
+    }
+}
@@ -0,0 +1,23 @@
+package com.hippomaru.douckieTown.app.scheduler;
+
+import com.hippomaru.douckieTown.model.interactive.Agent;
+
+import java.util.List;
+
+public interface AgentScheduler extends AutoCloseable {
+
+    default void onSpawn(Agent agent) {
+    }
+
+    default void onDespawn(Agent agent) {
+    }
+
+    // Выбирает ход каждого агента (Agent.prepareStep) и возвращается, когда выбраны все.
+    // Занятость карты во время вызова не меняется, поэтому ходы не зависят ни от порядка agents,
+    // ни от планирования потоков. Применяет ходы движок GameManager.
+    void prepareAll(List<Agent> agents);
+
+    @Override
+    default void close() {
+    }
+}
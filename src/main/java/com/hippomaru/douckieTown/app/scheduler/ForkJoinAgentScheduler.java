@@ -0,0 +1,68 @@
+package com.hippomaru.douckieTown.app.scheduler;
+
+import com.hippomaru.douckieTown.model.interactive.Agent;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+public class ForkJoinAgentScheduler implements AgentScheduler {
+    private static final int DEFAULT_BATCH_SIZE = 256;
+
+    private final ForkJoinPool pool;
+    private final int batchSize;
+
+    public ForkJoinAgentScheduler() {
+        this(Runtime.getRuntime().availableProcessors(), DEFAULT_BATCH_SIZE);
+    }
+
+    public ForkJoinAgentScheduler(int parallelism, int batchSize) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("Batch size must be positive: " + batchSize);
+        }
+        this.pool = new ForkJoinPool(parallelism);
+        this.batchSize = batchSize;
+    }
+
+    @Override
+    public void prepareAll(List<Agent> agents) {
+        if (agents.isEmpty()) return;
+        if (agents.size() <= batchSize) {
+            // Один батч дешевле выполнить на вызывающем потоке
+            for (Agent agent : agents) {
+                agent.prepareStep();
+            }
+            return;
+        }
+        pool.invoke(new PrepareBatch(agents, 0, agents.size()));
+    }
+
+    @Override
+    public void close() {
+        pool.shutdown();
+    }
+
+    private class PrepareBatch extends RecursiveAction {
+        private final List<Agent> agents;
+        private final int from;
+        private final int to;
+
+        PrepareBatch(List<Agent> agents, int from, int to) {
+            this.agents = agents;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= batchSize) {
+                for (int i = from; i < to; i++) {
+                    agents.get(i).prepareStep();
+                }
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new PrepareBatch(agents, from, mid), new PrepareBatch(agents, mid, to));
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package com.hippomaru.douckieTown.app.scheduler;
+
+import java.util.function.Supplier;
+
+public enum SchedulerType {
+    SEQUENTIAL(SequentialAgentScheduler::new),
+    FORK_JOIN(ForkJoinAgentScheduler::new),
+    VIRTUAL_THREADS(VirtualThreadAgentScheduler::new),
+    THREAD_PER_AGENT(ThreadPerAgentScheduler::new);
+
+    private final Supplier<AgentScheduler> factory;
+
+    SchedulerType(Supplier<AgentScheduler> factory) {
+        this.factory = factory;
+    }
+
+    public AgentScheduler create() {
+        return factory.get();
+    }
+}
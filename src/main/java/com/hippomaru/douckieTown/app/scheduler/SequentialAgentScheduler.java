@@ -0,0 +1,15 @@
+package com.hippomaru.douckieTown.app.scheduler;
+
+import com.hippomaru.douckieTown.model.interactive.Agent;
+
+import java.util.List;
+
+public class SequentialAgentScheduler implements AgentScheduler {
+
+    @Override
+    public void prepareAll(List<Agent> agents) {
+        for (Agent agent : agents) {
+            agent.prepareStep();
+        }
+    }
+}
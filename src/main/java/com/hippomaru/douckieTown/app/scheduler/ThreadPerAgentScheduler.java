@@ -0,0 +1,111 @@
+package com.hippomaru.douckieTown.app.scheduler;
+
+import com.hippomaru.douckieTown.model.interactive.Agent;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+
+// Исходная схема: отдельный платформенный поток на каждого агента
+public class ThreadPerAgentScheduler implements AgentScheduler {
+    private final Map<Agent, AgentWorker> workers = new ConcurrentHashMap<>();
+
+    @Override
+    public void onSpawn(Agent agent) {
+        AgentWorker worker = new AgentWorker(agent);
+        workers.put(agent, worker);
+        new Thread(worker).start();
+    }
+
+    @Override
+    public void onDespawn(Agent agent) {
+        AgentWorker worker = workers.remove(agent);
+        if (worker != null) {
+            worker.stop();
+        }
+    }
+
+    @Override
+    public void prepareAll(List<Agent> agents) {
+        if (agents.isEmpty()) return;
+
+        CountDownLatch latch = new CountDownLatch(agents.size());
+        for (Agent agent : agents) {
+            AgentWorker worker = workers.get(agent);
+            if (worker == null) {
+                latch.countDown();
+                continue;
+            }
+            worker.requestStep(latch);
+        }
+
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void close() {
+        workers.values().forEach(AgentWorker::stop);
+        workers.clear();
+    }
+
+    private static class AgentWorker implements Runnable {
+        private final Agent agent;
+
+        private volatile boolean running = true;
+        private volatile boolean stepRequested = false;
+        private final Object stepLock = new Object();
+        // Защёлка текущего запроса; читается и пишется только под stepLock
+        private CountDownLatch stepLatch;
+
+        AgentWorker(Agent agent) {
+            this.agent = agent;
+        }
+
+        @Override
+        public void run() {
+            while (running) {
+                CountDownLatch latch;
+                synchronized (stepLock) {
+                    while (!stepRequested && running) {
+                        try {
+                            stepLock.wait();
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            return;
+                        }
+                    }
+                    if (!running) break;
+                    stepRequested = false;
+                    latch = stepLatch;
+                    stepLatch = null;
+                }
+
+                try {
+                    agent.prepareStep();
+                } finally {
+                    latch.countDown();
+                }
+            }
+        }
+
+        void requestStep(CountDownLatch latch) {
+            synchronized (stepLock) {
+                stepLatch = latch;
+                stepRequested = true;
+                stepLock.notify();
+            }
+        }
+
+        void stop() {
+            running = false;
+            synchronized (stepLock) {
+                stepLock.notify();
+            }
+        }
+    }
+}
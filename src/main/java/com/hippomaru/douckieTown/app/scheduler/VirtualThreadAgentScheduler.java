@@ -0,0 +1,36 @@
+package com.hippomaru.douckieTown.app.scheduler;
+
+import com.hippomaru.douckieTown.model.interactive.Agent;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class VirtualThreadAgentScheduler implements AgentScheduler {
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    @Override
+    public void prepareAll(List<Agent> agents) {
+        List<Future<?>> futures = new ArrayList<>(agents.size());
+        for (Agent agent : agents) {
+            futures.add(executor.submit(agent::prepareStep));
+        }
+        try {
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Agent step failed", e.getCause());
+        }
+    }
+
+    @Override
+    public void close() {
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,230 @@
+package com.hippomaru.douckieTown.metrics;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+// Метрики одного GameManager: задержки фаз, ожидание шагов агентов, монитор карты и счётчики.
+// Публикуются как JFR-события на каждый тик и как MBean.
+public class SimulationMetrics implements SimulationMetricsMBean {
+    private static final TickPhase[] PHASES = TickPhase.values();
+    private static final AtomicInteger INSTANCES = new AtomicInteger();
+
+    private final Map<TickPhase, LatencyHistogram> phases = new EnumMap<>(TickPhase.class);
+    private final long[] lastPhaseNanos = new long[PHASES.length];
+    private final LatencyHistogram tickLatency = new LatencyHistogram();
+    private final LatencyHistogram agentStepWait = new LatencyHistogram();
+    private final LatencyHistogram mapLockWait = new LatencyHistogram();
+    private final LatencyHistogram mapLockHold = new LatencyHistogram();
+    private final LongAdder blockedAgentMoves = new LongAdder();
+    private final LongAdder blockedTransportMoves = new LongAdder();
+
+    private volatile long ticks;
+    private volatile int liveAgents;
+    private volatile int liveTransports;
+    private long blockedMovesAtLastTick;
+
+    private ObjectName objectName;
+
+    public SimulationMetrics() {
+        for (TickPhase phase : PHASES) {
+            phases.put(phase, new LatencyHistogram());
+        }
+    }
+
+    public void recordPhase(TickPhase phase, long nanos) {
+        phases.get(phase).record(nanos);
+        lastPhaseNanos[phase.ordinal()] = nanos;
+    }
+
+    public void recordAgentStepWait(long nanos) {
+        agentStepWait.record(nanos);
+    }
+
+    public void recordMapLock(long waitNanos, long holdNanos) {
+        mapLockWait.record(waitNanos);
+        mapLockHold.record(holdNanos);
+    }
+
+    public void recordBlockedAgentMove() {
+        blockedAgentMoves.increment();
+    }
+
+    public void recordBlockedTransportMove() {
+        blockedTransportMoves.increment();
+    }
+
+    // Блокировки, досчитанные разом за проспанные тики
+    public void recordBlockedAgentMoves(int count) {
+        blockedAgentMoves.add(count);
+    }
+
+    public void recordBlockedTransportMoves(int count) {
+        blockedTransportMoves.add(count);
+    }
+
+    public void recordTick(long tick, long nanos, int agents, int transports) {
+        tickLatency.record(nanos);
+        ticks = tick;
+        liveAgents = agents;
+        liveTransports = transports;
+
+        long blockedMoves = blockedAgentMoves.sum() + blockedTransportMoves.sum();
+        TickEvent event = new TickEvent();
+        if (event.shouldCommit()) {
+            event.tick = tick;
+            event.despawnAgents = lastPhaseNanos[TickPhase.DESPAWN_AGENTS.ordinal()];
+            event.despawnTransport = lastPhaseNanos[TickPhase.DESPAWN_TRANSPORT.ordinal()];
+            event.moveAgents = lastPhaseNanos[TickPhase.MOVE_AGENTS.ordinal()];
+            event.moveTransport = lastPhaseNanos[TickPhase.MOVE_TRANSPORT.ordinal()];
+            event.spawnAgents = lastPhaseNanos[TickPhase.SPAWN_AGENTS.ordinal()];
+            event.spawnTransport = lastPhaseNanos[TickPhase.SPAWN_TRANSPORT.ordinal()];
+            event.liveAgents = agents;
+            event.liveTransports = transports;
+            event.blockedMoves = blockedMoves - blockedMovesAtLastTick;
+            event.commit();
+        }
+        blockedMovesAtLastTick = blockedMoves;
+    }
+
+    public void register() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            objectName = new ObjectName("com.hippomaru.douckieTown:type=Simulation,id=" + INSTANCES.incrementAndGet());
+            server.registerMBean(this, objectName);
+        } catch (JMException e) {
+            throw new IllegalStateException("Failed to register simulation MBean", e);
+        }
+    }
+
+    public void unregister() {
+        if (objectName == null) return;
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+        } catch (JMException e) {
+            throw new IllegalStateException("Failed to unregister simulation MBean", e);
+        } finally {
+            objectName = null;
+        }
+    }
+
+    public LatencyHistogram getPhase(TickPhase phase) {
+        return phases.get(phase);
+    }
+
+    @Override
+    public long getTicks() {
+        return ticks;
+    }
+
+    @Override
+    public int getLiveAgents() {
+        return liveAgents;
+    }
+
+    @Override
+    public int getLiveTransports() {
+        return liveTransports;
+    }
+
+    @Override
+    public long getBlockedAgentMoves() {
+        return blockedAgentMoves.sum();
+    }
+
+    @Override
+    public long getBlockedTransportMoves() {
+        return blockedTransportMoves.sum();
+    }
+
+    @Override
+    public double getTickMeanMicros() {
+        return tickLatency.getMeanNanos() / 1e3;
+    }
+
+    @Override
+    public double getTickP99Micros() {
+        return tickLatency.getPercentileNanos(99) / 1e3;
+    }
+
+    @Override
+    public double getTickMaxMicros() {
+        return tickLatency.getMaxNanos() / 1e3;
+    }
+
+    @Override
+    public String[] getPhaseNames() {
+        String[] names = new String[PHASES.length];
+        for (TickPhase phase : PHASES) {
+            names[phase.ordinal()] = phase.name();
+        }
+        return names;
+    }
+
+    @Override
+    public double[] getPhaseMeanMicros() {
+        double[] means = new double[PHASES.length];
+        for (TickPhase phase : PHASES) {
+            means[phase.ordinal()] = phases.get(phase).getMeanNanos() / 1e3;
+        }
+        return means;
+    }
+
+    @Override
+    public double[] getPhaseP99Micros() {
+        double[] percentiles = new double[PHASES.length];
+        for (TickPhase phase : PHASES) {
+            percentiles[phase.ordinal()] = phases.get(phase).getPercentileNanos(99) / 1e3;
+        }
+        return percentiles;
+    }
+
+    @Override
+    public double getAgentStepWaitMeanMicros() {
+        return agentStepWait.getMeanNanos() / 1e3;
+    }
+
+    @Override
+    public long getMapLockAcquisitions() {
+        return mapLockWait.getCount();
+    }
+
+    @Override
+    public double getMapLockWaitTotalMillis() {
+        return mapLockWait.getTotalNanos() / 1e6;
+    }
+
+    @Override
+    public double getMapLockWaitP99Micros() {
+        return mapLockWait.getPercentileNanos(99) / 1e3;
+    }
+
+    @Override
+    public double getMapLockHoldTotalMillis() {
+        return mapLockHold.getTotalNanos() / 1e6;
+    }
+
+    @Override
+    public String getSummary() {
+        StringBuilder summary = new StringBuilder();
+        summary.append(String.format("Ticks: %d, tick mean %.1f us, p99 %.1f us, max %.1f us%n",
+                ticks, getTickMeanMicros(), getTickP99Micros(), getTickMaxMicros()));
+        for (TickPhase phase : PHASES) {
+            LatencyHistogram histogram = phases.get(phase);
+            summary.append(String.format("  %-17s mean %9.1f us, p99 %9.1f us%n", phase,
+                    histogram.getMeanNanos() / 1e3, histogram.getPercentileNanos(99) / 1e3));
+        }
+        summary.append(String.format("Agent step wait: mean %.1f us%n", getAgentStepWaitMeanMicros()));
+        summary.append(String.format("Map lock: %d acquisitions, wait %.2f ms total (p99 %.1f us), hold %.2f ms total%n",
+                getMapLockAcquisitions(), getMapLockWaitTotalMillis(), getMapLockWaitP99Micros(),
+                getMapLockHoldTotalMillis()));
+        summary.append(String.format("Blocked moves: agents %d, transport %d; live agents %d, transport %d",
+                getBlockedAgentMoves(), getBlockedTransportMoves(), liveAgents, liveTransports));
+        return summary.toString();
+    }
+}
@@ -0,0 +1,37 @@
+package com.hippomaru.douckieTown.metrics;
+
+public interface SimulationMetricsMBean {
+    long getTicks();
+
+    int getLiveAgents();
+
+    int getLiveTransports();
+
+    long getBlockedAgentMoves();
+
+    long getBlockedTransportMoves();
+
+    double getTickMeanMicros();
+
+    double getTickP99Micros();
+
+    double getTickMaxMicros();
+
+    String[] getPhaseNames();
+
+    double[] getPhaseMeanMicros();
+
+    double[] getPhaseP99Micros();
+
+    double getAgentStepWaitMeanMicros();
+
+    long getMapLockAcquisitions();
+
+    double getMapLockWaitTotalMillis();
+
+    double getMapLockWaitP99Micros();
+
+    double getMapLockHoldTotalMillis();
+
+    String getSummary();
+}
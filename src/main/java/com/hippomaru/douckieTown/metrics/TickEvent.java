@@ -0,0 +1,52 @@
+package com.hippomaru.douckieTown.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+@Name("com.hippomaru.douckieTown.Tick")
+@Label("Simulation Tick")
+@Category("Douckie Town")
+@Description("One GameManager.doStep() with per-phase durations")
+@StackTrace(false)
+public class TickEvent extends Event {
+    @Label("Tick")
+    long tick;
+
+    @Label("Despawn Agents")
+    @Timespan(Timespan.NANOSECONDS)
+    long despawnAgents;
+
+    @Label("Despawn Transport")
+    @Timespan(Timespan.NANOSECONDS)
+    long despawnTransport;
+
+    @Label("Move Agents")
+    @Timespan(Timespan.NANOSECONDS)
+    long moveAgents;
+
+    @Label("Move Transport")
+    @Timespan(Timespan.NANOSECONDS)
+    long moveTransport;
+
+    @Label("Spawn Agents")
+    @Timespan(Timespan.NANOSECONDS)
+    long spawnAgents;
+
+    @Label("Spawn Transport")
+    @Timespan(Timespan.NANOSECONDS)
+    long spawnTransport;
+
+    @Label("Live Agents")
+    int liveAgents;
+
+    @Label("Live Transport")
+    int liveTransports;
+
+    @Label("Blocked Moves")
+    long blockedMoves;
+}
@@ -0,0 +1,5 @@
+package com.hippomaru.douckieTown.metrics;
+
+public enum TickPhase {
+    DESPAWN_AGENTS, DESPAWN_TRANSPORT, MOVE_AGENTS, MOVE_TRANSPORT, SPAWN_AGENTS, SPAWN_TRANSPORT
+}
@@ -1,154 +1,233 @@
 package com.hippomaru.douckieTown.model.interactive;
 
-import com.hippomaru.douckieTown.model.map.Cell;
+import com.hippomaru.douckieTown.metrics.SimulationMetrics;
 import com.hippomaru.douckieTown.model.map.CellGrid;
-import com.hippomaru.douckieTown.model.map.CellType;
 import com.hippomaru.douckieTown.model.map.Coords;
+import com.hippomaru.douckieTown.model.routing.CongestionAwarePlanner;
+import com.hippomaru.douckieTown.model.routing.HierarchicalPath;
+import com.hippomaru.douckieTown.model.routing.HierarchicalPlanner;
 import lombok.Getter;
 import lombok.Setter;
 import lombok.ToString;
 
-import java.util.*;
-import java.util.concurrent.CountDownLatch;
+import java.util.Arrays;
 
 @Getter
 @Setter
 @ToString
-public class Agent extends TrafficMember implements Runnable {
+public class Agent extends TrafficMember {
+    public static final int STAY = -1;
+    public static final int WAIT = -2;
+    private static final int REPLAN_AFTER_BLOCKED_TICKS = 3;
+
     private Coords[] chosenRoute;
+    // Позиция в chosenRoute; после перепланирования маршрут начинается с текущей клетки
+    private int routeCursor = 0;
     private int successStepsCounter = 0;
     private int stepsCounter = 0;
+    // Подряд заблокированные тики (сбрасывается при шаге и перепланировании) и все заблокированные за поездку
+    private int blockedTicks = 0;
+    private int blockedStepsCounter = 0;
+    private int replansCounter = 0;
+    // Тик GameManager, с которого агент на карте
+    private long spawnTick = 0;
     private Coords currentCoords;
+    @ToString.Exclude
     private CellGrid map;
+    @ToString.Exclude
+    private CongestionAwarePlanner planner;
+    // Ещё не достроенные участки маршрута HPA*; chosenRoute - текущий участок
+    @ToString.Exclude
+    private HierarchicalPath hierarchicalPath;
+    // Цель HPA*: если задана, перепланирование при заторе продолжает маршрут иерархически
+    @ToString.Exclude
+    private HierarchicalPlanner.Destination destination;
+    @ToString.Exclude
+    private SimulationMetrics metrics;
+    // Ход, выбранный последним prepareStep
+    @ToString.Exclude
+    private int pendingIntent = STAY;
+
+    public void step() {
+        long requested = metrics != null ? System.nanoTime() : 0;
+        synchronized (map) {
+            long acquired = metrics != null ? System.nanoTime() : 0;
+            stepLocked();
+            if (metrics != null) {
+                metrics.recordMapLock(acquired - requested, System.nanoTime() - acquired);
+            }
+        }
+    }
 
-    private volatile boolean running = true;
-    private volatile boolean stepRequested = false;
-    private final Object stepLock = new Object();
-    private CountDownLatch stepLatch;
+    private void stepLocked() {
+        commitStep(planStep(planner));
+    }
 
-    @Override
-    public void run() {
-        while (running) {
-            synchronized (stepLock) {
-                while (!stepRequested && running) {
-                    try {
-                        stepLock.wait();
-                    } catch (InterruptedException e) {
-                        Thread.currentThread().interrupt();
-                        return;
-                    }
-                }
-                if (!running) break;
-                stepRequested = false;
-            }
+    // Выбор хода без изменения карты: можно вызывать параллельно для разных агентов,
+    // пока занятость карты не меняется. Ход применяет движок через applyStep
+    public void prepareStep() {
+        pendingIntent = planStep(planner);
+    }
 
-            synchronized (map) {
-                Coords nextCoords = getNextCoords();
-                if (nextCoords == null) {
-                    stepsCounter++;
-                } else {
-                    Cell curCell = map.getGrid()[currentCoords.x()][currentCoords.y()];
-                    Cell nextCell = map.getGrid()[nextCoords.x()][nextCoords.y()];
-                    if (nextCell.getCarriedEntity() == null) {
-                        curCell.setCarriedEntity(null);
-                        nextCell.setCarriedEntity(this);
-                        currentCoords = nextCoords;
-                        successStepsCounter++;
-                    }
-                    stepsCounter++;
-                }
-            }
+    private void commitStep(int intent) {
+        boolean moved = false;
+        if (intent >= 0 && !map.isOccupied(intent)) {
+            map.setOccupant(currentCoords, null);
+            map.setOccupant(intent, this);
+            moved = true;
+        }
+        applyStep(intent, moved);
+    }
 
-            if (stepLatch != null) {
-                stepLatch.countDown();
-                stepLatch = null;
+    // Первая половина шага для движков, которые сами разрешают конфликты ходов:
+    // перепланирование при долгой блокировке и выбор клетки. Занятость карты не меняет.
+    public int planStep(CongestionAwarePlanner stepPlanner) {
+        if (stepPlanner != null && blockedTicks >= REPLAN_AFTER_BLOCKED_TICKS) {
+            replan(stepPlanner);
+        }
+        if (hierarchicalPath != null && routeCursor + 1 >= chosenRoute.length) {
+            chosenRoute = hierarchicalPath.nextSegment();
+            routeCursor = 0;
+            if (!hierarchicalPath.hasNextSegment()) {
+                hierarchicalPath = null;
             }
         }
+        Coords nextCoords = getNextCoords();
+        if (nextCoords == null) return STAY;
+        // Запланированное ожидание
+        if (nextCoords.equals(currentCoords)) return WAIT;
+        return map.index(nextCoords);
     }
 
-    public void requestStep() {
-        synchronized (stepLock) {
-            stepRequested = true;
-            stepLock.notify();
+    // Вторая половина шага: moved - удалось ли занять клетку из planStep
+    public void applyStep(int intent, boolean moved) {
+        if (intent == WAIT) {
+            routeCursor++;
+        } else if (intent >= 0) {
+            if (moved) {
+                currentCoords = chosenRoute[routeCursor + 1];
+                routeCursor++;
+                successStepsCounter++;
+                blockedTicks = 0;
+            } else {
+                blockedTicks++;
+                blockedStepsCounter++;
+                if (metrics != null) {
+                    metrics.recordBlockedAgentMove();
+                }
+            }
         }
+        stepsCounter++;
     }
 
-    public void prepareStep(CountDownLatch latch) {
-        this.stepLatch = latch;
+    // Сколько ещё тиков подряд агент простоит заблокированным до перепланирования
+    public int blockedTicksBeforeReplan() {
+        return planner == null ? Integer.MAX_VALUE : REPLAN_AFTER_BLOCKED_TICKS - blockedTicks;
     }
 
-    public void stop() {
-        running = false;
-        synchronized (stepLock) {
-            stepLock.notify();
+    // Досчитывает тики, которые агент проспал заблокированным в активном наборе:
+    // пока клетка занята, каждый такой тик - неудачный шаг без перепланирования
+    public void skipBlockedTicks(int ticks) {
+        if (ticks <= 0) return;
+        blockedTicks += ticks;
+        blockedStepsCounter += ticks;
+        stepsCounter += ticks;
+        if (metrics != null) {
+            metrics.recordBlockedAgentMoves(ticks);
         }
     }
 
-    public void analyzeMap(CellGrid map, Coords start, List<Coords> finishCoords) {
-        // Размеры карты
-        int width = map.getWidth();
-        int height = map.getHeight();
-
-        boolean[][] visited = new boolean[height][width];
-
-        Queue<Coords> queue = new LinkedList<>();
-
-        Map<Coords, Coords> parentMap = new HashMap<>();
-
-        queue.add(start);
-        visited[start.y()][start.x()] = true;
-        parentMap.put(start, null);
-        Coords finish = null;
-
-        int[] dx = {0, 0, -1, 1};
-        int[] dy = {-1, 1, 0, 0};
-
-        while (!queue.isEmpty()) {
-            Coords current = queue.poll();
-
-            if (finishCoords.contains(current)) {
-                finish = current;
-                break;
-            }
-
-            for (int i = 0; i < 4; i++) {
-                int nx = current.x() + dx[i];
-                int ny = current.y() + dy[i];
-
-                if (nx < 0 || nx >= width || ny < 0 || ny >= height) {
-                    continue;
-                }
+    // Досчитывает тики, которые агент проспал в заторе: занятость в радиусе штрафа не менялась,
+    // поэтому каждый тик - неудачный шаг, а перепланирование раз в REPLAN_AFTER_BLOCKED_TICKS тиков
+    // строит тот же маршрут. replanFound - находит ли оно маршрут (иначе счётчик перепланирований стоит)
+    public void skipGridlockTicks(int ticks, boolean replanFound) {
+        if (ticks <= 0) return;
+        int cycled = blockedTicks + ticks - 1;
+        if (replanFound) {
+            replansCounter += cycled / REPLAN_AFTER_BLOCKED_TICKS - (blockedTicks - 1) / REPLAN_AFTER_BLOCKED_TICKS;
+        }
+        blockedTicks = cycled % REPLAN_AFTER_BLOCKED_TICKS + 1;
+        blockedStepsCounter += ticks;
+        stepsCounter += ticks;
+        if (metrics != null) {
+            metrics.recordBlockedAgentMoves(ticks);
+        }
+    }
 
-                Cell cell = map.getGrid()[nx][ny];
-                if (visited[ny][nx] || cell.getCellType() == CellType.WALL) {
-                    continue;
-                }
+    // Досчитывает тики, когда агент в одиночку шёл по коридору: каждый тик - удачный шаг по маршруту
+    public void skipFreeSteps(int steps) {
+        if (steps <= 0) return;
+        routeCursor += steps;
+        currentCoords = chosenRoute[routeCursor];
+        successStepsCounter += steps;
+        stepsCounter += steps;
+        blockedTicks = 0;
+    }
 
-                Coords neighbor = new Coords(nx, ny);
-                queue.add(neighbor);
-                visited[ny][nx] = true;
-                parentMap.put(neighbor, current);
+    private void replan(CongestionAwarePlanner stepPlanner) {
+        if (destination == null || !replanHierarchically(stepPlanner)) {
+            Coords[] route = stepPlanner.plan(currentCoords);
+            if (route != null) {
+                chosenRoute = route;
+                routeCursor = 0;
+                hierarchicalPath = null;
+                replansCounter++;
             }
         }
+        blockedTicks = 0;
+    }
 
-        if (finish != null) {
-            List<Coords> path = new ArrayList<>();
-            Coords current = finish;
-
-            while (current != null) {
-                path.add(current);
-                current = parentMap.get(current);
-            }
+    // Обход затора с учётом занятости в радиусе штрафа, дальше - HPA* от конца обхода
+    private boolean replanHierarchically(CongestionAwarePlanner stepPlanner) {
+        Coords[] detour = stepPlanner.planDetour(currentCoords);
+        if (detour == null) return false;
+        HierarchicalPath path = destination.plan(detour[detour.length - 1]);
+        if (path == null) return false;
+        Coords[] segment = path.nextSegment();
+        Coords[] route = Arrays.copyOf(detour, detour.length + segment.length - 1);
+        System.arraycopy(segment, 1, route, detour.length, segment.length - 1);
+        chosenRoute = route;
+        routeCursor = 0;
+        hierarchicalPath = path.hasNextSegment() ? path : null;
+        replansCounter++;
+        return true;
+    }
 
-            Collections.reverse(path);
-            this.chosenRoute = path.toArray(new Coords[0]);
+    public void analyzeMap(CellGrid map, Coords start) {
+        this.chosenRoute = map.getFinishDistanceField().extractRoute(start);
+    }
 
+    // Маршрут HPA*: первый участок сразу, остальные - по мере продвижения в planStep.
+    // Если HPA* пути не нашёл, агент едет по полю расстояний, как без HPA*.
+    public void followPath(HierarchicalPath path) {
+        if (path == null) {
+            analyzeMap(map, currentCoords);
+            hierarchicalPath = null;
         } else {
-            this.chosenRoute = new Coords[0];
+            chosenRoute = path.nextSegment();
+            hierarchicalPath = path.hasNextSegment() ? path : null;
         }
+        routeCursor = 0;
+    }
+
+    // Достраивает все оставшиеся участки в chosenRoute, например перед записью снимка
+    public void refineRemainingRoute() {
+        if (hierarchicalPath == null) return;
+        Coords[] rest = hierarchicalPath.remainingRoute();
+        Coords[] route = Arrays.copyOf(chosenRoute, chosenRoute.length + rest.length - 1);
+        System.arraycopy(rest, 1, route, chosenRoute.length, rest.length - 1);
+        chosenRoute = route;
+        hierarchicalPath = null;
     }
 
     public Coords getNextCoords() {
-        return chosenRoute[successStepsCounter + 1];
+        int nextIndex = routeCursor + 1;
+        if (nextIndex >= chosenRoute.length) return null;
+        return chosenRoute[nextIndex];
+    }
+
+    @Override
+    public EntityKind getKind() {
+        return EntityKind.AGENT;
     }
 }
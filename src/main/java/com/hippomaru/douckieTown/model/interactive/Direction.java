@@ -1,5 +1,31 @@
 package com.hippomaru.douckieTown.model.interactive;
 
+import java.util.random.RandomGenerator;
+
 public enum Direction {
     UP, DOWN, LEFT, RIGHT;
+
+    private static final Direction[] VALUES = values();
+
+    public static Direction byOrdinal(int ordinal) {
+        return VALUES[ordinal];
+    }
+
+    public int bit() {
+        return 1 << ordinal();
+    }
+
+    public boolean in(int directionsMask) {
+        return (directionsMask & bit()) != 0;
+    }
+
+    // Случайное направление из непустой маски без промежуточных списков
+    public static Direction randomFrom(int directionsMask, RandomGenerator random) {
+        int skip = random.nextInt(Integer.bitCount(directionsMask));
+        int mask = directionsMask;
+        for (int i = 0; i < skip; i++) {
+            mask &= mask - 1;
+        }
+        return VALUES[Integer.numberOfTrailingZeros(mask)];
+    }
 }
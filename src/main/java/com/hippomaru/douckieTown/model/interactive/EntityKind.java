@@ -0,0 +1,5 @@
+package com.hippomaru.douckieTown.model.interactive;
+
+public enum EntityKind {
+    AGENT, TRANSPORT
+}
@@ -8,4 +8,8 @@ import lombok.Setter;
 @Setter
 public abstract class TrafficMember {
     protected Direction currentDirection;
+    // Id в таблице сущностей CellGrid, 0 пока сущность не размещена на карте
+    protected int id;
+
+    public abstract EntityKind getKind();
 }
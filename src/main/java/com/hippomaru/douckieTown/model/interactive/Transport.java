@@ -1,31 +1,70 @@
 package com.hippomaru.douckieTown.model.interactive;
 
-import com.hippomaru.douckieTown.model.map.Coords;
+import com.hippomaru.douckieTown.model.map.CellGrid;
+import com.hippomaru.douckieTown.model.map.TransportStore;
 import lombok.Getter;
-import lombok.Setter;
 
-import java.util.List;
-import java.util.Random;
+import java.util.random.RandomGenerator;
 
-@Getter
-@Setter
+// Ручка на состояние транспорта в TransportStore своей карты: поля лежат в массивах по id.
+// Создаётся только TransportStore.spawn и переиспользуется после деспавна, поэтому ссылки
+// на транспорт нельзя хранить после CellGrid.release.
 public class Transport extends TrafficMember{
-    private final Random random = new Random();
-    private final int possibleStepsCount = random.nextInt(135) + 15;
-    private int stepsCounter;
-    private int waitCounter = 0;
+    private static final int MIN_STEPS_COUNT = 15;
+    private static final int STEPS_COUNT_SPREAD = 135;
 
-    public void chooseDirection(List<Direction> possibleDirections){
-        currentDirection = possibleDirections.get(random.nextInt(possibleDirections.size()));
+    @Getter
+    private final TransportStore store;
+
+    public Transport(TransportStore store) {
+        this.store = store;
+    }
+
+    // Срок жизни нового транспорта в шагах
+    public static int randomStepsCount(RandomGenerator random) {
+        return random.nextInt(STEPS_COUNT_SPREAD) + MIN_STEPS_COUNT;
+    }
+
+    public int getPossibleStepsCount() {
+        return store.getLifetime(id);
+    }
+
+    public int getStepsCounter() {
+        return store.getStepsCounter(id);
+    }
+
+    public void setStepsCounter(int stepsCounter) {
+        store.setStepsCounter(id, stepsCounter);
+    }
+
+    public int getWaitCounter() {
+        return store.getWaitCounter(id);
+    }
+
+    public void setWaitCounter(int waitCounter) {
+        store.setWaitCounter(id, waitCounter);
+    }
+
+    @Override
+    public Direction getCurrentDirection() {
+        return store.getDirection(id);
     }
 
+    @Override
+    public void setCurrentDirection(Direction currentDirection) {
+        store.setDirection(id, currentDirection);
+    }
+
+    public void chooseDirection(int possibleDirections, RandomGenerator random){
+        setCurrentDirection(Direction.randomFrom(possibleDirections, random));
+    }
+
+    public int getNextIndex(CellGrid map, int curIndex) {
+        return map.neighbour(curIndex, getCurrentDirection());
+    }
 
-    public Coords getNextCoords(Coords curCoords) {
-        return switch (currentDirection){
-            case UP -> new Coords(curCoords.x(), curCoords.y() + 1);
-            case DOWN -> new Coords(curCoords.x(), curCoords.y() - 1);
-            case LEFT -> new Coords(curCoords.x() - 1, curCoords.y());
-            case RIGHT -> new Coords(curCoords.x() + 1, curCoords.y());
-        };
+    @Override
+    public EntityKind getKind() {
+        return EntityKind.TRANSPORT;
     }
 }
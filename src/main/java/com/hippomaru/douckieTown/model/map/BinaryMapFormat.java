@@ -0,0 +1,189 @@
+package com.hippomaru.douckieTown.model.map;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// Бинарный формат карты: заголовок (magic, версия, width, height) и типы клеток по 4 бита,
+// две клетки на байт в порядке плоского индекса x * height + y (младший полубайт - чётный индекс)
+public final class BinaryMapFormat {
+    public static final String EXTENSION = ".dtmap";
+
+    private static final int MAGIC = 0x44544D50; // "DTMP"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 16;
+    private static final int WIDTH_OFFSET = 8;
+    // Один MappedByteBuffer не может быть больше 2 ГБ, поэтому большие файлы мапим кусками
+    private static final long MAX_CHUNK = 1L << 30;
+
+    private BinaryMapFormat() {
+    }
+
+    public static boolean isBinary(Path path) {
+        return path.getFileName().toString().endsWith(EXTENSION);
+    }
+
+    // Построчное преобразование текстового формата 0-4, без загрузки всей карты в память
+    public static void convertText(Path textFile, Path binaryFile) {
+        try (BufferedReader reader = Files.newBufferedReader(textFile);
+             FileChannel channel = FileChannel.open(binaryFile, StandardOpenOption.CREATE,
+                     StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            OutputStream out = new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16);
+            writeHeader(out, 0, 0);
+            CellPacker packer = new CellPacker(out);
+
+            int width = 0;
+            int height = -1;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty()) continue;
+                if (height == -1) {
+                    height = line.length();
+                } else if (line.length() != height) {
+                    throw new IllegalArgumentException("Inconsistent row length at line " + (width + 1));
+                }
+                for (int y = 0; y < height; y++) {
+                    char c = line.charAt(y);
+                    if (c < '0' || c > '4') {
+                        throw new IllegalArgumentException("Invalid character '" + c + "' at (" + (width + 1) + "," + (y + 1) + ")");
+                    }
+                    packer.write(CellType.getTypeByCode(c - '0').ordinal());
+                }
+                width++;
+            }
+            if (width == 0) {
+                throw new IllegalArgumentException("Empty map file: " + textFile);
+            }
+            packer.finish();
+            out.flush();
+
+            // Размеры известны только после чтения всего файла
+            ByteBuffer dimensions = ByteBuffer.allocate(8).putInt(width).putInt(height).flip();
+            channel.write(dimensions, WIDTH_OFFSET);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to convert map: " + textFile, e);
+        }
+    }
+
+    public static void write(CellGrid map, Path binaryFile) {
+        write(map.getTopology(), binaryFile);
+    }
+
+    public static void write(MapTopology map, Path binaryFile) {
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(binaryFile), 1 << 16)) {
+            writeHeader(out, map.getWidth(), map.getHeight());
+            CellPacker packer = new CellPacker(out);
+            for (int index = 0; index < map.size(); index++) {
+                packer.write(map.getCellType(index).ordinal());
+            }
+            packer.finish();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write map: " + binaryFile, e);
+        }
+    }
+
+    public static CellGrid read(Path binaryFile) {
+        return new CellGrid(readTopology(binaryFile));
+    }
+
+    // Читает файл через FileChannel.map и распаковывает полубайты прямо в итоговый массив типов.
+    // Повреждённый заголовок или длина данных, не совпадающая с размерами, - IOException формата
+    public static MapTopology readTopology(Path binaryFile) {
+        try (FileChannel channel = FileChannel.open(binaryFile, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_SIZE) {
+                throw new IOException("Not a binary map file: " + binaryFile);
+            }
+            MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+            if (header.getInt() != MAGIC) {
+                throw new IOException("Not a binary map file: " + binaryFile);
+            }
+            int version = header.getInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported binary map version " + version + ": " + binaryFile);
+            }
+            int width = header.getInt();
+            int height = header.getInt();
+            if (width <= 0 || height <= 0) {
+                throw new IOException("Invalid map size " + width + "x" + height + " in " + binaryFile);
+            }
+            long cells = (long) width * height;
+            if (cells > Integer.MAX_VALUE) {
+                throw new IOException("Map is too large: " + width + "x" + height + " in " + binaryFile);
+            }
+            long dataSize = (cells + 1) / 2;
+            if (channel.size() != HEADER_SIZE + dataSize) {
+                throw new IOException("Map size " + width + "x" + height + " needs " + dataSize
+                        + " bytes of cells, file has " + (channel.size() - HEADER_SIZE) + ": " + binaryFile);
+            }
+
+            byte[] cellTypes = new byte[(int) cells];
+            int typesCount = CellType.values().length;
+            int index = 0;
+            for (long offset = 0; offset < dataSize; offset += MAX_CHUNK) {
+                long chunkSize = Math.min(MAX_CHUNK, dataSize - offset);
+                MappedByteBuffer chunk = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE + offset, chunkSize);
+                for (int i = 0; i < chunkSize; i++) {
+                    int packed = chunk.get(i);
+                    int low = packed & 0x0F;
+                    int high = (packed >>> 4) & 0x0F;
+                    if (low >= typesCount || (index + 1 < cells && high >= typesCount)) {
+                        throw new IOException("Invalid cell type at offset " + (HEADER_SIZE + offset + i) + ": " + binaryFile);
+                    }
+                    cellTypes[index++] = (byte) low;
+                    if (index < cells) {
+                        cellTypes[index++] = (byte) high;
+                    }
+                }
+            }
+            return new MapTopology(width, height, cellTypes);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read map: " + binaryFile, e);
+        }
+    }
+
+    static void writeHeader(OutputStream out, int width, int height) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE)
+                .putInt(MAGIC)
+                .putInt(VERSION)
+                .putInt(width)
+                .putInt(height);
+        out.write(header.array());
+    }
+
+    // Потоковая упаковка типов клеток (ordinal) по два на байт в порядке плоского индекса
+    static final class CellPacker {
+        private final OutputStream out;
+        private int pending = -1;
+
+        CellPacker(OutputStream out) {
+            this.out = out;
+        }
+
+        void write(int type) throws IOException {
+            if (pending == -1) {
+                pending = type;
+            } else {
+                out.write(pending | (type << 4));
+                pending = -1;
+            }
+        }
+
+        // Нечётное число клеток: последний полубайт дописывается с нулевым старшим
+        void finish() throws IOException {
+            if (pending != -1) {
+                out.write(pending);
+                pending = -1;
+            }
+        }
+    }
+}
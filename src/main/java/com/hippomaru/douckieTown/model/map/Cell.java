@@ -1,19 +1,28 @@
 package com.hippomaru.douckieTown.model.map;
 
 import com.hippomaru.douckieTown.model.interactive.TrafficMember;
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.RequiredArgsConstructor;
-import lombok.Setter;
 
+// Представление клетки поверх плоских массивов CellGrid
 @Getter
-@Setter
-@RequiredArgsConstructor
+@RequiredArgsConstructor(access = AccessLevel.PACKAGE)
 public class Cell {
 
+    @Getter(AccessLevel.NONE)
+    private final CellGrid grid;
+    @Getter(AccessLevel.NONE)
+    private final int index;
     private final CellType cellType;
     private final Coords coords;
 
-    private TrafficMember carriedEntity = null;
+    public TrafficMember getCarriedEntity() {
+        return grid.getOccupant(index);
+    }
 
-}
+    public void setCarriedEntity(TrafficMember carriedEntity) {
+        grid.setOccupant(index, carriedEntity);
+    }
 
+}
@@ -1,73 +1,187 @@
 package com.hippomaru.douckieTown.model.map;
 
+import com.hippomaru.douckieTown.model.interactive.Direction;
+import com.hippomaru.douckieTown.model.interactive.TrafficMember;
+import com.hippomaru.douckieTown.model.interactive.Transport;
 import lombok.Getter;
-import lombok.Setter;
 
-import java.io.BufferedReader;
-import java.io.FileReader;
-import java.io.IOException;
-import java.util.ArrayList;
-import java.util.List;
+import java.nio.file.Path;
+import java.util.function.IntConsumer;
 
-@Getter
-@Setter
+// Слой занятости одной симуляции поверх общей неизменяемой MapTopology.
+// Своё здесь только динамическое состояние: occupants, реестр сущностей и состояние транспорта.
 public class CellGrid {
+    @Getter
+    private final MapTopology topology;
+    @Getter
     private final int width;
+    @Getter
     private final int height;
-    private final Cell[][] grid;
+    private final int[] occupants;
 
+    @Getter
+    private final EntityRegistry entities = new EntityRegistry(this);
+    @Getter
+    private final TransportStore transports;
+
+    // Вызывается с индексом клетки, которую освободили; движок активного набора будит по нему ожидающих
+    private IntConsumer vacancyListener;
+
+    // Объектное представление для старого кода, строится только по требованию
+    private Cell[][] grid;
+
+    // Формат определяется по расширению: .dtmap - бинарный, иначе текстовый 0-4.
+    // Топология берётся из MapRegistry, поэтому повторная загрузка того же файла не разбирает его заново
+    public static CellGrid load(Path path) {
+        return new CellGrid(MapRegistry.topology(path));
+    }
 
     public CellGrid(String filePath){
-        this(parseFileToEncodedGrid(filePath));
+        this(MapTopology.fromTextFile(filePath));
     }
 
     public CellGrid(int[][] encodedGrid){
-        width = encodedGrid.length;
-        height = encodedGrid[0].length;
-        grid = new Cell[width][height];
-        for (var x=0; x < width; x++){
-            for (var y=0; y < height; y++){
-                CellType cellType = CellType.getTypeByCode(encodedGrid[x][y]);
-                Coords coords = new Coords(x, y);
-                grid[x][y] = new Cell(cellType, coords);
+        this(MapTopology.fromEncoded(encodedGrid));
+    }
+
+    public CellGrid(int width, int height, byte[] cellTypes){
+        this(new MapTopology(width, height, cellTypes));
+    }
+
+    public CellGrid(MapTopology topology) {
+        this.topology = topology;
+        this.width = topology.getWidth();
+        this.height = topology.getHeight();
+        this.occupants = new int[topology.size()];
+        this.transports = new TransportStore(this, entities);
+    }
+
+    public int size() {
+        return occupants.length;
+    }
+
+    public int index(int x, int y) {
+        return x * height + y;
+    }
+
+    public int index(Coords coords) {
+        return index(coords.x(), coords.y());
+    }
+
+    public int xOf(int index) {
+        return index / height;
+    }
+
+    public int yOf(int index) {
+        return index % height;
+    }
+
+    public Coords coordsOf(int index) {
+        return new Coords(xOf(index), yOf(index));
+    }
+
+    public boolean isInside(int x, int y) {
+        return x >= 0 && x < width && y >= 0 && y < height;
+    }
+
+    public CellType getCellType(int index) {
+        return topology.getCellType(index);
+    }
+
+    public CellType getCellType(int x, int y) {
+        return topology.getCellType(x, y);
+    }
+
+    public boolean isPassable(int index) {
+        return topology.isPassable(index);
+    }
+
+    public int getPassableDirections(int index) {
+        return topology.getPassableDirections(index);
+    }
+
+    // Вызывающий проверяет направление по маске getPassableDirections
+    public int neighbour(int index, Direction direction) {
+        return topology.neighbour(index, direction);
+    }
+
+    public boolean isOccupied(int index) {
+        return occupants[index] != EntityRegistry.NO_ENTITY;
+    }
+
+    public int getOccupantId(int index) {
+        return occupants[index];
+    }
+
+    public TrafficMember getOccupant(int index) {
+        int id = occupants[index];
+        return entities.get(id);
+    }
+
+    public TrafficMember getOccupant(Coords coords) {
+        return getOccupant(index(coords));
+    }
+
+    public void setOccupant(int index, TrafficMember member) {
+        int previous = occupants[index];
+        if (previous != EntityRegistry.NO_ENTITY) {
+            entities.clearPosition(previous, index);
+        }
+        if (member == null) {
+            occupants[index] = EntityRegistry.NO_ENTITY;
+            if (previous != EntityRegistry.NO_ENTITY && vacancyListener != null) {
+                vacancyListener.accept(index);
             }
+            return;
         }
+        if (member.getId() == EntityRegistry.NO_ENTITY) {
+            entities.register(member);
+        }
+        occupants[index] = member.getId();
+        entities.updatePosition(member.getId(), index);
     }
 
-    private static int[][] parseFileToEncodedGrid(String filePath) {
-        List<String> lines = new ArrayList<>();
-        try (BufferedReader reader = new BufferedReader(new FileReader(filePath))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                line = line.trim();
-                if (!line.isEmpty()) {
-                    lines.add(line);
-                }
-            }
-        } catch (IOException e) {
-            throw new RuntimeException("Failed to read file: " + filePath, e);
+    // Перенос сущности в свободную клетку to без обращения к объекту; для плотных циклов движения
+    void moveOccupant(int from, int to) {
+        int id = occupants[from];
+        occupants[from] = EntityRegistry.NO_ENTITY;
+        if (vacancyListener != null) {
+            vacancyListener.accept(from);
         }
+        occupants[to] = id;
+        entities.updatePosition(id, to);
+    }
 
-        if (lines.isEmpty()) {
-            return new int[0][0];
+    public void setOccupant(Coords coords, TrafficMember member) {
+        setOccupant(index(coords), member);
+    }
+
+    // Один слушатель на карту; null отключает уведомления
+    public void setVacancyListener(IntConsumer listener) {
+        this.vacancyListener = listener;
+    }
+
+    // Освобождает id сущности после деспавна, чтобы таблица не росла; ручка транспорта уходит в пул
+    public void release(TrafficMember member) {
+        entities.release(member);
+        if (member instanceof Transport transport) {
+            transports.recycle(transport);
         }
+    }
 
-        int height = lines.size();
-        int width = lines.get(0).length();
-        int[][] grid = new int[height][width];
+    public DistanceField getFinishDistanceField() {
+        return topology.getFinishDistanceField();
+    }
 
-        for (int i = 0; i < height; i++) {
-            String line = lines.get(i);
-            if (line.length() != width) {
-                throw new IllegalArgumentException("Inconsistent row length at line " + (i + 1));
-            }
-            for (int j = 0; j < width; j++) {
-                char c = line.charAt(j);
-                if (c < '0' || c > '4') {
-                    throw new IllegalArgumentException("Invalid character '" + c + "' at (" + (i + 1) + "," + (j + 1) + ")");
+    public Cell[][] getGrid() {
+        if (grid == null) {
+            Cell[][] cells = new Cell[width][height];
+            for (var x=0; x < width; x++){
+                for (var y=0; y < height; y++){
+                    cells[x][y] = new Cell(this, index(x, y), getCellType(x, y), new Coords(x, y));
                 }
-                grid[i][j] = c - '0';
             }
+            grid = cells;
         }
         return grid;
     }
@@ -14,6 +14,12 @@ public enum CellType {
             4, FINISH
     );
 
+    private final static CellType[] BY_ORDINAL = values();
+
+    public static CellType byOrdinal(int ordinal){
+        return BY_ORDINAL[ordinal];
+    }
+
     public static CellType getTypeByCode(int code){
         if (!CELL_TYPE_CODES.containsKey(code)) return UNKNOWN;
         return CELL_TYPE_CODES.get(code);
@@ -0,0 +1,222 @@
+package com.hippomaru.douckieTown.model.map;
+
+import com.hippomaru.douckieTown.model.interactive.Direction;
+
+import java.util.Arrays;
+
+// Сжатый граф дорог: узлы - перекрёстки, тупики и особые клетки (спавны, финиши),
+// рёбра - коридоры между ними: цепочки клеток ROAD ровно с двумя проходимыми соседями.
+// Вес ребра - число шагов от узла до узла (клеток коридора + 1). Соседние узлы соединены ребром без клеток.
+// Замкнутое кольцо без узлов получает узел в своей клетке с наименьшим индексом.
+// Строится по статической топологии и разделяется всеми симуляциями на ней.
+public final class CorridorGraph {
+    public static final int NONE = -1;
+
+    private final MapTopology map;
+    // По клетке: номер узла или ребра (NONE, если клетка не узел / не коридор) и позиция в коридоре
+    private final int[] nodeOf;
+    private final int[] edgeOf;
+    private final int[] offsetOf;
+
+    private final int[] nodeCells;
+    private final int nodeCount;
+    // Рёбра: концы и клетки коридора подряд от edgeFrom к edgeTo (CSR по edgeCellsStart)
+    private final int[] edgeFrom;
+    private final int[] edgeTo;
+    private final int[] edgeCellsStart;
+    private final int[] edgeCells;
+    private final int edgeCount;
+    // Рёбра узла (CSR по nodeEdgesStart)
+    private final int[] nodeEdgesStart;
+    private final int[] nodeEdges;
+
+    public static CorridorGraph of(MapTopology map) {
+        return new CorridorGraph(map);
+    }
+
+    private CorridorGraph(MapTopology map) {
+        this.map = map;
+        int size = map.size();
+        nodeOf = new int[size];
+        edgeOf = new int[size];
+        offsetOf = new int[size];
+        Arrays.fill(nodeOf, NONE);
+        Arrays.fill(edgeOf, NONE);
+
+        IntList nodes = new IntList();
+        for (int cell = 0; cell < size; cell++) {
+            if (map.isPassable(cell) && !isCorridorCell(cell)) {
+                nodeOf[cell] = nodes.size;
+                nodes.add(cell);
+            }
+        }
+
+        IntList from = new IntList();
+        IntList to = new IntList();
+        IntList cellsStart = new IntList();
+        IntList cells = new IntList();
+        cellsStart.add(0);
+        for (int node = 0; node < nodes.size; node++) {
+            walkEdges(node, nodes.values[node], from, to, cellsStart, cells);
+        }
+        // Оставшиеся коридорные клетки лежат на кольцах без узлов
+        for (int cell = 0; cell < size; cell++) {
+            if (isCorridorCell(cell) && edgeOf[cell] == NONE && nodeOf[cell] == NONE) {
+                nodeOf[cell] = nodes.size;
+                nodes.add(cell);
+                walkEdges(nodes.size - 1, cell, from, to, cellsStart, cells);
+            }
+        }
+
+        nodeCount = nodes.size;
+        nodeCells = Arrays.copyOf(nodes.values, nodeCount);
+        edgeCount = from.size;
+        edgeFrom = Arrays.copyOf(from.values, edgeCount);
+        edgeTo = Arrays.copyOf(to.values, edgeCount);
+        edgeCellsStart = Arrays.copyOf(cellsStart.values, edgeCount + 1);
+        edgeCells = Arrays.copyOf(cells.values, cells.size);
+
+        nodeEdgesStart = new int[nodeCount + 1];
+        for (int edge = 0; edge < edgeCount; edge++) {
+            nodeEdgesStart[edgeFrom[edge] + 1]++;
+            if (edgeTo[edge] != edgeFrom[edge]) {
+                nodeEdgesStart[edgeTo[edge] + 1]++;
+            }
+        }
+        for (int node = 0; node < nodeCount; node++) {
+            nodeEdgesStart[node + 1] += nodeEdgesStart[node];
+        }
+        nodeEdges = new int[nodeEdgesStart[nodeCount]];
+        int[] filled = Arrays.copyOf(nodeEdgesStart, nodeCount);
+        for (int edge = 0; edge < edgeCount; edge++) {
+            nodeEdges[filled[edgeFrom[edge]]++] = edge;
+            if (edgeTo[edge] != edgeFrom[edge]) {
+                nodeEdges[filled[edgeTo[edge]]++] = edge;
+            }
+        }
+    }
+
+    // Из узла по каждому проходимому направлению до следующего узла.
+    // Ребро уже записано, если его первая клетка занята; ребро без клеток пишет узел с меньшим номером
+    private void walkEdges(int node, int nodeCell, IntList from, IntList to, IntList cellsStart, IntList cells) {
+        int mask = map.getPassableDirections(nodeCell);
+        for (Direction direction : Direction.values()) {
+            if (!direction.in(mask)) continue;
+            int previous = nodeCell;
+            int current = map.neighbour(nodeCell, direction);
+            if (nodeOf[current] != NONE) {
+                if (nodeOf[current] > node) {
+                    from.add(node);
+                    to.add(nodeOf[current]);
+                    cellsStart.add(cells.size);
+                }
+                continue;
+            }
+            if (edgeOf[current] != NONE) continue;
+
+            int edge = from.size;
+            int offset = 0;
+            while (nodeOf[current] == NONE) {
+                edgeOf[current] = edge;
+                offsetOf[current] = offset++;
+                cells.add(current);
+                int next = otherNeighbour(current, previous);
+                previous = current;
+                current = next;
+            }
+            from.add(node);
+            to.add(nodeOf[current]);
+            cellsStart.add(cells.size);
+        }
+    }
+
+    // Второй проходимый сосед коридорной клетки
+    private int otherNeighbour(int cell, int previous) {
+        int mask = map.getPassableDirections(cell);
+        for (Direction direction : Direction.values()) {
+            if (!direction.in(mask)) continue;
+            int neighbour = map.neighbour(cell, direction);
+            if (neighbour != previous) return neighbour;
+        }
+        throw new IllegalStateException("Corridor cell " + cell + " has a single neighbour");
+    }
+
+    private boolean isCorridorCell(int cell) {
+        return map.getCellType(cell) == CellType.ROAD && Integer.bitCount(map.getPassableDirections(cell)) == 2;
+    }
+
+    public MapTopology getMap() {
+        return map;
+    }
+
+    public int getNodeCount() {
+        return nodeCount;
+    }
+
+    public int getEdgeCount() {
+        return edgeCount;
+    }
+
+    public int nodeCell(int node) {
+        return nodeCells[node];
+    }
+
+    public int nodeOf(int cell) {
+        return nodeOf[cell];
+    }
+
+    public int edgeOf(int cell) {
+        return edgeOf[cell];
+    }
+
+    // Номер клетки в коридоре, считая от edgeFrom
+    public int offsetOf(int cell) {
+        return offsetOf[cell];
+    }
+
+    public int edgeFrom(int edge) {
+        return edgeFrom[edge];
+    }
+
+    public int edgeTo(int edge) {
+        return edgeTo[edge];
+    }
+
+    public int edgeCellCount(int edge) {
+        return edgeCellsStart[edge + 1] - edgeCellsStart[edge];
+    }
+
+    public int edgeCell(int edge, int offset) {
+        return edgeCells[edgeCellsStart[edge] + offset];
+    }
+
+    // Вес ребра: шагов от узла до узла
+    public int edgeLength(int edge) {
+        return edgeCellCount(edge) + 1;
+    }
+
+    public int nodeDegree(int node) {
+        return nodeEdgesStart[node + 1] - nodeEdgesStart[node];
+    }
+
+    public int nodeEdge(int node, int i) {
+        return nodeEdges[nodeEdgesStart[node] + i];
+    }
+
+    // Средняя длина коридора в клетках; по ней видно, много ли даст перемотка
+    public double getMeanCorridorLength() {
+        return edgeCount == 0 ? 0 : (double) edgeCells.length / edgeCount;
+    }
+
+    private static final class IntList {
+        int[] values = new int[64];
+        int size;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+    }
+}
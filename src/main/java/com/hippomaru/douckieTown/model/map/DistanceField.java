@@ -0,0 +1,103 @@
+package com.hippomaru.douckieTown.model.map;
+
+import java.util.Arrays;
+
+// Поле расстояний до ближайшей целевой клетки, считается одним BFS от всех целей сразу
+public class DistanceField {
+    public static final int UNREACHABLE = -1;
+    public static final int NO_HOP = -1;
+
+    private final MapTopology map;
+    private final int[] distances;
+    private final int[] nextHops;
+
+    public DistanceField(CellGrid map, int[] targetIndices) {
+        this(map.getTopology(), targetIndices);
+    }
+
+    public DistanceField(MapTopology map, int[] targetIndices) {
+        this.map = map;
+        int size = map.size();
+        distances = new int[size];
+        nextHops = new int[size];
+        Arrays.fill(distances, UNREACHABLE);
+        Arrays.fill(nextHops, NO_HOP);
+
+        int[] queue = new int[size];
+        int head = 0;
+        int tail = 0;
+        for (int target : targetIndices) {
+            if (distances[target] == UNREACHABLE && map.isPassable(target)) {
+                distances[target] = 0;
+                queue[tail++] = target;
+            }
+        }
+
+        int width = map.getWidth();
+        int height = map.getHeight();
+        while (head < tail) {
+            int current = queue[head++];
+            int x = map.xOf(current);
+            int y = map.yOf(current);
+            int nextDistance = distances[current] + 1;
+
+            // Соседи в порядке DOWN, UP, LEFT, RIGHT
+            if (y > 0) tail = visit(current, current - 1, nextDistance, queue, tail);
+            if (y < height - 1) tail = visit(current, current + 1, nextDistance, queue, tail);
+            if (x > 0) tail = visit(current, current - height, nextDistance, queue, tail);
+            if (x < width - 1) tail = visit(current, current + height, nextDistance, queue, tail);
+        }
+    }
+
+    public static DistanceField toCellType(CellGrid map, CellType targetType) {
+        return toCellType(map.getTopology(), targetType);
+    }
+
+    public static DistanceField toCellType(MapTopology map, CellType targetType) {
+        int[] targets = new int[map.size()];
+        int count = 0;
+        for (int index = 0; index < map.size(); index++) {
+            if (map.getCellType(index) == targetType) {
+                targets[count++] = index;
+            }
+        }
+        return new DistanceField(map, Arrays.copyOf(targets, count));
+    }
+
+    private int visit(int from, int neighbour, int distance, int[] queue, int tail) {
+        if (distances[neighbour] != UNREACHABLE || !map.isPassable(neighbour)) {
+            return tail;
+        }
+        distances[neighbour] = distance;
+        nextHops[neighbour] = from;
+        queue[tail] = neighbour;
+        return tail + 1;
+    }
+
+    public int getDistance(int index) {
+        return distances[index];
+    }
+
+    public int getNextHop(int index) {
+        return nextHops[index];
+    }
+
+    public boolean isReachable(int index) {
+        return distances[index] != UNREACHABLE;
+    }
+
+    // Маршрут от start до ближайшей цели включительно, пустой если цель недостижима
+    public Coords[] extractRoute(Coords start) {
+        int current = map.index(start);
+        if (!isReachable(current)) {
+            return new Coords[0];
+        }
+        Coords[] route = new Coords[distances[current] + 1];
+        route[0] = start;
+        for (int i = 1; i < route.length; i++) {
+            current = nextHops[current];
+            route[i] = map.coordsOf(current);
+        }
+        return route;
+    }
+}
@@ -0,0 +1,220 @@
+package com.hippomaru.douckieTown.model.map;
+
+import com.hippomaru.douckieTown.model.interactive.EntityKind;
+import com.hippomaru.douckieTown.model.interactive.TrafficMember;
+
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+// Реестр сущностей карты: стабильные id, позиции и плотные списки по типам.
+// Добавление, перемещение и удаление - O(1); удаление из списка типа меняет местами с последним.
+public class EntityRegistry {
+    public static final int NO_ENTITY = 0;
+    public static final int NOT_PLACED = -1;
+
+    private static final EntityKind[] KINDS = EntityKind.values();
+
+    private final CellGrid map;
+
+    private TrafficMember[] entities = new TrafficMember[64];
+    private int[] positions = new int[64];
+    private int[] denseSlots = new int[64];
+    // Счётчик регистраций на каждый id: объект-ручка транспорта переиспользуется,
+    // поэтому новую сущность под старым id отличает только поколение
+    private int[] generations = new int[64];
+    private int[] freeIds = new int[16];
+    private int freeIdsCount = 0;
+    private int nextId = 1;
+
+    private final int[][] denseIds = new int[KINDS.length][];
+    private final int[] denseCounts = new int[KINDS.length];
+
+    EntityRegistry(CellGrid map) {
+        this.map = map;
+        for (int kind = 0; kind < KINDS.length; kind++) {
+            denseIds[kind] = new int[16];
+        }
+    }
+
+    public TrafficMember get(int id) {
+        return id == NO_ENTITY ? null : entities[id];
+    }
+
+    // Номер регистрации, занимающей id сейчас; меняется при каждой новой сущности под этим id
+    public int generationOf(int id) {
+        return generations[id];
+    }
+
+    // Все выданные id меньше этого значения
+    public int idLimit() {
+        return nextId;
+    }
+
+    // Стек свободных id снизу вверх: следующая регистрация берёт последний
+    public int[] freeIds() {
+        return Arrays.copyOf(freeIds, freeIdsCount);
+    }
+
+    // Подготовка пустого реестра к восстановлению снимка: следующие регистрации получат ids по порядку,
+    // после чего счётчик и стек свободных id совпадут с сохранёнными
+    public void restoreIds(int nextId, int[] freeIds, int[] ids) {
+        for (int count : denseCounts) {
+            if (count != 0) {
+                throw new IllegalStateException("Ids can only be restored into an empty registry");
+            }
+        }
+        for (int id : freeIds) {
+            checkRestoredId(id, nextId);
+        }
+        for (int id : ids) {
+            checkRestoredId(id, nextId);
+        }
+        int capacity = entities.length;
+        while (capacity <= nextId) {
+            capacity *= 2;
+        }
+        entities = Arrays.copyOf(entities, capacity);
+        positions = Arrays.copyOf(positions, capacity);
+        denseSlots = Arrays.copyOf(denseSlots, capacity);
+        generations = Arrays.copyOf(generations, capacity);
+
+        this.nextId = nextId;
+        freeIdsCount = freeIds.length + ids.length;
+        this.freeIds = Arrays.copyOf(freeIds, Math.max(16, freeIdsCount));
+        for (int i = 0; i < ids.length; i++) {
+            this.freeIds[freeIds.length + i] = ids[ids.length - 1 - i];
+        }
+    }
+
+    private static void checkRestoredId(int id, int nextId) {
+        if (id <= NO_ENTITY || id >= nextId) {
+            throw new IllegalArgumentException("Entity id " + id + " is outside of 1.." + (nextId - 1));
+        }
+    }
+
+    public int count(EntityKind kind) {
+        return denseCounts[kind.ordinal()];
+    }
+
+    // i-я сущность типа; порядок меняется только при удалении
+    public TrafficMember get(EntityKind kind, int i) {
+        return entities[denseIds[kind.ordinal()][i]];
+    }
+
+    public int positionOf(TrafficMember member) {
+        return member.getId() == NO_ENTITY ? NOT_PLACED : positions[member.getId()];
+    }
+
+    public Coords coordsOf(TrafficMember member) {
+        int position = positionOf(member);
+        return position == NOT_PLACED ? null : map.coordsOf(position);
+    }
+
+    public void forEachInRect(int x0, int y0, int x1, int y1, EntityKind kind, Consumer<TrafficMember> action) {
+        int fromX = Math.max(0, Math.min(x0, x1));
+        int toX = Math.min(map.getWidth() - 1, Math.max(x0, x1));
+        int fromY = Math.max(0, Math.min(y0, y1));
+        int toY = Math.min(map.getHeight() - 1, Math.max(y0, y1));
+        if (fromX > toX || fromY > toY) return;
+
+        long area = (long) (toX - fromX + 1) * (toY - fromY + 1);
+        int candidates = kind == null ? nextId - 1 - freeIdsCount : count(kind);
+        if (area <= candidates) {
+            // Маленький прямоугольник: проходим по занятости, столбец x лежит в памяти подряд
+            for (int x = fromX; x <= toX; x++) {
+                int base = map.index(x, 0);
+                for (int y = fromY; y <= toY; y++) {
+                    TrafficMember member = get(map.getOccupantId(base + y));
+                    if (member != null && (kind == null || member.getKind() == kind)) {
+                        action.accept(member);
+                    }
+                }
+            }
+            return;
+        }
+
+        for (EntityKind candidateKind : KINDS) {
+            if (kind != null && kind != candidateKind) continue;
+            int[] ids = denseIds[candidateKind.ordinal()];
+            for (int i = 0, n = denseCounts[candidateKind.ordinal()]; i < n; i++) {
+                int position = positions[ids[i]];
+                if (position == NOT_PLACED) continue;
+                int x = map.xOf(position);
+                int y = map.yOf(position);
+                if (x >= fromX && x <= toX && y >= fromY && y <= toY) {
+                    action.accept(entities[ids[i]]);
+                }
+            }
+        }
+    }
+
+    public void forEachInNeighbourhood(int x, int y, int radius, EntityKind kind, Consumer<TrafficMember> action) {
+        forEachInRect(x - radius, y - radius, x + radius, y + radius, kind, action);
+    }
+
+    // Плотный список id типа и позиции по id для циклов TransportStore; массивы меняются при росте реестра
+    int[] denseIds(EntityKind kind) {
+        return denseIds[kind.ordinal()];
+    }
+
+    int[] positions() {
+        return positions;
+    }
+
+    int register(TrafficMember member) {
+        int id;
+        if (freeIdsCount > 0) {
+            id = freeIds[--freeIdsCount];
+        } else {
+            id = nextId++;
+            if (id == entities.length) {
+                int capacity = entities.length * 2;
+                entities = Arrays.copyOf(entities, capacity);
+                positions = Arrays.copyOf(positions, capacity);
+                denseSlots = Arrays.copyOf(denseSlots, capacity);
+                generations = Arrays.copyOf(generations, capacity);
+            }
+        }
+        generations[id]++;
+        entities[id] = member;
+        positions[id] = NOT_PLACED;
+        member.setId(id);
+
+        int kind = member.getKind().ordinal();
+        if (denseCounts[kind] == denseIds[kind].length) {
+            denseIds[kind] = Arrays.copyOf(denseIds[kind], denseCounts[kind] * 2);
+        }
+        denseSlots[id] = denseCounts[kind];
+        denseIds[kind][denseCounts[kind]++] = id;
+        return id;
+    }
+
+    void release(TrafficMember member) {
+        int id = member.getId();
+        if (id == NO_ENTITY) return;
+
+        int kind = member.getKind().ordinal();
+        int slot = denseSlots[id];
+        int lastId = denseIds[kind][--denseCounts[kind]];
+        denseIds[kind][slot] = lastId;
+        denseSlots[lastId] = slot;
+
+        entities[id] = null;
+        positions[id] = NOT_PLACED;
+        if (freeIdsCount == freeIds.length) {
+            freeIds = Arrays.copyOf(freeIds, freeIds.length * 2);
+        }
+        freeIds[freeIdsCount++] = id;
+        member.setId(NO_ENTITY);
+    }
+
+    void updatePosition(int id, int position) {
+        positions[id] = position;
+    }
+
+    void clearPosition(int id, int position) {
+        if (positions[id] == position) {
+            positions[id] = NOT_PLACED;
+        }
+    }
+}
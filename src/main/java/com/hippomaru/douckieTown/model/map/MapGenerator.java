@@ -0,0 +1,309 @@
+package com.hippomaru.douckieTown.model.map;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+// Генератор дорожной сети произвольного размера по seed.
+// Карта - решётка перекрёстков: полосы дорог вдоль x и вдоль y шириной minCorridorWidth..maxCorridorWidth
+// с промежутками около junctionSpacing клеток. Рёбра решётки выбираются алгоритмом Sidewinder
+// (остовное дерево, строится строка за строкой) плюс loopProbability лишних рёбер, поэтому все дороги связны.
+// Спавны и FINISH ставятся в разные случайные перекрёстки.
+// Строки x выдаются по порядку, состояние - O(height) на строку и O(число полос): карта пишется на диск,
+// не существуя в памяти целиком.
+public final class MapGenerator {
+    private static final int DEFAULT_JUNCTION_SPACING = 8;
+    private static final double DEFAULT_LOOP_PROBABILITY = 0.3;
+    private static final int DEFAULT_MIN_CORRIDOR_WIDTH = 1;
+    private static final int DEFAULT_MAX_CORRIDOR_WIDTH = 2;
+    // Вероятность продолжить отрезок Sidewinder вместо выхода к предыдущей строке
+    private static final double RUN_CONTINUE_PROBABILITY = 0.5;
+    private static final int NONE = -1;
+
+    private static final byte ROAD = (byte) CellType.ROAD.ordinal();
+    private static final byte WALL = (byte) CellType.WALL.ordinal();
+
+    private final int width;
+    private final int height;
+    private final long seed;
+    private final double loopProbability;
+
+    // Разметка полос по каждой оси: номер полосы в клетке или промежутка за полосой, иначе NONE
+    private final int[] bandAtX;
+    private final int[] gapAfterX;
+    private final int[] bandStartsX;
+    private final int[] bandAtY;
+    private final int[] gapAfterY;
+    private final int[] bandStartsY;
+
+    // Перекрёстки со спавнами и FINISH: номер r * columns + c по возрастанию и тип клетки
+    private final long[] specialJunctions;
+    private final byte[] specialTypes;
+
+    public MapGenerator(int width, int height, long seed) {
+        this(width, height, seed, DEFAULT_JUNCTION_SPACING, DEFAULT_LOOP_PROBABILITY,
+                DEFAULT_MIN_CORRIDOR_WIDTH, DEFAULT_MAX_CORRIDOR_WIDTH, NONE, NONE, NONE);
+    }
+
+    // Отрицательное число спавнов или FINISH - подобрать по числу перекрёстков
+    public MapGenerator(int width, int height, long seed, int junctionSpacing, double loopProbability,
+                        int minCorridorWidth, int maxCorridorWidth,
+                        int agentSpawns, int transportSpawns, int finishes) {
+        if (width < 3 || height < 3 || (long) width * height > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Unsupported map size " + width + "x" + height);
+        }
+        if (junctionSpacing < 1 || minCorridorWidth < 1 || maxCorridorWidth < minCorridorWidth) {
+            throw new IllegalArgumentException("Invalid spacing " + junctionSpacing + " or corridor widths "
+                    + minCorridorWidth + ".." + maxCorridorWidth);
+        }
+        if (loopProbability < 0 || loopProbability > 1) {
+            throw new IllegalArgumentException("Loop probability must be in [0, 1], got " + loopProbability);
+        }
+        this.width = width;
+        this.height = height;
+        this.seed = seed;
+        this.loopProbability = loopProbability;
+
+        SplittableRandom layoutRandom = new SplittableRandom(seed);
+        bandAtX = new int[width];
+        gapAfterX = new int[width];
+        bandStartsX = layoutBands(width, junctionSpacing, minCorridorWidth, maxCorridorWidth,
+                layoutRandom.split(), bandAtX, gapAfterX);
+        bandAtY = new int[height];
+        gapAfterY = new int[height];
+        bandStartsY = layoutBands(height, junctionSpacing, minCorridorWidth, maxCorridorWidth,
+                layoutRandom.split(), bandAtY, gapAfterY);
+
+        long junctions = (long) bandStartsX.length * bandStartsY.length;
+        // Заданные числа должны поместиться целиком; подобранные занимают оставшиеся перекрёстки
+        // в порядке FINISH, спавны агентов, спавны транспорта
+        long explicit = (long) Math.max(0, finishes) + Math.max(0, agentSpawns) + Math.max(0, transportSpawns);
+        if (explicit > junctions) {
+            throw new IllegalArgumentException("Only " + junctions + " junctions for " + explicit
+                    + " spawns and finishes");
+        }
+        long free = junctions - explicit;
+        int finishCount = finishes >= 0 ? finishes : (int) Math.min(free, Math.max(1, junctions / 1000));
+        free -= finishes >= 0 ? 0 : finishCount;
+        int agentCount = agentSpawns >= 0 ? agentSpawns : (int) Math.min(free, Math.max(2, junctions / 200));
+        free -= agentSpawns >= 0 ? 0 : agentCount;
+        int transportCount = transportSpawns >= 0 ? transportSpawns
+                : (int) Math.min(free, Math.max(2, junctions / 100));
+        long specials = (long) finishCount + agentCount + transportCount;
+        specialJunctions = new long[(int) specials];
+        specialTypes = new byte[(int) specials];
+        placeSpecials(layoutRandom.split(), junctions, finishCount, agentCount);
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public MapTopology generate() {
+        byte[] cellTypes = new byte[width * height];
+        Rows rows = new Rows();
+        for (int x = 0; x < width; x++) {
+            System.arraycopy(rows.next(), 0, cellTypes, x * height, height);
+        }
+        return new MapTopology(width, height, cellTypes);
+    }
+
+    public CellGrid generateGrid() {
+        return new CellGrid(generate());
+    }
+
+    // Бинарный формат BinaryMapFormat, строки упаковываются сразу по мере генерации
+    public void writeBinary(Path file) {
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(file), 1 << 16)) {
+            BinaryMapFormat.writeHeader(out, width, height);
+            BinaryMapFormat.CellPacker packer = new BinaryMapFormat.CellPacker(out);
+            Rows rows = new Rows();
+            for (int x = 0; x < width; x++) {
+                for (byte type : rows.next()) {
+                    packer.write(type);
+                }
+            }
+            packer.finish();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write map: " + file, e);
+        }
+    }
+
+    // Текстовый формат 0-4: по строке на x; коды совпадают с ordinal от ROAD до FINISH
+    public void writeText(Path file) {
+        byte[] line = new byte[height + 1];
+        line[height] = '\n';
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(file), 1 << 16)) {
+            Rows rows = new Rows();
+            for (int x = 0; x < width; x++) {
+                byte[] row = rows.next();
+                for (int y = 0; y < height; y++) {
+                    line[y] = (byte) ('0' + row[y]);
+                }
+                out.write(line);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write map: " + file, e);
+        }
+    }
+
+    // Записывает в формате по расширению файла
+    public void write(Path file) {
+        if (BinaryMapFormat.isBinary(file)) {
+            writeBinary(file);
+        } else {
+            writeText(file);
+        }
+    }
+
+    // Строки карты по возрастанию x; возвращаемый массив переиспользуется следующим вызовом
+    private final class Rows {
+        // Рёбра решётки текущей строки перекрёстков: east[c] - (r, c)-(r, c + 1), north[c] - (r - 1, c)-(r, c)
+        private final boolean[] east = new boolean[bandStartsY.length];
+        private final boolean[] north = new boolean[bandStartsY.length];
+        private final byte[] row = new byte[height];
+        private int decidedRow = NONE;
+        private int special = 0;
+        private int x = 0;
+
+        byte[] next() {
+            int band = bandAtX[x];
+            int gap = gapAfterX[x];
+            if (band != NONE) {
+                decide(band);
+                for (int y = 0; y < height; y++) {
+                    int columnGap = gapAfterY[y];
+                    boolean road = bandAtY[y] != NONE || (columnGap != NONE && east[columnGap]);
+                    row[y] = road ? ROAD : WALL;
+                }
+                if (x == bandStartsX[band]) {
+                    placeSpecials(band);
+                }
+            } else if (gap != NONE) {
+                // Вертикальные рёбра между строками gap и gap + 1 решаются вместе со строкой gap + 1
+                decide(gap + 1);
+                for (int y = 0; y < height; y++) {
+                    int columnBand = bandAtY[y];
+                    row[y] = columnBand != NONE && north[columnBand] ? ROAD : WALL;
+                }
+            } else {
+                Arrays.fill(row, WALL);
+            }
+            x++;
+            return row;
+        }
+
+        private void decide(int r) {
+            if (decidedRow != r) {
+                decideRow(r, east, north);
+                decidedRow = r;
+            }
+        }
+
+        private void placeSpecials(int band) {
+            int columns = bandStartsY.length;
+            long first = (long) band * columns;
+            while (special < specialJunctions.length && specialJunctions[special] < first + columns) {
+                row[bandStartsY[(int) (specialJunctions[special] - first)]] = specialTypes[special];
+                special++;
+            }
+        }
+    }
+
+    // Sidewinder для строки r: отрезки вдоль строки, из каждого один выход к строке r - 1.
+    // Случайность строки зависит только от seed и r, поэтому строки можно решать по одной.
+    private void decideRow(int r, boolean[] east, boolean[] north) {
+        Arrays.fill(east, false);
+        Arrays.fill(north, false);
+        int columns = east.length;
+        if (r == 0) {
+            Arrays.fill(east, 0, columns - 1, true);
+            return;
+        }
+        SplittableRandom random = new SplittableRandom(seed ^ (r * 0x9E3779B97F4A7C15L));
+        int runStart = 0;
+        for (int c = 0; c < columns; c++) {
+            if (c < columns - 1 && random.nextDouble() < RUN_CONTINUE_PROBABILITY) {
+                east[c] = true;
+            } else {
+                north[runStart + random.nextInt(c - runStart + 1)] = true;
+                runStart = c + 1;
+            }
+        }
+        for (int c = 0; c < columns; c++) {
+            if (c < columns - 1 && !east[c] && random.nextDouble() < loopProbability) east[c] = true;
+            if (!north[c] && random.nextDouble() < loopProbability) north[c] = true;
+        }
+    }
+
+    // Полосы шириной minWidth..maxWidth через промежутки spacing / 2..spacing * 3 / 2; по краям карты - стена
+    private static int[] layoutBands(int size, int spacing, int minWidth, int maxWidth, SplittableRandom random,
+                                     int[] bandAt, int[] gapAfter) {
+        Arrays.fill(bandAt, NONE);
+        Arrays.fill(gapAfter, NONE);
+        int[] starts = new int[16];
+        int count = 0;
+        int position = 1;
+        while (true) {
+            int bandWidth = minWidth + random.nextInt(maxWidth - minWidth + 1);
+            if (position + bandWidth > size - 1) {
+                // Хотя бы одна полоса, даже если не помещается полная ширина
+                if (count == 0) {
+                    bandWidth = size - 2;
+                } else {
+                    break;
+                }
+            }
+            if (count == starts.length) {
+                starts = Arrays.copyOf(starts, count * 2);
+            }
+            starts[count] = position;
+            Arrays.fill(bandAt, position, position + bandWidth, count);
+            int gap = Math.max(1, spacing / 2 + random.nextInt(spacing + 1));
+            int next = position + bandWidth + gap;
+            if (next < size - 1) {
+                Arrays.fill(gapAfter, position + bandWidth, next, count);
+            }
+            count++;
+            position = next;
+        }
+        // Промежуток за последней полосой никуда не ведёт
+        for (int i = size - 1; i >= 0 && bandAt[i] == NONE; i--) {
+            gapAfter[i] = NONE;
+        }
+        return Arrays.copyOf(starts, count);
+    }
+
+    // Частичная перетасовка Фишера-Йейтса по номерам перекрёстков без массива на все перекрёстки
+    private void placeSpecials(SplittableRandom random, long junctions, int finishCount, int agentCount) {
+        int count = specialJunctions.length;
+        Map<Long, Long> swapped = new HashMap<>();
+        // Номер перекрёстка и тип в одном long, чтобы отсортировать их вместе
+        long[] packed = new long[count];
+        for (int i = 0; i < count; i++) {
+            long j = i + random.nextLong(junctions - i);
+            long junction = swapped.getOrDefault(j, j);
+            swapped.put(j, swapped.getOrDefault((long) i, (long) i));
+            CellType type = i < finishCount ? CellType.FINISH
+                    : i < finishCount + agentCount ? CellType.AGENT_SPAWN
+                    : CellType.TRANSPORT_SPAWN;
+            packed[i] = junction << 3 | type.ordinal();
+        }
+        Arrays.sort(packed);
+        for (int i = 0; i < count; i++) {
+            specialJunctions[i] = packed[i] >>> 3;
+            specialTypes[i] = (byte) (packed[i] & 7);
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package com.hippomaru.douckieTown.model.map;
+
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Кэш разобранных карт по пути к файлу: карта читается при первом запросе,
+// дальше все симуляции получают один и тот же экземпляр MapTopology.
+// Изменения файла после загрузки не отслеживаются, для перечитывания есть evict.
+public final class MapRegistry {
+    private static final Map<Path, MapTopology> TOPOLOGIES = new ConcurrentHashMap<>();
+
+    private MapRegistry() {
+    }
+
+    public static MapTopology topology(Path path) {
+        return TOPOLOGIES.computeIfAbsent(path.toAbsolutePath().normalize(), MapRegistry::load);
+    }
+
+    public static void evict(Path path) {
+        TOPOLOGIES.remove(path.toAbsolutePath().normalize());
+    }
+
+    private static MapTopology load(Path path) {
+        return BinaryMapFormat.isBinary(path)
+                ? BinaryMapFormat.readTopology(path)
+                : MapTopology.fromTextFile(path.toString());
+    }
+}
@@ -0,0 +1,195 @@
+package com.hippomaru.douckieTown.model.map;
+
+import com.hippomaru.douckieTown.model.interactive.Direction;
+import lombok.Getter;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+// Неизменяемая статическая часть карты: типы клеток, маски соседей и поле расстояний до FINISH.
+// Один экземпляр разделяется всеми CellGrid (симуляциями) на этой карте.
+// Плоское хранение: индекс клетки = x * height + y
+public final class MapTopology {
+    @Getter
+    private final int width;
+    @Getter
+    private final int height;
+    private final byte[] cellTypes;
+    // Маска проходимых соседей (бит на Direction) и смещение индекса для каждого направления
+    private final byte[] passableDirections;
+    private final int[] directionOffsets;
+
+    // Карта не меняется, поэтому поле расстояний до FINISH общее для всех агентов и симуляций
+    private volatile DistanceField finishDistanceField;
+    private volatile CorridorGraph corridorGraph;
+
+    public static MapTopology fromTextFile(String filePath) {
+        return fromEncoded(parseFileToEncodedGrid(filePath));
+    }
+
+    public static MapTopology fromEncoded(int[][] encodedGrid) {
+        return new MapTopology(encodedGrid.length, encodedGrid[0].length, encodeCellTypes(encodedGrid));
+    }
+
+    // Массив cellTypes переходит во владение топологии и не должен меняться снаружи
+    public MapTopology(int width, int height, byte[] cellTypes) {
+        if (cellTypes.length != width * height) {
+            throw new IllegalArgumentException("Expected " + width * height + " cells, got " + cellTypes.length);
+        }
+        this.width = width;
+        this.height = height;
+        this.cellTypes = cellTypes;
+        this.directionOffsets = new int[Direction.values().length];
+        directionOffsets[Direction.UP.ordinal()] = 1;
+        directionOffsets[Direction.DOWN.ordinal()] = -1;
+        directionOffsets[Direction.LEFT.ordinal()] = -height;
+        directionOffsets[Direction.RIGHT.ordinal()] = height;
+        this.passableDirections = buildPassableDirections();
+    }
+
+    private static byte[] encodeCellTypes(int[][] encodedGrid) {
+        int width = encodedGrid.length;
+        int height = encodedGrid[0].length;
+        byte[] cellTypes = new byte[width * height];
+        for (var x=0; x < width; x++){
+            for (var y=0; y < height; y++){
+                cellTypes[x * height + y] = (byte) CellType.getTypeByCode(encodedGrid[x][y]).ordinal();
+            }
+        }
+        return cellTypes;
+    }
+
+    private byte[] buildPassableDirections() {
+        byte[] masks = new byte[cellTypes.length];
+        for (var x=0; x < width; x++){
+            for (var y=0; y < height; y++){
+                int index = index(x, y);
+                int mask = 0;
+                if (y < height - 1 && isPassable(index + 1)) mask |= Direction.UP.bit();
+                if (y > 0 && isPassable(index - 1)) mask |= Direction.DOWN.bit();
+                if (x > 0 && isPassable(index - height)) mask |= Direction.LEFT.bit();
+                if (x < width - 1 && isPassable(index + height)) mask |= Direction.RIGHT.bit();
+                masks[index] = (byte) mask;
+            }
+        }
+        return masks;
+    }
+
+    public int size() {
+        return cellTypes.length;
+    }
+
+    public int index(int x, int y) {
+        return x * height + y;
+    }
+
+    public int index(Coords coords) {
+        return index(coords.x(), coords.y());
+    }
+
+    public int xOf(int index) {
+        return index / height;
+    }
+
+    public int yOf(int index) {
+        return index % height;
+    }
+
+    public Coords coordsOf(int index) {
+        return new Coords(xOf(index), yOf(index));
+    }
+
+    public boolean isInside(int x, int y) {
+        return x >= 0 && x < width && y >= 0 && y < height;
+    }
+
+    public CellType getCellType(int index) {
+        return CellType.byOrdinal(cellTypes[index]);
+    }
+
+    public CellType getCellType(int x, int y) {
+        return getCellType(index(x, y));
+    }
+
+    public boolean isPassable(int index) {
+        return cellTypes[index] != CellType.WALL.ordinal();
+    }
+
+    public int getPassableDirections(int index) {
+        return passableDirections[index];
+    }
+
+    // Вызывающий проверяет направление по маске getPassableDirections
+    public int neighbour(int index, Direction direction) {
+        return index + directionOffsets[direction.ordinal()];
+    }
+
+    public DistanceField getFinishDistanceField() {
+        DistanceField field = finishDistanceField;
+        if (field == null) {
+            synchronized (this) {
+                field = finishDistanceField;
+                if (field == null) {
+                    field = DistanceField.toCellType(this, CellType.FINISH);
+                    finishDistanceField = field;
+                }
+            }
+        }
+        return field;
+    }
+
+    public CorridorGraph getCorridorGraph() {
+        CorridorGraph graph = corridorGraph;
+        if (graph == null) {
+            synchronized (this) {
+                graph = corridorGraph;
+                if (graph == null) {
+                    graph = CorridorGraph.of(this);
+                    corridorGraph = graph;
+                }
+            }
+        }
+        return graph;
+    }
+
+    private static int[][] parseFileToEncodedGrid(String filePath) {
+        List<String> lines = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new FileReader(filePath))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (!line.isEmpty()) {
+                    lines.add(line);
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to read file: " + filePath, e);
+        }
+
+        if (lines.isEmpty()) {
+            return new int[0][0];
+        }
+
+        int height = lines.size();
+        int width = lines.get(0).length();
+        int[][] grid = new int[height][width];
+
+        for (int i = 0; i < height; i++) {
+            String line = lines.get(i);
+            if (line.length() != width) {
+                throw new IllegalArgumentException("Inconsistent row length at line " + (i + 1));
+            }
+            for (int j = 0; j < width; j++) {
+                char c = line.charAt(j);
+                if (c < '0' || c > '4') {
+                    throw new IllegalArgumentException("Invalid character '" + c + "' at (" + (i + 1) + "," + (j + 1) + ")");
+                }
+                grid[i][j] = c - '0';
+            }
+        }
+        return grid;
+    }
+}
@@ -0,0 +1,101 @@
+package com.hippomaru.douckieTown.model.map;
+
+import com.hippomaru.douckieTown.model.interactive.Direction;
+import com.hippomaru.douckieTown.model.interactive.EntityKind;
+import com.hippomaru.douckieTown.model.interactive.Transport;
+
+import java.util.Arrays;
+
+// Состояние транспорта в параллельных примитивных массивах по id сущности из EntityRegistry.
+// Transport - лишь ручка на свой id: после деспавна объект возвращается в пул и выдаётся следующему спавну,
+// поэтому цикл спавн/деспавн не создаёт мусора. Деспавн - плотный цикл по массивам, ход делают движки в app.
+public final class TransportStore {
+    private final CellGrid map;
+    private final EntityRegistry entities;
+
+    private byte[] directions = new byte[64];
+    private int[] stepsCounters = new int[64];
+    private int[] waitCounters = new int[64];
+    // Сколько шагов транспорт проживёт (possibleStepsCount)
+    private int[] lifetimes = new int[64];
+
+    private Transport[] idleHandles = new Transport[16];
+    private int idleHandlesCount = 0;
+
+    TransportStore(CellGrid map, EntityRegistry entities) {
+        this.map = map;
+        this.entities = entities;
+    }
+
+    // Регистрирует транспорт в реестре (id выдаётся сразу, клетка - при setOccupant)
+    public Transport spawn(int lifetime, Direction direction) {
+        Transport transport = idleHandlesCount > 0 ? idleHandles[--idleHandlesCount] : new Transport(this);
+        int id = entities.register(transport);
+        ensureCapacity(id + 1);
+        directions[id] = (byte) direction.ordinal();
+        stepsCounters[id] = 0;
+        waitCounters[id] = 0;
+        lifetimes[id] = lifetime;
+        return transport;
+    }
+
+    // Вызывается CellGrid.release после освобождения id
+    void recycle(Transport transport) {
+        if (transport.getStore() != this) return;
+        if (idleHandlesCount == idleHandles.length) {
+            idleHandles = Arrays.copyOf(idleHandles, idleHandlesCount * 2);
+        }
+        idleHandles[idleHandlesCount++] = transport;
+    }
+
+    public Direction getDirection(int id) {
+        return Direction.byOrdinal(directions[id]);
+    }
+
+    public void setDirection(int id, Direction direction) {
+        directions[id] = (byte) direction.ordinal();
+    }
+
+    public int getStepsCounter(int id) {
+        return stepsCounters[id];
+    }
+
+    public void setStepsCounter(int id, int value) {
+        stepsCounters[id] = value;
+    }
+
+    public int getWaitCounter(int id) {
+        return waitCounters[id];
+    }
+
+    public void setWaitCounter(int id, int value) {
+        waitCounters[id] = value;
+    }
+
+    public int getLifetime(int id) {
+        return lifetimes[id];
+    }
+
+    // Убирает с карты транспорт, исчерпавший possibleStepsCount, и возвращает ручки в пул.
+    // Обход с конца: удаление переставляет на место удалённого уже пройденный последний элемент
+    public void despawnExpired() {
+        int[] ids = entities.denseIds(EntityKind.TRANSPORT);
+        int[] positions = entities.positions();
+        for (int i = entities.count(EntityKind.TRANSPORT) - 1; i >= 0; i--) {
+            int id = ids[i];
+            if (stepsCounters[id] >= lifetimes[id]) {
+                map.setOccupant(positions[id], null);
+                map.release(entities.get(id));
+            }
+        }
+    }
+
+    private void ensureCapacity(int size) {
+        if (size <= directions.length) return;
+        int capacity = Math.max(size, directions.length * 2);
+        directions = Arrays.copyOf(directions, capacity);
+        stepsCounters = Arrays.copyOf(stepsCounters, capacity);
+        waitCounters = Arrays.copyOf(waitCounters, capacity);
+        lifetimes = Arrays.copyOf(lifetimes, capacity);
+    }
+}
@@ -0,0 +1,196 @@
+package com.hippomaru.douckieTown.model.routing;
+
+import com.hippomaru.douckieTown.model.map.CellGrid;
+import com.hippomaru.douckieTown.model.map.Coords;
+import com.hippomaru.douckieTown.model.map.DistanceField;
+
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+// A* с ограничением числа раскрытий: занятые клетки рядом с агентом стоят дороже,
+// эвристика - точное расстояние до FINISH по статической карте
+public class CongestionAwarePlanner {
+    private static final int DEFAULT_OCCUPIED_PENALTY = 8;
+    private static final int DEFAULT_PENALTY_RADIUS = 8;
+    private static final int DEFAULT_MAX_EXPANSIONS = 2048;
+
+    private final CellGrid map;
+    private final DistanceField field;
+    private final int occupiedPenalty;
+    private final int penaltyRadius;
+    private final int maxExpansions;
+
+    // Буферы поиска переиспользуются между запросами; параллельные запросы берут разные буферы
+    private final Queue<Search> idleSearches = new ConcurrentLinkedQueue<>();
+
+    public CongestionAwarePlanner(CellGrid map) {
+        this(map, DEFAULT_OCCUPIED_PENALTY, DEFAULT_PENALTY_RADIUS, DEFAULT_MAX_EXPANSIONS);
+    }
+
+    public CongestionAwarePlanner(CellGrid map, int occupiedPenalty, int penaltyRadius, int maxExpansions) {
+        this.map = map;
+        this.field = map.getFinishDistanceField();
+        this.occupiedPenalty = occupiedPenalty;
+        this.penaltyRadius = penaltyRadius;
+        this.maxExpansions = maxExpansions;
+    }
+
+    // Заторы дальше этого манхэттенского расстояния от агента планировщик не видит
+    public int getPenaltyRadius() {
+        return penaltyRadius;
+    }
+
+    // Потокобезопасен, если занятость карты не меняется во время запроса.
+    // Возвращает null, если из start FINISH недостижим.
+    public Coords[] plan(Coords start) {
+        return plan(start, false);
+    }
+
+    // Только обход затора: тот же поиск, но путь обрывается на первой клетке за радиусом штрафа
+    // (или на лучшей найденной клетке). Продолжение до FINISH строит вызывающий, например HPA*.
+    public Coords[] planDetour(Coords start) {
+        return plan(start, true);
+    }
+
+    private Coords[] plan(Coords start, boolean detourOnly) {
+        int startIndex = map.index(start);
+        if (!field.isReachable(startIndex)) {
+            return null;
+        }
+        Search search = idleSearches.poll();
+        if (search == null) {
+            search = new Search(map.size());
+        }
+        try {
+            int best = search.run(startIndex, start);
+            return detourOnly ? search.buildDetour(best, start) : search.buildRoute(best);
+        } finally {
+            idleSearches.offer(search);
+        }
+    }
+
+    private final class Search {
+        private final int[] costs;
+        private final int[] parents;
+        private final int[] seenStamps;
+        private final int[] closedStamps;
+        private final IntMinHeap open = new IntMinHeap();
+        private int[] pathBuffer = new int[64];
+        private int stamp = 0;
+
+        Search(int size) {
+            costs = new int[size];
+            parents = new int[size];
+            seenStamps = new int[size];
+            closedStamps = new int[size];
+        }
+
+        // Лучшая найденная клетка: ближайшая к FINISH, при равенстве - самая дешёвая
+        int run(int startIndex, Coords start) {
+            if (++stamp == 0) {
+                Arrays.fill(seenStamps, 0);
+                Arrays.fill(closedStamps, 0);
+                stamp = 1;
+            }
+
+            open.clear();
+            costs[startIndex] = 0;
+            parents[startIndex] = -1;
+            seenStamps[startIndex] = stamp;
+            open.push(field.getDistance(startIndex), startIndex);
+
+            int best = startIndex;
+            int expansions = 0;
+            int height = map.getHeight();
+            while (!open.isEmpty()) {
+                int current = open.pop();
+                if (closedStamps[current] == stamp) continue;
+                closedStamps[current] = stamp;
+
+                if (isBetter(current, best)) {
+                    best = current;
+                }
+                if (field.getDistance(current) == 0 || ++expansions > maxExpansions) {
+                    break;
+                }
+
+                int x = map.xOf(current);
+                int y = map.yOf(current);
+                if (y > 0) relax(current, current - 1, start);
+                if (y < height - 1) relax(current, current + 1, start);
+                if (x > 0) relax(current, current - height, start);
+                if (x < map.getWidth() - 1) relax(current, current + height, start);
+            }
+
+            return best;
+        }
+
+        private boolean isBetter(int candidate, int best) {
+            int candidateDistance = field.getDistance(candidate);
+            int bestDistance = field.getDistance(best);
+            return candidateDistance < bestDistance
+                    || (candidateDistance == bestDistance && costs[candidate] < costs[best]);
+        }
+
+        private void relax(int from, int neighbour, Coords start) {
+            if (!field.isReachable(neighbour) || closedStamps[neighbour] == stamp) {
+                return;
+            }
+            int cost = costs[from] + 1;
+            if (map.isOccupied(neighbour) && isNear(neighbour, start)) {
+                cost += occupiedPenalty;
+            }
+            if (seenStamps[neighbour] == stamp && costs[neighbour] <= cost) {
+                return;
+            }
+            seenStamps[neighbour] = stamp;
+            costs[neighbour] = cost;
+            parents[neighbour] = from;
+            open.push(cost + field.getDistance(neighbour), neighbour);
+        }
+
+        // Занятость далеко от агента успеет измениться, поэтому штрафуем только окрестность
+        private boolean isNear(int index, Coords start) {
+            return Math.abs(map.xOf(index) - start.x()) + Math.abs(map.yOf(index) - start.y()) <= penaltyRadius;
+        }
+
+        // Путь до лучшей найденной клетки, дальше - по полю расстояний
+        Coords[] buildRoute(int reached) {
+            int length = collectPath(reached);
+            Coords[] tail = field.extractRoute(map.coordsOf(reached));
+            Coords[] route = new Coords[length + tail.length - 1];
+            for (int i = 0; i < length; i++) {
+                route[i] = map.coordsOf(pathBuffer[length - 1 - i]);
+            }
+            System.arraycopy(tail, 1, route, length, tail.length - 1);
+            return route;
+        }
+
+        // За радиусом штрафа A* просто идёт по полю расстояний - эту часть отдаём продолжению
+        Coords[] buildDetour(int reached, Coords start) {
+            int length = collectPath(reached);
+            int end = 0;
+            while (end < length - 1 && isNear(pathBuffer[length - 1 - end], start)) {
+                end++;
+            }
+            Coords[] detour = new Coords[end + 1];
+            for (int i = 0; i <= end; i++) {
+                detour[i] = map.coordsOf(pathBuffer[length - 1 - i]);
+            }
+            return detour;
+        }
+
+        // Клетки пути от reached назад до старта в pathBuffer; возвращает их число
+        private int collectPath(int reached) {
+            int length = 0;
+            for (int current = reached; current != -1; current = parents[current]) {
+                if (length == pathBuffer.length) {
+                    pathBuffer = Arrays.copyOf(pathBuffer, length * 2);
+                }
+                pathBuffer[length++] = current;
+            }
+            return length;
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.hippomaru.douckieTown.model.routing;
+
+import com.hippomaru.douckieTown.model.map.Coords;
+
+import java.util.Arrays;
+
+// Путь HPA*: опорные клетки (старт, входы кластеров, цель). Соседние опорные клетки лежат в одном кластере
+// или по разные стороны его границы, поэтому каждый участок достраивается поиском только внутри кластера.
+// Участки выдаются по одному; экземпляр принадлежит одному агенту и не потокобезопасен.
+public final class HierarchicalPath {
+    private final HierarchicalPlanner planner;
+    private final int[] waypoints;
+    private final int length;
+    private int refinedSegments = 0;
+
+    HierarchicalPath(HierarchicalPlanner planner, int[] waypoints, int length) {
+        this.planner = planner;
+        this.waypoints = waypoints;
+        this.length = length;
+    }
+
+    // Число шагов от старта до цели
+    public int getLength() {
+        return length;
+    }
+
+    public int[] getWaypoints() {
+        return waypoints.clone();
+    }
+
+    public boolean hasNextSegment() {
+        return refinedSegments < segmentsCount();
+    }
+
+    // Клетки следующего участка включительно с обоими концами; начало совпадает с концом предыдущего
+    public Coords[] nextSegment() {
+        if (!hasNextSegment()) {
+            throw new IllegalStateException("Path is fully refined");
+        }
+        int from = waypoints[refinedSegments];
+        int to = waypoints[Math.min(refinedSegments + 1, waypoints.length - 1)];
+        refinedSegments++;
+        return planner.refine(from, to);
+    }
+
+    // Все ещё не выданные участки одним маршрутом
+    public Coords[] remainingRoute() {
+        Coords[] route = nextSegment();
+        int size = route.length;
+        while (hasNextSegment()) {
+            Coords[] segment = nextSegment();
+            if (size + segment.length - 1 > route.length) {
+                route = Arrays.copyOf(route, Math.max(route.length * 2, size + segment.length - 1));
+            }
+            System.arraycopy(segment, 1, route, size, segment.length - 1);
+            size += segment.length - 1;
+        }
+        return size == route.length ? route : Arrays.copyOf(route, size);
+    }
+
+    // Путь из одной клетки (старт уже на цели) - один участок
+    private int segmentsCount() {
+        return Math.max(1, waypoints.length - 1);
+    }
+}
@@ -0,0 +1,543 @@
+package com.hippomaru.douckieTown.model.routing;
+
+import com.hippomaru.douckieTown.model.map.CellType;
+import com.hippomaru.douckieTown.model.map.Coords;
+import com.hippomaru.douckieTown.model.map.MapTopology;
+
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+// Иерархический поиск пути (HPA*): карта режется на кластеры clusterSize x clusterSize,
+// в проёмах между соседними кластерами выбираются входы. Граф входов с расстояниями внутри кластеров
+// строится один раз по неизменяемой топологии; запрос ищет путь по этому графу,
+// а клетки маршрута достраиваются по участкам (HierarchicalPath), когда агент до них доходит.
+// Потокобезопасен: буферы поиска берутся из пула, как в CongestionAwarePlanner.
+public final class HierarchicalPlanner {
+    private static final int DEFAULT_CLUSTER_SIZE = 16;
+    // Длинный проём получает два входа по краям, короткий - один посередине
+    private static final int LONG_ENTRANCE = 6;
+    // До стольких целей эвристика - минимум расстояний до каждой, дальше - до их прямоугольника
+    private static final int MAX_EXACT_HEURISTIC_GOALS = 32;
+    private static final int NONE = -1;
+
+    private final MapTopology map;
+    private final int clusterSize;
+    private final int clusterRows;
+    private final int clusterColumns;
+
+    // Вершины абстрактного графа - клетки входов
+    private final int[] nodeCells;
+    // Рёбра в формате CSR: рёбра вершины n - [edgeStarts[n], edgeStarts[n + 1])
+    private final int[] edgeStarts;
+    private final int[] edgeTargets;
+    private final int[] edgeCosts;
+    // Вершины каждого кластера в формате CSR
+    private final int[] clusterNodeStarts;
+    private final int[] clusterNodes;
+
+    private final Queue<Search> idleSearches = new ConcurrentLinkedQueue<>();
+
+    public HierarchicalPlanner(MapTopology map) {
+        this(map, DEFAULT_CLUSTER_SIZE);
+    }
+
+    public HierarchicalPlanner(MapTopology map, int clusterSize) {
+        if (clusterSize < 2) {
+            throw new IllegalArgumentException("Cluster size must be at least 2, got " + clusterSize);
+        }
+        this.map = map;
+        this.clusterSize = clusterSize;
+        this.clusterRows = (map.getWidth() + clusterSize - 1) / clusterSize;
+        this.clusterColumns = (map.getHeight() + clusterSize - 1) / clusterSize;
+
+        // Клетка -> id вершины + 1
+        LongIntHashMap nodeOfCell = new LongIntHashMap(256);
+        IntBuffer cells = new IntBuffer();
+        IntBuffer edges = new IntBuffer();
+        findEntrances(nodeOfCell, cells, edges);
+        nodeCells = Arrays.copyOf(cells.values, cells.size);
+
+        int[] nodeClusters = new int[nodeCells.length];
+        for (int node = 0; node < nodeCells.length; node++) {
+            nodeClusters[node] = clusterOf(nodeCells[node]);
+        }
+        clusterNodeStarts = new int[clusterRows * clusterColumns + 1];
+        clusterNodes = groupBy(nodeClusters, clusterNodeStarts);
+
+        Search search = new Search();
+        for (int cluster = 0; cluster < clusterRows * clusterColumns; cluster++) {
+            for (int i = clusterNodeStarts[cluster]; i < clusterNodeStarts[cluster + 1]; i++) {
+                int from = clusterNodes[i];
+                search.explore(cluster, new int[]{nodeCells[from]}, 1);
+                for (int j = clusterNodeStarts[cluster]; j < clusterNodeStarts[cluster + 1]; j++) {
+                    int to = clusterNodes[j];
+                    int distance = search.distanceTo(nodeCells[to]);
+                    if (to != from && distance != NONE) {
+                        edges.add(from);
+                        edges.add(to);
+                        edges.add(distance);
+                    }
+                }
+            }
+        }
+        idleSearches.offer(search);
+
+        int edgesCount = edges.size / 3;
+        int[] edgeSources = new int[edgesCount];
+        for (int edge = 0; edge < edgesCount; edge++) {
+            edgeSources[edge] = edges.values[edge * 3];
+        }
+        edgeStarts = new int[nodeCells.length + 1];
+        int[] order = groupBy(edgeSources, edgeStarts);
+        edgeTargets = new int[edgesCount];
+        edgeCosts = new int[edgesCount];
+        for (int i = 0; i < edgesCount; i++) {
+            edgeTargets[i] = edges.values[order[i] * 3 + 1];
+            edgeCosts[i] = edges.values[order[i] * 3 + 2];
+        }
+    }
+
+    public MapTopology getMap() {
+        return map;
+    }
+
+    public int getNodesCount() {
+        return nodeCells.length;
+    }
+
+    public int getEdgesCount() {
+        return edgeTargets.length;
+    }
+
+    // Набор целей для многих запросов: расстояния от входов до ближайшей цели считаются один раз
+    public Destination destination(CellType targetType) {
+        int[] targets = new int[map.size()];
+        int count = 0;
+        for (int index = 0; index < map.size(); index++) {
+            if (map.getCellType(index) == targetType) {
+                targets[count++] = index;
+            }
+        }
+        return destination(Arrays.copyOf(targets, count));
+    }
+
+    public Destination destination(int... targetIndices) {
+        return new Destination(targetIndices);
+    }
+
+    // Путь от start до ближайшей цели; null, если ни одна цель недостижима
+    public HierarchicalPath plan(Coords start, Destination destination) {
+        return plan(map.index(start), destination);
+    }
+
+    public HierarchicalPath plan(int start, Destination destination) {
+        if (destination.planner() != this) {
+            throw new IllegalArgumentException("Destination belongs to another planner");
+        }
+        if (!map.isPassable(start) || destination.goals.length == 0) {
+            return null;
+        }
+        Search search = acquire();
+        try {
+            return search.plan(start, destination);
+        } finally {
+            idleSearches.offer(search);
+        }
+    }
+
+    // Клетки участка от from до to включительно; вызывается HierarchicalPath
+    Coords[] refine(int from, int to) {
+        if (from == to) {
+            return new Coords[]{map.coordsOf(from)};
+        }
+        if (Math.abs(map.xOf(from) - map.xOf(to)) + Math.abs(map.yOf(from) - map.yOf(to)) == 1) {
+            return new Coords[]{map.coordsOf(from), map.coordsOf(to)};
+        }
+        int cluster = clusterOf(from);
+        if (cluster != clusterOf(to)) {
+            throw new IllegalStateException("Waypoints " + from + " and " + to + " are in different clusters");
+        }
+        Search search = acquire();
+        try {
+            search.explore(cluster, new int[]{from}, 1);
+            return search.route(to);
+        } finally {
+            idleSearches.offer(search);
+        }
+    }
+
+    private Search acquire() {
+        Search search = idleSearches.poll();
+        return search != null ? search : new Search();
+    }
+
+    private int clusterOf(int cell) {
+        return (map.xOf(cell) / clusterSize) * clusterColumns + map.yOf(cell) / clusterSize;
+    }
+
+    // Проёмы на границах соседних кластеров: подряд идущие пары проходимых клеток по обе стороны границы
+    private void findEntrances(LongIntHashMap nodeOfCell, IntBuffer cells, IntBuffer edges) {
+        int width = map.getWidth();
+        int height = map.getHeight();
+        // Граница между строками кластеров: клетки (x, y) и (x + 1, y)
+        for (int x = clusterSize - 1; x < width - 1; x += clusterSize) {
+            for (int from = 0; from < height; from += clusterSize) {
+                int to = Math.min(from + clusterSize, height);
+                int start = NONE;
+                for (int y = from; y <= to; y++) {
+                    boolean open = y < to && map.isPassable(map.index(x, y)) && map.isPassable(map.index(x + 1, y));
+                    if (open && start == NONE) {
+                        start = y;
+                    } else if (!open && start != NONE) {
+                        for (int entrance : entrancePositions(start, y - 1)) {
+                            addTransition(map.index(x, entrance), map.index(x + 1, entrance), nodeOfCell, cells, edges);
+                        }
+                        start = NONE;
+                    }
+                }
+            }
+        }
+        // Граница между столбцами кластеров: клетки (x, y) и (x, y + 1)
+        for (int y = clusterSize - 1; y < height - 1; y += clusterSize) {
+            for (int from = 0; from < width; from += clusterSize) {
+                int to = Math.min(from + clusterSize, width);
+                int start = NONE;
+                for (int x = from; x <= to; x++) {
+                    boolean open = x < to && map.isPassable(map.index(x, y)) && map.isPassable(map.index(x, y + 1));
+                    if (open && start == NONE) {
+                        start = x;
+                    } else if (!open && start != NONE) {
+                        for (int entrance : entrancePositions(start, x - 1)) {
+                            addTransition(map.index(entrance, y), map.index(entrance, y + 1), nodeOfCell, cells, edges);
+                        }
+                        start = NONE;
+                    }
+                }
+            }
+        }
+    }
+
+    private static int[] entrancePositions(int first, int last) {
+        return last - first + 1 >= LONG_ENTRANCE ? new int[]{first, last} : new int[]{(first + last) / 2};
+    }
+
+    private static void addTransition(int cellA, int cellB, LongIntHashMap nodeOfCell, IntBuffer cells,
+                                      IntBuffer edges) {
+        int nodeA = nodeFor(cellA, nodeOfCell, cells);
+        int nodeB = nodeFor(cellB, nodeOfCell, cells);
+        edges.add(nodeA);
+        edges.add(nodeB);
+        edges.add(1);
+        edges.add(nodeB);
+        edges.add(nodeA);
+        edges.add(1);
+    }
+
+    private static int nodeFor(int cell, LongIntHashMap nodeOfCell, IntBuffer cells) {
+        int node = nodeOfCell.get(cell) - 1;
+        if (node == NONE) {
+            node = cells.size;
+            cells.add(cell);
+            nodeOfCell.put(cell, node + 1);
+        }
+        return node;
+    }
+
+    // Сортировка подсчётом: индексы элементов, сгруппированные по ключу; starts[k] - начало группы k
+    private static int[] groupBy(int[] keys, int[] starts) {
+        for (int key : keys) {
+            starts[key + 1]++;
+        }
+        for (int k = 1; k < starts.length; k++) {
+            starts[k] += starts[k - 1];
+        }
+        int[] next = Arrays.copyOf(starts, starts.length - 1);
+        int[] grouped = new int[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            grouped[next[keys[i]]++] = i;
+        }
+        return grouped;
+    }
+
+    public final class Destination {
+        // Отсортированные проходимые клетки-цели, сгруппированные по кластерам
+        private final int[] goals;
+        private final int[] clusterGoalStarts;
+        private final int[] clusterGoals;
+        // Расстояние от вершины до ближайшей цели в её кластере и сама цель; NONE - цели нет
+        private final int[] goalCosts;
+        private final int[] goalCells;
+        // Ограничивающий прямоугольник целей для эвристики
+        private final int minX;
+        private final int maxX;
+        private final int minY;
+        private final int maxY;
+
+        private Destination(int[] targetIndices) {
+            goals = Arrays.stream(targetIndices).filter(map::isPassable).sorted().distinct().toArray();
+            int[] goalClusters = new int[goals.length];
+            int minX = Integer.MAX_VALUE, maxX = Integer.MIN_VALUE, minY = Integer.MAX_VALUE, maxY = Integer.MIN_VALUE;
+            for (int i = 0; i < goals.length; i++) {
+                goalClusters[i] = clusterOf(goals[i]);
+                minX = Math.min(minX, map.xOf(goals[i]));
+                maxX = Math.max(maxX, map.xOf(goals[i]));
+                minY = Math.min(minY, map.yOf(goals[i]));
+                maxY = Math.max(maxY, map.yOf(goals[i]));
+            }
+            this.minX = minX;
+            this.maxX = maxX;
+            this.minY = minY;
+            this.maxY = maxY;
+            clusterGoalStarts = new int[clusterRows * clusterColumns + 1];
+            int[] order = groupBy(goalClusters, clusterGoalStarts);
+            clusterGoals = new int[goals.length];
+            for (int i = 0; i < goals.length; i++) {
+                clusterGoals[i] = goals[order[i]];
+            }
+
+            goalCosts = new int[nodeCells.length];
+            goalCells = new int[nodeCells.length];
+            Arrays.fill(goalCosts, NONE);
+            Arrays.fill(goalCells, NONE);
+            Search search = acquire();
+            try {
+                for (int cluster = 0; cluster < clusterRows * clusterColumns; cluster++) {
+                    int from = clusterGoalStarts[cluster];
+                    int count = clusterGoalStarts[cluster + 1] - from;
+                    if (count == 0) continue;
+                    search.explore(cluster, Arrays.copyOfRange(clusterGoals, from, from + count), count);
+                    for (int i = clusterNodeStarts[cluster]; i < clusterNodeStarts[cluster + 1]; i++) {
+                        int node = clusterNodes[i];
+                        goalCosts[node] = search.distanceTo(nodeCells[node]);
+                        goalCells[node] = search.originOf(nodeCells[node]);
+                    }
+                }
+            } finally {
+                idleSearches.offer(search);
+            }
+        }
+
+        private HierarchicalPlanner planner() {
+            return HierarchicalPlanner.this;
+        }
+
+        // Путь от start до ближайшей из этих целей; null, если ни одна недостижима
+        public HierarchicalPath plan(Coords start) {
+            return HierarchicalPlanner.this.plan(start, this);
+        }
+
+        public int getGoalsCount() {
+            return goals.length;
+        }
+
+        // Манхэттенское расстояние до ближайшей цели или до прямоугольника целей:
+        // оба допустимы и согласованы для шагов по сетке
+        private int heuristic(int cell) {
+            int x = map.xOf(cell);
+            int y = map.yOf(cell);
+            if (goals.length <= MAX_EXACT_HEURISTIC_GOALS) {
+                int best = Integer.MAX_VALUE;
+                for (int goal : goals) {
+                    best = Math.min(best, Math.abs(map.xOf(goal) - x) + Math.abs(map.yOf(goal) - y));
+                }
+                return best;
+            }
+            return Math.max(0, Math.max(minX - x, x - maxX)) + Math.max(0, Math.max(minY - y, y - maxY));
+        }
+    }
+
+    private final class Search {
+        // Поиск в ширину внутри одного кластера, локальный индекс = (x - x0) * кластерная высота + (y - y0)
+        private final int[] localDistances = new int[clusterSize * clusterSize];
+        private final int[] localParents = new int[clusterSize * clusterSize];
+        private final int[] localOrigins = new int[clusterSize * clusterSize];
+        private final int[] localStamps = new int[clusterSize * clusterSize];
+        private final int[] queue = new int[clusterSize * clusterSize];
+        private int localStamp = 0;
+        private int x0, y0, x1, y1;
+
+        // A* по абстрактному графу; вершина GOAL = число вершин графа
+        private final int[] costs = new int[nodeCells.length + 1];
+        private final int[] parents = new int[nodeCells.length + 1];
+        private final int[] seenStamps = new int[nodeCells.length + 1];
+        private final int[] closedStamps = new int[nodeCells.length + 1];
+        private final IntMinHeap open = new IntMinHeap();
+        private int stamp = 0;
+
+        void explore(int cluster, int[] sources, int count) {
+            if (++localStamp == 0) {
+                Arrays.fill(localStamps, 0);
+                localStamp = 1;
+            }
+            x0 = cluster / clusterColumns * clusterSize;
+            y0 = cluster % clusterColumns * clusterSize;
+            x1 = Math.min(x0 + clusterSize, map.getWidth());
+            y1 = Math.min(y0 + clusterSize, map.getHeight());
+
+            int head = 0;
+            int tail = 0;
+            for (int i = 0; i < count; i++) {
+                int local = local(sources[i]);
+                if (localStamps[local] == localStamp) continue;
+                localStamps[local] = localStamp;
+                localDistances[local] = 0;
+                localParents[local] = NONE;
+                localOrigins[local] = sources[i];
+                queue[tail++] = sources[i];
+            }
+            int height = map.getHeight();
+            while (head < tail) {
+                int current = queue[head++];
+                int x = map.xOf(current);
+                int y = map.yOf(current);
+                if (y > y0) tail = visit(current, current - 1, queue, tail);
+                if (y < y1 - 1) tail = visit(current, current + 1, queue, tail);
+                if (x > x0) tail = visit(current, current - height, queue, tail);
+                if (x < x1 - 1) tail = visit(current, current + height, queue, tail);
+            }
+        }
+
+        private int visit(int from, int neighbour, int[] queue, int tail) {
+            int local = local(neighbour);
+            if (localStamps[local] == localStamp || !map.isPassable(neighbour)) {
+                return tail;
+            }
+            int parent = local(from);
+            localStamps[local] = localStamp;
+            localDistances[local] = localDistances[parent] + 1;
+            localParents[local] = from;
+            localOrigins[local] = localOrigins[parent];
+            queue[tail] = neighbour;
+            return tail + 1;
+        }
+
+        private int local(int cell) {
+            return (map.xOf(cell) - x0) * (y1 - y0) + map.yOf(cell) - y0;
+        }
+
+        private boolean isExplored(int cell) {
+            int x = map.xOf(cell);
+            int y = map.yOf(cell);
+            return x >= x0 && x < x1 && y >= y0 && y < y1 && localStamps[local(cell)] == localStamp;
+        }
+
+        int distanceTo(int cell) {
+            return isExplored(cell) ? localDistances[local(cell)] : NONE;
+        }
+
+        int originOf(int cell) {
+            return isExplored(cell) ? localOrigins[local(cell)] : NONE;
+        }
+
+        // Клетки от источника последнего explore до cell включительно
+        Coords[] route(int cell) {
+            Coords[] route = new Coords[localDistances[local(cell)] + 1];
+            for (int i = route.length - 1; i >= 0; i--) {
+                route[i] = map.coordsOf(cell);
+                cell = localParents[local(cell)];
+            }
+            return route;
+        }
+
+        HierarchicalPath plan(int start, Destination destination) {
+            if (++stamp == 0) {
+                Arrays.fill(seenStamps, 0);
+                Arrays.fill(closedStamps, 0);
+                stamp = 1;
+            }
+            open.clear();
+            int goalNode = nodeCells.length;
+
+            // Из start - к входам своего кластера и к целям в нём же напрямую
+            int startCluster = clusterOf(start);
+            explore(startCluster, new int[]{start}, 1);
+            int directGoal = NONE;
+            int directCost = Integer.MAX_VALUE;
+            for (int i = destination.clusterGoalStarts[startCluster];
+                 i < destination.clusterGoalStarts[startCluster + 1]; i++) {
+                int distance = distanceTo(destination.clusterGoals[i]);
+                if (distance != NONE && distance < directCost) {
+                    directCost = distance;
+                    directGoal = destination.clusterGoals[i];
+                }
+            }
+            if (directGoal != NONE) {
+                push(goalNode, directCost, NONE, 0);
+            }
+            for (int i = clusterNodeStarts[startCluster]; i < clusterNodeStarts[startCluster + 1]; i++) {
+                int node = clusterNodes[i];
+                int distance = distanceTo(nodeCells[node]);
+                if (distance != NONE) {
+                    push(node, distance, NONE, destination.heuristic(nodeCells[node]));
+                }
+            }
+
+            while (!open.isEmpty()) {
+                int current = open.pop();
+                if (closedStamps[current] == stamp) continue;
+                closedStamps[current] = stamp;
+                if (current == goalNode) {
+                    return buildPath(start, destination, directGoal);
+                }
+                int cost = costs[current];
+                for (int edge = edgeStarts[current]; edge < edgeStarts[current + 1]; edge++) {
+                    int target = edgeTargets[edge];
+                    if (closedStamps[target] != stamp) {
+                        push(target, cost + edgeCosts[edge], current, destination.heuristic(nodeCells[target]));
+                    }
+                }
+                if (destination.goalCosts[current] != NONE) {
+                    push(goalNode, cost + destination.goalCosts[current], current, 0);
+                }
+            }
+            return null;
+        }
+
+        private void push(int node, int cost, int parent, int heuristic) {
+            if (seenStamps[node] == stamp && costs[node] <= cost) {
+                return;
+            }
+            seenStamps[node] = stamp;
+            costs[node] = cost;
+            parents[node] = parent;
+            open.push(cost + heuristic, node);
+        }
+
+        private HierarchicalPath buildPath(int start, Destination destination, int directGoal) {
+            int goalNode = nodeCells.length;
+            int last = parents[goalNode];
+            int hops = 0;
+            for (int node = last; node != NONE; node = parents[node]) {
+                hops++;
+            }
+            int[] waypoints = new int[hops + 2];
+            waypoints[0] = start;
+            for (int node = last, i = hops; node != NONE; node = parents[node], i--) {
+                waypoints[i] = nodeCells[node];
+            }
+            waypoints[hops + 1] = last == NONE ? directGoal : destination.goalCells[last];
+
+            // Старт или цель могут совпасть с клеткой входа
+            int count = 1;
+            for (int i = 1; i < waypoints.length; i++) {
+                if (waypoints[i] != waypoints[count - 1]) {
+                    waypoints[count++] = waypoints[i];
+                }
+            }
+            return new HierarchicalPath(HierarchicalPlanner.this, Arrays.copyOf(waypoints, count), costs[goalNode]);
+        }
+    }
+
+    private static final class IntBuffer {
+        int[] values = new int[16];
+        int size;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.hippomaru.douckieTown.model.routing;
+
+import java.util.Arrays;
+
+// Двоичная куча пар (приоритет, значение) без упаковки в объекты
+class IntMinHeap {
+    private int[] priorities = new int[64];
+    private int[] values = new int[64];
+    private int size = 0;
+
+    void clear() {
+        size = 0;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    void push(int priority, int value) {
+        if (size == priorities.length) {
+            priorities = Arrays.copyOf(priorities, size * 2);
+            values = Arrays.copyOf(values, size * 2);
+        }
+        int i = size++;
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (priorities[parent] <= priority) break;
+            priorities[i] = priorities[parent];
+            values[i] = values[parent];
+            i = parent;
+        }
+        priorities[i] = priority;
+        values[i] = value;
+    }
+
+    int peekPriority() {
+        return priorities[0];
+    }
+
+    int pop() {
+        int result = values[0];
+        size--;
+        if (size > 0) {
+            int priority = priorities[size];
+            int value = values[size];
+            int i = 0;
+            int half = size >>> 1;
+            while (i < half) {
+                int child = 2 * i + 1;
+                if (child + 1 < size && priorities[child + 1] < priorities[child]) child++;
+                if (priority <= priorities[child]) break;
+                priorities[i] = priorities[child];
+                values[i] = values[child];
+                i = child;
+            }
+            priorities[i] = priority;
+            values[i] = value;
+        }
+        return result;
+    }
+}
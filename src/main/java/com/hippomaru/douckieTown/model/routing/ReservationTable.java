@@ -0,0 +1,36 @@
+package com.hippomaru.douckieTown.model.routing;
+
+// Пространственно-временные резервации: (клетка, тик) -> id агента
+public class ReservationTable {
+    public static final int FREE = 0;
+
+    private final LongIntHashMap reservations = new LongIntHashMap(1024);
+
+    public int reservedBy(int cellIndex, long tick) {
+        return reservations.get(key(cellIndex, tick));
+    }
+
+    public boolean isFreeFor(int cellIndex, long tick, int agentId) {
+        int owner = reservedBy(cellIndex, tick);
+        return owner == FREE || owner == agentId;
+    }
+
+    public void reserve(int cellIndex, long tick, int agentId) {
+        reservations.put(key(cellIndex, tick), agentId);
+    }
+
+    public void release(int cellIndex, long tick, int agentId) {
+        long key = key(cellIndex, tick);
+        if (reservations.get(key) == agentId) {
+            reservations.remove(key);
+        }
+    }
+
+    public int size() {
+        return reservations.size();
+    }
+
+    private static long key(int cellIndex, long tick) {
+        return (tick << 32) | (cellIndex & 0xFFFFFFFFL);
+    }
+}
@@ -0,0 +1,162 @@
+package com.hippomaru.douckieTown.model.routing;
+
+import com.hippomaru.douckieTown.model.map.CellGrid;
+import com.hippomaru.douckieTown.model.map.Coords;
+import com.hippomaru.douckieTown.model.map.DistanceField;
+
+import java.util.Arrays;
+
+// Оконный кооперативный A* (WHCA*): поиск в пространстве (клетка, тик) на window тиков вперёд
+// с учётом резерваций других агентов; дальше окна путь оценивается полем расстояний до FINISH
+public class SpaceTimePlanner {
+    private static final int DEFAULT_WINDOW = 8;
+    private static final int DEFAULT_MAX_EXPANSIONS = 512;
+
+    private final CellGrid map;
+    private final DistanceField field;
+    private final ReservationTable reservations;
+    private final int window;
+    private final int maxExpansions;
+
+    private final LongIntHashMap closed = new LongIntHashMap(256);
+    private final IntMinHeap open = new IntMinHeap();
+    private int[] nodeCells = new int[256];
+    private int[] nodeTimes = new int[256];
+    private int[] nodeCosts = new int[256];
+    private int[] nodeParents = new int[256];
+    private int nodesCount = 0;
+
+    public SpaceTimePlanner(CellGrid map, ReservationTable reservations) {
+        this(map, reservations, DEFAULT_WINDOW, DEFAULT_MAX_EXPANSIONS);
+    }
+
+    public SpaceTimePlanner(CellGrid map, ReservationTable reservations, int window, int maxExpansions) {
+        this.map = map;
+        this.field = map.getFinishDistanceField();
+        this.reservations = reservations;
+        this.window = window;
+        this.maxExpansions = maxExpansions;
+    }
+
+    public int getWindow() {
+        return window;
+    }
+
+    // Маршрут по тикам начиная с tick (элемент i - клетка на тике tick + i, повтор клетки - ожидание).
+    // Весь маршрут резервируется за агентом. null, если FINISH недостижим.
+    public Coords[] plan(Coords start, int agentId, long tick) {
+        int startIndex = map.index(start);
+        if (!field.isReachable(startIndex)) {
+            return null;
+        }
+
+        closed.clear();
+        open.clear();
+        nodesCount = 0;
+        int best = addNode(startIndex, 0, 0, -1);
+        open.push(field.getDistance(startIndex), best);
+
+        int expansions = 0;
+        int height = map.getHeight();
+        while (!open.isEmpty()) {
+            int node = open.pop();
+            int cell = nodeCells[node];
+            int time = nodeTimes[node];
+            long closedKey = (long) cell * (window + 1) + time;
+            if (closed.get(closedKey) != 0) continue;
+            closed.put(closedKey, 1);
+
+            if (isBetter(node, best)) {
+                best = node;
+            }
+            if (field.getDistance(cell) == 0 || time == window) {
+                best = node;
+                break;
+            }
+            if (++expansions > maxExpansions) {
+                break;
+            }
+
+            int x = map.xOf(cell);
+            int y = map.yOf(cell);
+            expand(node, cell, cell, agentId, tick);
+            if (y > 0) expand(node, cell, cell - 1, agentId, tick);
+            if (y < height - 1) expand(node, cell, cell + 1, agentId, tick);
+            if (x > 0) expand(node, cell, cell - height, agentId, tick);
+            if (x < map.getWidth() - 1) expand(node, cell, cell + height, agentId, tick);
+        }
+
+        Coords[] route = buildRoute(best);
+        for (int i = 0; i < route.length; i++) {
+            reservations.reserve(map.index(route[i]), tick + i, agentId);
+        }
+        return route;
+    }
+
+    public void release(Coords[] route, long startTick, int agentId) {
+        for (int i = 0; i < route.length; i++) {
+            reservations.release(map.index(route[i]), startTick + i, agentId);
+        }
+    }
+
+    private void expand(int node, int from, int to, int agentId, long tick) {
+        int time = nodeTimes[node];
+        long arrival = tick + time + 1;
+        if (to != from && !field.isReachable(to)) {
+            return;
+        }
+        if (!reservations.isFreeFor(to, arrival, agentId)) {
+            return;
+        }
+        if (to != from) {
+            // Встречный обмен клетками невозможен физически
+            int other = reservations.reservedBy(to, arrival - 1);
+            if (other != ReservationTable.FREE && other != agentId
+                    && reservations.reservedBy(from, arrival) == other) {
+                return;
+            }
+            // Клетку сейчас занимает сущность без резервации (транспорт)
+            if (time == 0 && map.isOccupied(to) && reservations.reservedBy(to, tick) == ReservationTable.FREE) {
+                return;
+            }
+        }
+        long closedKey = (long) to * (window + 1) + time + 1;
+        if (closed.get(closedKey) != 0) {
+            return;
+        }
+        int cost = nodeCosts[node] + 1;
+        int child = addNode(to, time + 1, cost, node);
+        open.push(cost + field.getDistance(to), child);
+    }
+
+    // При исчерпании бюджета берём узел ближе всего к FINISH, при равенстве - дальше по времени
+    private boolean isBetter(int candidate, int best) {
+        int candidateDistance = field.getDistance(nodeCells[candidate]);
+        int bestDistance = field.getDistance(nodeCells[best]);
+        return candidateDistance < bestDistance
+                || (candidateDistance == bestDistance && nodeTimes[candidate] > nodeTimes[best]);
+    }
+
+    private int addNode(int cell, int time, int cost, int parent) {
+        if (nodesCount == nodeCells.length) {
+            int capacity = nodesCount * 2;
+            nodeCells = Arrays.copyOf(nodeCells, capacity);
+            nodeTimes = Arrays.copyOf(nodeTimes, capacity);
+            nodeCosts = Arrays.copyOf(nodeCosts, capacity);
+            nodeParents = Arrays.copyOf(nodeParents, capacity);
+        }
+        nodeCells[nodesCount] = cell;
+        nodeTimes[nodesCount] = time;
+        nodeCosts[nodesCount] = cost;
+        nodeParents[nodesCount] = parent;
+        return nodesCount++;
+    }
+
+    private Coords[] buildRoute(int last) {
+        Coords[] route = new Coords[nodeTimes[last] + 1];
+        for (int node = last; node != -1; node = nodeParents[node]) {
+            route[nodeTimes[node]] = map.coordsOf(nodeCells[node]);
+        }
+        return route;
+    }
+}
@@ -0,0 +1,52 @@
+package com.hippomaru.douckieTown.replay;
+
+import java.nio.ByteBuffer;
+
+// Журнал событий симуляции.
+// Заголовок: magic, версия, width, height (int), seed, первый тик (long).
+// Дальше кадры по тикам: события в порядке возрастания id, каждое - varint (разница id << 4 | код),
+// для появления и прыжка за ним varint с клеткой. Кадр заканчивается нулевым байтом.
+// Шаг на соседнюю клетку при соседних id занимает один байт.
+public final class EventLogFormat {
+    public static final String EXTENSION = ".dtlog";
+
+    static final int MAGIC = 0x4454454C; // "DTEL"
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 32;
+
+    static final int END_OF_TICK = 0;
+    static final int MOVE_UP = 1;
+    static final int MOVE_DOWN = 2;
+    static final int MOVE_LEFT = 3;
+    static final int MOVE_RIGHT = 4;
+    static final int JUMP = 5;
+    static final int SPAWN_AGENT = 6;
+    static final int SPAWN_TRANSPORT = 7;
+    static final int DESPAWN = 8;
+
+    static final int OPCODE_BITS = 4;
+    static final int OPCODE_MASK = (1 << OPCODE_BITS) - 1;
+    // Самое длинное событие: два varint по 10 байт
+    static final int MAX_EVENT_SIZE = 20;
+
+    private EventLogFormat() {
+    }
+
+    static void writeVarLong(ByteBuffer buffer, long value) {
+        while ((value & ~0x7FL) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    static long readVarLong(ByteBuffer buffer) {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) return value;
+        }
+        throw new IllegalStateException("Malformed varint in event log");
+    }
+}
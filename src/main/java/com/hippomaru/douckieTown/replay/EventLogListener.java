@@ -0,0 +1,20 @@
+package com.hippomaru.douckieTown.replay;
+
+import com.hippomaru.douckieTown.model.interactive.EntityKind;
+
+// Получатель событий при чтении журнала; id - id сущности в записанной симуляции
+public interface EventLogListener {
+
+    default void onSpawn(int id, EntityKind kind, int cell) {
+    }
+
+    default void onMove(int id, int from, int to) {
+    }
+
+    default void onDespawn(int id, int cell) {
+    }
+
+    // Все события тика уже переданы
+    default void onTick(long tick) {
+    }
+}
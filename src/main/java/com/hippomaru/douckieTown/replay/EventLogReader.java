@@ -0,0 +1,130 @@
+package com.hippomaru.douckieTown.replay;
+
+import com.hippomaru.douckieTown.model.interactive.EntityKind;
+import lombok.Getter;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import static com.hippomaru.douckieTown.replay.EventLogFormat.*;
+
+// Последовательное чтение журнала по тикам без запуска логики симуляции
+public class EventLogReader implements AutoCloseable {
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    @Getter
+    private final int width;
+    @Getter
+    private final int height;
+    @Getter
+    private final long seed;
+    // Номер следующего непрочитанного тика
+    @Getter
+    private long tick;
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private boolean endOfFile = false;
+    private int[] positions = new int[64];
+
+    public EventLogReader(Path file) {
+        try {
+            channel = FileChannel.open(file, StandardOpenOption.READ);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to open event log: " + file, e);
+        }
+        buffer.flip();
+        if (!fill(HEADER_SIZE)) {
+            throw new IllegalArgumentException("Truncated event log header: " + file);
+        }
+        if (buffer.getInt() != MAGIC) {
+            throw new IllegalArgumentException("Not an event log: " + file);
+        }
+        int version = buffer.getInt();
+        if (version != VERSION) {
+            throw new IllegalArgumentException("Unsupported event log version " + version + ": " + file);
+        }
+        width = buffer.getInt();
+        height = buffer.getInt();
+        seed = buffer.getLong();
+        tick = buffer.getLong();
+    }
+
+    // Передаёт listener события следующего тика; false, если журнал закончился
+    public boolean readTick(EventLogListener listener) {
+        if (!fill(1)) return false;
+
+        int id = 0;
+        while (true) {
+            if (!fill(MAX_EVENT_SIZE)) {
+                // Меньше байт остаётся только в последнем кадре файла
+                if (!buffer.hasRemaining()) {
+                    throw new IllegalStateException("Truncated event log at tick " + tick);
+                }
+            }
+            long value = readVarLong(buffer);
+            int opcode = (int) (value & OPCODE_MASK);
+            if (opcode == END_OF_TICK) break;
+            id += (int) (value >>> OPCODE_BITS);
+            if (id >= positions.length) {
+                positions = Arrays.copyOf(positions, Math.max(id + 1, positions.length * 2));
+            }
+
+            int from = positions[id];
+            switch (opcode) {
+                case MOVE_UP -> move(listener, id, from, from + 1);
+                case MOVE_DOWN -> move(listener, id, from, from - 1);
+                case MOVE_LEFT -> move(listener, id, from, from - height);
+                case MOVE_RIGHT -> move(listener, id, from, from + height);
+                case JUMP -> move(listener, id, from, (int) readVarLong(buffer));
+                case SPAWN_AGENT, SPAWN_TRANSPORT -> {
+                    int cell = (int) readVarLong(buffer);
+                    positions[id] = cell;
+                    listener.onSpawn(id, opcode == SPAWN_AGENT ? EntityKind.AGENT : EntityKind.TRANSPORT, cell);
+                }
+                case DESPAWN -> listener.onDespawn(id, from);
+                default -> throw new IllegalStateException("Unknown event " + opcode + " at tick " + tick);
+            }
+        }
+        listener.onTick(tick++);
+        return true;
+    }
+
+    private void move(EventLogListener listener, int id, int from, int to) {
+        positions[id] = to;
+        listener.onMove(id, from, to);
+    }
+
+    // Дочитывает файл, чтобы в буфере было хотя бы bytes байт; false, если файл кончился раньше
+    private boolean fill(int bytes) {
+        if (buffer.remaining() >= bytes) return true;
+        if (endOfFile) return false;
+        buffer.compact();
+        try {
+            while (buffer.position() < bytes) {
+                if (channel.read(buffer) < 0) {
+                    endOfFile = true;
+                    break;
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read event log", e);
+        }
+        buffer.flip();
+        return buffer.remaining() >= bytes;
+    }
+
+    @Override
+    public void close() {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to close event log", e);
+        }
+    }
+}
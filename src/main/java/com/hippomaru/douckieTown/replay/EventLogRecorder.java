@@ -0,0 +1,142 @@
+package com.hippomaru.douckieTown.replay;
+
+import com.hippomaru.douckieTown.app.GameManager;
+import com.hippomaru.douckieTown.app.TickListener;
+import com.hippomaru.douckieTown.model.interactive.EntityKind;
+import com.hippomaru.douckieTown.model.interactive.TrafficMember;
+import com.hippomaru.douckieTown.model.map.CellGrid;
+import com.hippomaru.douckieTown.model.map.EntityRegistry;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import static com.hippomaru.douckieTown.replay.EventLogFormat.*;
+
+// Пишет журнал событий: после каждого тика сравнивает реестр сущностей с прошлым тиком.
+// Ничего не встраивает в фазы тика; стоимость - проход по id и запись в буфер.
+public class EventLogRecorder implements TickListener, AutoCloseable {
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+    // Состояние на конец прошлого тика по id реестра: поколение сущности (0 - нет сущности) и клетка
+    private int[] generations = new int[64];
+    private int[] positions = new int[64];
+    private int height;
+    private int previousId;
+    private boolean started = false;
+
+    public EventLogRecorder(Path file) {
+        try {
+            channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to open event log: " + file, e);
+        }
+    }
+
+    @Override
+    public void onTick(GameManager manager) {
+        CellGrid map = manager.getMap();
+        if (!started) {
+            writeHeader(map, manager.getSeed(), manager.getTick());
+            started = true;
+        }
+
+        EntityRegistry entities = map.getEntities();
+        int limit = entities.idLimit();
+        if (limit > generations.length) {
+            int capacity = Math.max(limit, generations.length * 2);
+            generations = Arrays.copyOf(generations, capacity);
+            positions = Arrays.copyOf(positions, capacity);
+        }
+
+        previousId = 0;
+        for (int id = 1; id < limit; id++) {
+            int known = generations[id];
+            TrafficMember current = entities.get(id);
+            int position = current == null ? EntityRegistry.NOT_PLACED : entities.positionOf(current);
+            int generation = position == EntityRegistry.NOT_PLACED ? 0 : entities.generationOf(id);
+
+            // id мог освободиться и достаться новой сущности в пределах одного тика
+            if (known != 0 && known != generation) {
+                writeEvent(id, DESPAWN);
+            }
+            if (generation == 0) {
+                generations[id] = 0;
+                continue;
+            }
+            if (known != generation) {
+                writeEvent(id, current.getKind() == EntityKind.AGENT ? SPAWN_AGENT : SPAWN_TRANSPORT);
+                writeVarLong(buffer, position);
+            } else if (positions[id] != position) {
+                writeMove(id, positions[id], position);
+            }
+            generations[id] = generation;
+            positions[id] = position;
+        }
+        if (!buffer.hasRemaining()) {
+            flush();
+        }
+        buffer.put((byte) END_OF_TICK);
+    }
+
+    private void writeMove(int id, int from, int to) {
+        int delta = to - from;
+        if (delta == 1) {
+            writeEvent(id, MOVE_UP);
+        } else if (delta == -1) {
+            writeEvent(id, MOVE_DOWN);
+        } else if (delta == -height) {
+            writeEvent(id, MOVE_LEFT);
+        } else if (delta == height) {
+            writeEvent(id, MOVE_RIGHT);
+        } else {
+            writeEvent(id, JUMP);
+            writeVarLong(buffer, to);
+        }
+    }
+
+    private void writeEvent(int id, int opcode) {
+        if (buffer.remaining() < MAX_EVENT_SIZE + 1) {
+            flush();
+        }
+        writeVarLong(buffer, ((long) (id - previousId) << OPCODE_BITS) | opcode);
+        previousId = id;
+    }
+
+    private void writeHeader(CellGrid map, long seed, long startTick) {
+        height = map.getHeight();
+        buffer.putInt(MAGIC).putInt(VERSION)
+                .putInt(map.getWidth()).putInt(map.getHeight())
+                .putLong(seed).putLong(startTick);
+    }
+
+    private void flush() {
+        buffer.flip();
+        try {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write event log", e);
+        }
+        buffer.clear();
+    }
+
+    @Override
+    public void close() {
+        flush();
+        try {
+            channel.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to close event log", e);
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.hippomaru.douckieTown.replay;
+
+import com.hippomaru.douckieTown.model.interactive.Agent;
+import com.hippomaru.douckieTown.model.interactive.Direction;
+import com.hippomaru.douckieTown.model.interactive.EntityKind;
+import com.hippomaru.douckieTown.model.interactive.TrafficMember;
+import com.hippomaru.douckieTown.model.interactive.Transport;
+import com.hippomaru.douckieTown.model.map.CellGrid;
+
+import java.util.Arrays;
+
+// Воспроизводит журнал на карте: занятость клеток меняется так же, как в записанной симуляции,
+// поэтому карту можно отдать SwingVisualizer или запросам EntityRegistry.
+// Сущности - пустые Agent и Transport без маршрутов, логика тика не выполняется.
+public class GridReplay implements EventLogListener {
+    private final CellGrid map;
+    private final EventLogReader reader;
+    private TrafficMember[] members = new TrafficMember[64];
+
+    public GridReplay(CellGrid map, EventLogReader reader) {
+        if (map.getWidth() != reader.getWidth() || map.getHeight() != reader.getHeight()) {
+            throw new IllegalArgumentException("Event log was recorded on a " + reader.getWidth() + "x"
+                    + reader.getHeight() + " map, got " + map.getWidth() + "x" + map.getHeight());
+        }
+        this.map = map;
+        this.reader = reader;
+    }
+
+    // Применяет к карте следующий тик; false, если журнал закончился
+    public boolean step() {
+        synchronized (map) {
+            return reader.readTick(this);
+        }
+    }
+
+    public long getTick() {
+        return reader.getTick();
+    }
+
+    @Override
+    public void onSpawn(int id, EntityKind kind, int cell) {
+        if (id >= members.length) {
+            members = Arrays.copyOf(members, Math.max(id + 1, members.length * 2));
+        }
+        TrafficMember member = kind == EntityKind.AGENT ? new Agent() : map.getTransports().spawn(0, Direction.UP);
+        members[id] = member;
+        map.setOccupant(cell, member);
+    }
+
+    @Override
+    public void onMove(int id, int from, int to) {
+        TrafficMember member = members[id];
+        vacate(from, member);
+        map.setOccupant(to, member);
+    }
+
+    @Override
+    public void onDespawn(int id, int cell) {
+        TrafficMember member = members[id];
+        vacate(cell, member);
+        map.release(member);
+        members[id] = null;
+    }
+
+    // События тика идут по возрастанию id, а не в порядке ходов: в клетку уже могла
+    // въехать сущность с меньшим id, тогда освобождать её нельзя
+    private void vacate(int cell, TrafficMember member) {
+        if (map.getOccupantId(cell) == member.getId()) {
+            map.setOccupant(cell, null);
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.hippomaru.douckieTown.results;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static com.hippomaru.douckieTown.results.TripLogFormat.*;
+
+// Чтение журнала ColumnarTripSink блоками
+public class ColumnarTripReader implements AutoCloseable {
+    private final Path file;
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BLOCK_HEADER_SIZE + MAX_BLOCK_SIZE);
+
+    private final long[] finishTicks = new long[BATCH_SIZE];
+    private final long[] durations = new long[BATCH_SIZE];
+    private final int[] steps = new int[BATCH_SIZE];
+    private final int[] blockedSteps = new int[BATCH_SIZE];
+    private final int[] routeLengths = new int[BATCH_SIZE];
+    private final int[] replans = new int[BATCH_SIZE];
+    private long previousFinishTick = 0;
+
+    public ColumnarTripReader(Path file) {
+        this.file = file;
+        try {
+            channel = FileChannel.open(file, StandardOpenOption.READ);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to open trip log: " + file, e);
+        }
+        if (!read(HEADER_SIZE)) {
+            throw new IllegalArgumentException("Truncated trip log header: " + file);
+        }
+        if (buffer.getInt() != MAGIC) {
+            throw new IllegalArgumentException("Not a trip log: " + file);
+        }
+        int version = buffer.getInt();
+        if (version != VERSION) {
+            throw new IllegalArgumentException("Unsupported trip log version " + version + ": " + file);
+        }
+    }
+
+    // Передаёт sink поездки следующего блока; false, если журнал закончился
+    public boolean readBatch(TripSink sink) {
+        if (!read(BLOCK_HEADER_SIZE)) return false;
+        int size = buffer.getInt();
+        int bodySize = buffer.getInt();
+        if (size <= 0 || size > BATCH_SIZE || bodySize < 0 || bodySize > MAX_BLOCK_SIZE) {
+            throw new IllegalStateException("Corrupted trip log block in " + file);
+        }
+        if (!read(bodySize)) {
+            throw new IllegalStateException("Truncated trip log: " + file);
+        }
+        for (int i = 0; i < size; i++) {
+            previousFinishTick += unzigzag(readVarLong(buffer));
+            finishTicks[i] = previousFinishTick;
+        }
+        for (int i = 0; i < size; i++) {
+            durations[i] = readVarLong(buffer);
+        }
+        readColumn(steps, size);
+        readColumn(blockedSteps, size);
+        readColumn(routeLengths, size);
+        readColumn(replans, size);
+        for (int i = 0; i < size; i++) {
+            sink.accept(new TripRecord(finishTicks[i] - durations[i], finishTicks[i], steps[i], blockedSteps[i],
+                    routeLengths[i], replans[i]));
+        }
+        return true;
+    }
+
+    private void readColumn(int[] column, int size) {
+        for (int i = 0; i < size; i++) {
+            column[i] = (int) readVarLong(buffer);
+        }
+    }
+
+    // Читает ровно bytes байт в начало буфера; false, если файл кончился до первого байта
+    private boolean read(int bytes) {
+        buffer.clear().limit(bytes);
+        try {
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer) < 0) {
+                    if (buffer.position() == 0) return false;
+                    throw new IllegalStateException("Truncated trip log: " + file);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read trip log: " + file, e);
+        }
+        buffer.flip();
+        return true;
+    }
+
+    @Override
+    public void close() {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to close trip log: " + file, e);
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.hippomaru.douckieTown.results;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static com.hippomaru.douckieTown.results.TripLogFormat.*;
+
+// Копит поездки в колонках примитивных массивов и сбрасывает блоком по BATCH_SIZE;
+// на поездку не создаётся ничего, кроме самой TripRecord
+public class ColumnarTripSink implements TripSink {
+    private final Path file;
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BLOCK_HEADER_SIZE + MAX_BLOCK_SIZE);
+
+    private final long[] finishTicks = new long[BATCH_SIZE];
+    private final long[] durations = new long[BATCH_SIZE];
+    private final int[] steps = new int[BATCH_SIZE];
+    private final int[] blockedSteps = new int[BATCH_SIZE];
+    private final int[] routeLengths = new int[BATCH_SIZE];
+    private final int[] replans = new int[BATCH_SIZE];
+    private int size = 0;
+    private long previousFinishTick = 0;
+
+    public ColumnarTripSink(Path file) {
+        this.file = file;
+        try {
+            channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to open trip log: " + file, e);
+        }
+        buffer.putInt(MAGIC).putInt(VERSION);
+        write();
+    }
+
+    @Override
+    public void accept(TripRecord trip) {
+        finishTicks[size] = trip.finishTick();
+        durations[size] = trip.finishTick() - trip.spawnTick();
+        steps[size] = trip.steps();
+        blockedSteps[size] = trip.blockedSteps();
+        routeLengths[size] = trip.routeLength();
+        replans[size] = trip.replans();
+        if (++size == BATCH_SIZE) {
+            flushBatch();
+        }
+    }
+
+    private void flushBatch() {
+        if (size == 0) return;
+        buffer.putInt(size).putInt(0);
+        int bodyStart = buffer.position();
+        for (int i = 0; i < size; i++) {
+            writeVarLong(buffer, zigzag(finishTicks[i] - previousFinishTick));
+            previousFinishTick = finishTicks[i];
+        }
+        for (int i = 0; i < size; i++) {
+            writeVarLong(buffer, durations[i]);
+        }
+        writeColumn(steps);
+        writeColumn(blockedSteps);
+        writeColumn(routeLengths);
+        writeColumn(replans);
+        buffer.putInt(bodyStart - Integer.BYTES, buffer.position() - bodyStart);
+        size = 0;
+        write();
+    }
+
+    private void writeColumn(int[] column) {
+        for (int i = 0; i < size; i++) {
+            writeVarLong(buffer, column[i]);
+        }
+    }
+
+    private void write() {
+        buffer.flip();
+        try {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write trip log: " + file, e);
+        }
+        buffer.clear();
+    }
+
+    @Override
+    public void close() {
+        flushBatch();
+        try {
+            channel.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to close trip log: " + file, e);
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.hippomaru.douckieTown.results;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+// Поездки строками CSV. Строка собирается в переиспользуемый StringBuilder, на диск уходит блоками буфера
+public class CsvTripSink implements TripSink {
+    private static final String HEADER = "spawnTick,finishTick,steps,blockedSteps,routeLength,replans";
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final Path file;
+    private final Writer writer;
+    private final StringBuilder line = new StringBuilder(64);
+
+    public CsvTripSink(Path file) {
+        this.file = file;
+        try {
+            writer = new BufferedWriter(new OutputStreamWriter(Files.newOutputStream(file), StandardCharsets.UTF_8),
+                    BUFFER_SIZE);
+            writer.write(HEADER);
+            writer.write('\n');
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to open trip results: " + file, e);
+        }
+    }
+
+    @Override
+    public void accept(TripRecord trip) {
+        line.setLength(0);
+        line.append(trip.spawnTick()).append(',')
+                .append(trip.finishTick()).append(',')
+                .append(trip.steps()).append(',')
+                .append(trip.blockedSteps()).append(',')
+                .append(trip.routeLength()).append(',')
+                .append(trip.replans()).append('\n');
+        try {
+            writer.append(line);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write trip results: " + file, e);
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            writer.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to close trip results: " + file, e);
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.hippomaru.douckieTown.results;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+
+// Бинарный поколоночный журнал поездок.
+// Заголовок: magic, версия (int). Дальше блоки до BATCH_SIZE поездок: число поездок и размер тела в байтах (int),
+// затем колонки подряд, каждая - varint на поездку: тик финиша (zigzag разницы с прошлой поездкой файла),
+// длительность (финиш - появление), steps, blockedSteps, routeLength, replans.
+// Тики финиша почти не растут между поездками, поэтому большинство значений занимает один-два байта.
+public final class TripLogFormat {
+    public static final String EXTENSION = ".dttrips";
+
+    static final int MAGIC = 0x44545452; // "DTTR"
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 8;
+    static final int BLOCK_HEADER_SIZE = 8;
+    static final int BATCH_SIZE = 4096;
+    static final int COLUMNS = 6;
+    // Самый длинный varint - 10 байт
+    static final int MAX_BLOCK_SIZE = BATCH_SIZE * COLUMNS * 10;
+
+    private TripLogFormat() {
+    }
+
+    public static boolean isColumnar(Path path) {
+        return path.getFileName().toString().endsWith(EXTENSION);
+    }
+
+    static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    static void writeVarLong(ByteBuffer buffer, long value) {
+        while ((value & ~0x7FL) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    static long readVarLong(ByteBuffer buffer) {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) return value;
+        }
+        throw new IllegalStateException("Malformed varint in trip log");
+    }
+}
@@ -0,0 +1,6 @@
+package com.hippomaru.douckieTown.results;
+
+// Итог одной поездки агента: тики появления и выхода на финиш, все шаги, из них заблокированные,
+// пройденные клетки и число перепланирований
+public record TripRecord(long spawnTick, long finishTick, int steps, int blockedSteps, int routeLength, int replans) {
+}
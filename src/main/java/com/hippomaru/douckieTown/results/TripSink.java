@@ -0,0 +1,24 @@
+package com.hippomaru.douckieTown.results;
+
+import java.nio.file.Path;
+
+// Получатель итогов поездок: GameManager передаёт запись сразу при деспавне агента на финише.
+// Вызывается из потока симуляции под блокировкой карты, поэтому запись должна быть дешёвой.
+public interface TripSink extends AutoCloseable {
+    void accept(TripRecord trip);
+
+    @Override
+    default void close() {
+    }
+
+    // Формат по расширению: TripLogFormat.EXTENSION - бинарный поколоночный, .csv - CSV
+    static TripSink open(Path file) {
+        if (TripLogFormat.isColumnar(file)) {
+            return new ColumnarTripSink(file);
+        }
+        if (file.getFileName().toString().endsWith(".csv")) {
+            return new CsvTripSink(file);
+        }
+        throw new IllegalArgumentException("Trip log must end with " + TripLogFormat.EXTENSION + " or .csv: " + file);
+    }
+}
@@ -0,0 +1,144 @@
+package com.hippomaru.douckieTown.results;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Locale;
+
+// Накопительные итоги поездок в памяти: суммы и точная гистограмма шагов по значению.
+// Размер не зависит от числа поездок, только от самой длинной из них.
+// Пишет поток симуляции, читать можно из любого потока.
+public class TripStatistics implements TripSink {
+    private long count;
+    private long totalSteps;
+    private long totalBlockedSteps;
+    private long totalRouteLength;
+    private long totalReplans;
+    private int maxSteps;
+    private long firstFinishTick = -1;
+    private long lastFinishTick = -1;
+    // Число поездок по точному числу шагов
+    private long[] stepsHistogram = new long[256];
+
+    @Override
+    public synchronized void accept(TripRecord trip) {
+        int steps = Math.max(0, trip.steps());
+        if (steps >= stepsHistogram.length) {
+            stepsHistogram = Arrays.copyOf(stepsHistogram, Math.max(steps + 1, stepsHistogram.length * 2));
+        }
+        stepsHistogram[steps]++;
+        count++;
+        totalSteps += steps;
+        totalBlockedSteps += trip.blockedSteps();
+        totalRouteLength += trip.routeLength();
+        totalReplans += trip.replans();
+        maxSteps = Math.max(maxSteps, steps);
+        if (firstFinishTick < 0) {
+            firstFinishTick = trip.finishTick();
+        }
+        lastFinishTick = trip.finishTick();
+    }
+
+    public synchronized long getCount() {
+        return count;
+    }
+
+    public synchronized long getTotalBlockedSteps() {
+        return totalBlockedSteps;
+    }
+
+    public synchronized long getTotalReplans() {
+        return totalReplans;
+    }
+
+    public synchronized int getMaxSteps() {
+        return maxSteps;
+    }
+
+    public synchronized long getLastFinishTick() {
+        return lastFinishTick;
+    }
+
+    public synchronized double getMeanSteps() {
+        return count == 0 ? 0 : (double) totalSteps / count;
+    }
+
+    public synchronized double getMeanBlockedSteps() {
+        return count == 0 ? 0 : (double) totalBlockedSteps / count;
+    }
+
+    public synchronized double getMeanRouteLength() {
+        return count == 0 ? 0 : (double) totalRouteLength / count;
+    }
+
+    // Точное значение: столько шагов или меньше у percentile процентов поездок
+    public synchronized int getStepsPercentile(double percentile) {
+        if (count == 0) return 0;
+        long rank = (long) Math.ceil(count * (percentile / 100.0));
+        long seen = 0;
+        for (int steps = 0; steps <= maxSteps; steps++) {
+            seen += stepsHistogram[steps];
+            if (seen >= rank) return steps;
+        }
+        return maxSteps;
+    }
+
+    // Поездок за тик между первым и последним финишем
+    public synchronized double getThroughput() {
+        long ticks = lastFinishTick - firstFinishTick;
+        return ticks <= 0 ? 0 : (double) (count - 1) / ticks;
+    }
+
+    public synchronized String getSummary() {
+        return String.format(Locale.ROOT, "Trips: %d, steps mean %.1f, p50 %d, p99 %d, max %d; "
+                        + "blocked steps mean %.1f; route length mean %.1f; replans %d",
+                count, getMeanSteps(), getStepsPercentile(50), getStepsPercentile(99), maxSteps,
+                getMeanBlockedSteps(), getMeanRouteLength(), totalReplans);
+    }
+
+    // Для снимков симуляции: гистограмма пишется только ненулевыми корзинами
+    public synchronized void writeTo(DataOutput out) throws IOException {
+        out.writeLong(count);
+        out.writeLong(totalSteps);
+        out.writeLong(totalBlockedSteps);
+        out.writeLong(totalRouteLength);
+        out.writeLong(totalReplans);
+        out.writeLong(firstFinishTick);
+        out.writeLong(lastFinishTick);
+        int buckets = 0;
+        for (int steps = 0; steps <= maxSteps; steps++) {
+            if (stepsHistogram[steps] != 0) buckets++;
+        }
+        out.writeInt(buckets);
+        for (int steps = 0; steps <= maxSteps; steps++) {
+            if (stepsHistogram[steps] != 0) {
+                out.writeInt(steps);
+                out.writeLong(stepsHistogram[steps]);
+            }
+        }
+    }
+
+    public synchronized void readFrom(DataInput in) throws IOException {
+        count = in.readLong();
+        totalSteps = in.readLong();
+        totalBlockedSteps = in.readLong();
+        totalRouteLength = in.readLong();
+        totalReplans = in.readLong();
+        firstFinishTick = in.readLong();
+        lastFinishTick = in.readLong();
+        maxSteps = 0;
+        Arrays.fill(stepsHistogram, 0);
+        for (int i = 0, buckets = in.readInt(); i < buckets; i++) {
+            int steps = in.readInt();
+            if (steps < 0) {
+                throw new IOException("Negative trip length in statistics: " + steps);
+            }
+            if (steps >= stepsHistogram.length) {
+                stepsHistogram = Arrays.copyOf(stepsHistogram, Math.max(steps + 1, stepsHistogram.length * 2));
+            }
+            stepsHistogram[steps] = in.readLong();
+            maxSteps = Math.max(maxSteps, steps);
+        }
+    }
+}
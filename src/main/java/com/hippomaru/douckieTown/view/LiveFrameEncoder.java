@@ -0,0 +1,173 @@
+package com.hippomaru.douckieTown.view;
+
+import com.hippomaru.douckieTown.model.map.CellGrid;
+import com.hippomaru.douckieTown.model.map.CellType;
+
+import java.util.Arrays;
+
+// Кадры для удалённых зрителей, бинарные сообщения WebSocket. Первый байт - тип кадра, дальше varint:
+//   MAP      width, height, затем серии клеток по индексу x * height + y: (длина << 3 | CellType.ordinal)
+//   KEYFRAME тик, число клеток с агентами и сами клетки, затем так же клетки с транспортом
+//   DELTA    тик, освободившиеся клетки, клетки, занятые агентом, клетки, занятые транспортом
+// Списки клеток отсортированы и пишутся разностями с предыдущей клеткой списка.
+// Кодировщик помнит отправленную зрителям занятость, поэтому разница считается между состояниями,
+// а не по событиям: пропущенные тики просто складываются в одну дельту.
+// Работает только в потоке кодирования LiveViewServer.
+final class LiveFrameEncoder {
+    static final byte MAP = 0;
+    static final byte KEYFRAME = 1;
+    static final byte DELTA = 2;
+
+    private static final byte NONE = 0;
+    private static final byte AGENT = 1;
+    private static final byte TRANSPORT = 2;
+
+    // Занятость, которую видят синхронизированные зрители, и метки клеток текущего снимка
+    private final byte[] shown;
+    private final int[] marks;
+    private int stamp = 0;
+    private int[] shownCells = new int[64];
+    private int shownCount = 0;
+
+    private int[] cleared = new int[64];
+    private int[] agents = new int[64];
+    private int[] transports = new int[64];
+    private int clearedCount;
+    private int agentsCount;
+    private int transportsCount;
+
+    private byte[] out = new byte[1 << 12];
+    private int size;
+
+    LiveFrameEncoder(int cells) {
+        shown = new byte[cells];
+        marks = new int[cells];
+    }
+
+    // Статическая карта не меняется и кодируется один раз на сервер
+    static byte[] encodeMap(CellGrid map) {
+        LiveFrameEncoder encoder = new LiveFrameEncoder(0);
+        encoder.put(MAP);
+        encoder.putVarLong(map.getWidth());
+        encoder.putVarLong(map.getHeight());
+        int cells = map.size();
+        int start = 0;
+        while (start < cells) {
+            CellType type = map.getCellType(start);
+            int end = start + 1;
+            while (end < cells && map.getCellType(end) == type) {
+                end++;
+            }
+            encoder.putVarLong(((long) (end - start) << 3) | type.ordinal());
+            start = end;
+        }
+        return encoder.frame();
+    }
+
+    // Переводит состояние на снимок и возвращает дельту от прошлого состояния
+    byte[] update(long tick, OccupancySnapshot snapshot) {
+        if (++stamp == 0) {
+            Arrays.fill(marks, 0);
+            stamp = 1;
+        }
+        clearedCount = agentsCount = transportsCount = 0;
+        for (int cell : snapshot.agentCells()) {
+            marks[cell] = stamp;
+            if (shown[cell] != AGENT) {
+                agents = append(agents, agentsCount++, cell);
+            }
+        }
+        for (int cell : snapshot.transportCells()) {
+            marks[cell] = stamp;
+            if (shown[cell] != TRANSPORT) {
+                transports = append(transports, transportsCount++, cell);
+            }
+        }
+        for (int i = 0; i < shownCount; i++) {
+            int cell = shownCells[i];
+            if (marks[cell] != stamp) {
+                cleared = append(cleared, clearedCount++, cell);
+                shown[cell] = NONE;
+            }
+        }
+        for (int i = 0; i < agentsCount; i++) {
+            shown[agents[i]] = AGENT;
+        }
+        for (int i = 0; i < transportsCount; i++) {
+            shown[transports[i]] = TRANSPORT;
+        }
+
+        shownCount = 0;
+        for (int cell : snapshot.agentCells()) {
+            shownCells = append(shownCells, shownCount++, cell);
+        }
+        for (int cell : snapshot.transportCells()) {
+            shownCells = append(shownCells, shownCount++, cell);
+        }
+
+        size = 0;
+        put(DELTA);
+        putVarLong(tick);
+        putCells(cleared, clearedCount);
+        putCells(agents, agentsCount);
+        putCells(transports, transportsCount);
+        return frame();
+    }
+
+    // Полное текущее состояние; вызывать после update того же тика
+    byte[] keyframe(long tick) {
+        agentsCount = transportsCount = 0;
+        for (int i = 0; i < shownCount; i++) {
+            int cell = shownCells[i];
+            if (shown[cell] == AGENT) {
+                agents = append(agents, agentsCount++, cell);
+            } else {
+                transports = append(transports, transportsCount++, cell);
+            }
+        }
+        size = 0;
+        put(KEYFRAME);
+        putVarLong(tick);
+        putCells(agents, agentsCount);
+        putCells(transports, transportsCount);
+        return frame();
+    }
+
+    private void putCells(int[] cells, int count) {
+        Arrays.sort(cells, 0, count);
+        putVarLong(count);
+        int previous = 0;
+        for (int i = 0; i < count; i++) {
+            putVarLong(cells[i] - previous);
+            previous = cells[i];
+        }
+    }
+
+    private static int[] append(int[] array, int index, int value) {
+        if (index == array.length) {
+            array = Arrays.copyOf(array, array.length * 2);
+        }
+        array[index] = value;
+        return array;
+    }
+
+    private void put(byte value) {
+        if (size == out.length) {
+            out = Arrays.copyOf(out, out.length * 2);
+        }
+        out[size++] = value;
+    }
+
+    private void putVarLong(long value) {
+        while ((value & ~0x7FL) != 0) {
+            put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        put((byte) value);
+    }
+
+    // Кадр раздаётся всем зрителям, поэтому это отдельная копия
+    private byte[] frame() {
+        return Arrays.copyOf(out, size);
+    }
+}
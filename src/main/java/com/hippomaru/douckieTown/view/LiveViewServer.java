@@ -0,0 +1,201 @@
+package com.hippomaru.douckieTown.view;
+
+import com.hippomaru.douckieTown.app.GameManager;
+import com.hippomaru.douckieTown.app.TickListener;
+import com.hippomaru.douckieTown.model.map.CellGrid;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+// Трансляция занятости карты удалённым зрителям по WebSocket на localhost; GET / отдаёт страницу просмотра.
+// Как и SwingVisualizer, поток симуляции только публикует OccupancySnapshot, и только пока есть зрители.
+// Поток кодирования берёт последний снимок (промежуточные пропускаются), считает дельту к отправленному
+// состоянию и раскладывает общий кадр по ограниченным очередям зрителей. Опорный кадр - раз в
+// keyframeInterval тиков и для новых или отставших зрителей:
+// им он уходит сразу, без ожидания следующего тика. doStep() не ждёт ни сети, ни кодирования.
+public class LiveViewServer implements TickListener, AutoCloseable {
+    private static final int DEFAULT_KEYFRAME_INTERVAL = 100;
+    private static final int DEFAULT_QUEUE_CAPACITY = 64;
+    private static final String VIEWER_PAGE = "/live-viewer.html";
+
+    private record Published(long tick, OccupancySnapshot snapshot) {
+    }
+
+    private final CellGrid map;
+    private final int keyframeInterval;
+    private final int queueCapacity;
+    private final ServerSocket serverSocket;
+    private final byte[] mapFrame;
+    private final byte[] viewerPage;
+    private final LiveFrameEncoder encoder;
+    private final Thread encoderThread;
+
+    private final List<ViewerConnection> viewers = new CopyOnWriteArrayList<>();
+    private final AtomicReference<Published> pending = new AtomicReference<>();
+    private final LongAdder droppedBacklogs = new LongAdder();
+    private volatile boolean keyframeRequested = false;
+    private volatile boolean closed = false;
+    private long nextKeyframeTick = 0;
+    // Тик последнего закодированного снимка; -1 - кодировщик ещё ничего не видел
+    private long encodedTick = -1;
+
+    public LiveViewServer(CellGrid map, int port) {
+        this(map, port, DEFAULT_KEYFRAME_INTERVAL, DEFAULT_QUEUE_CAPACITY);
+    }
+
+    // port 0 - любой свободный порт, см. getPort()
+    public LiveViewServer(CellGrid map, int port, int keyframeInterval, int queueCapacity) {
+        if (keyframeInterval <= 0 || queueCapacity <= 0) {
+            throw new IllegalArgumentException("Keyframe interval and queue capacity must be positive");
+        }
+        this.map = map;
+        this.keyframeInterval = keyframeInterval;
+        this.queueCapacity = queueCapacity;
+        this.mapFrame = LiveFrameEncoder.encodeMap(map);
+        this.viewerPage = loadViewerPage();
+        this.encoder = new LiveFrameEncoder(map.size());
+        try {
+            serverSocket = new ServerSocket();
+            serverSocket.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to start live view server on port " + port, e);
+        }
+        encoderThread = Thread.ofPlatform().daemon().name("live-view-encoder").start(this::encodeLoop);
+        Thread.ofPlatform().daemon().name("live-view-accept").start(this::acceptLoop);
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    public int getViewerCount() {
+        return viewers.size();
+    }
+
+    // Сколько раз очередь зрителя переполнялась и он пересинхронизировался по опорному кадру
+    public long getDroppedBacklogs() {
+        return droppedBacklogs.sum();
+    }
+
+    @Override
+    public void onTick(GameManager manager) {
+        publish(manager.getTick());
+    }
+
+    // Публикация без GameManager, например при воспроизведении журнала
+    public void publish(long tick) {
+        if (viewers.isEmpty()) return;
+        if (pending.getAndSet(new Published(tick, OccupancySnapshot.of(map))) == null) {
+            LockSupport.unpark(encoderThread);
+        }
+    }
+
+    void register(ViewerConnection viewer) {
+        viewers.add(viewer);
+        keyframeRequested = true;
+        LockSupport.unpark(encoderThread);
+    }
+
+    void unregister(ViewerConnection viewer) {
+        viewers.remove(viewer);
+    }
+
+    private void encodeLoop() {
+        while (!closed) {
+            Published published = pending.getAndSet(null);
+            if (published != null) {
+                broadcast(published);
+            } else if (keyframeRequested && encodedTick >= 0) {
+                resync();
+            } else {
+                LockSupport.park(this);
+            }
+        }
+    }
+
+    // Новый или отставший зритель сразу получает последнее закодированное состояние, не дожидаясь тика;
+    // следующие дельты считаются от него же, поэтому кадры остаются согласованными
+    private void resync() {
+        keyframeRequested = false;
+        byte[] keyframe = encoder.keyframe(encodedTick);
+        for (ViewerConnection viewer : viewers) {
+            if (viewer.isAwaitingKeyframe()) {
+                viewer.offerKeyframe(keyframe);
+            }
+        }
+    }
+
+    private void broadcast(Published published) {
+        long tick = published.tick();
+        byte[] delta = encoder.update(tick, published.snapshot());
+        encodedTick = tick;
+        boolean periodic = tick >= nextKeyframeTick;
+        byte[] keyframe = null;
+        if (periodic || keyframeRequested) {
+            keyframeRequested = false;
+            keyframe = encoder.keyframe(tick);
+            if (periodic) {
+                nextKeyframeTick = tick + keyframeInterval;
+            }
+        }
+        for (ViewerConnection viewer : viewers) {
+            if (keyframe != null && (periodic || viewer.isAwaitingKeyframe())) {
+                viewer.offerKeyframe(keyframe);
+            } else if (viewer.offerDelta(delta)) {
+                // Отставший зритель получит опорный кадр на следующем тике
+                droppedBacklogs.increment();
+                keyframeRequested = true;
+            }
+        }
+    }
+
+    private void acceptLoop() {
+        while (!closed) {
+            try {
+                Socket socket = serverSocket.accept();
+                ViewerConnection viewer = new ViewerConnection(this, socket, queueCapacity);
+                Thread.ofVirtual().name("live-view-viewer").start(() -> viewer.serve(mapFrame, viewerPage));
+            } catch (IOException e) {
+                if (closed) return;
+                throw new UncheckedIOException("Live view server failed to accept viewer", e);
+            }
+        }
+    }
+
+    private static byte[] loadViewerPage() {
+        try (InputStream in = LiveViewServer.class.getResourceAsStream(VIEWER_PAGE)) {
+            if (in == null) {
+                return "<html><body>Viewer page is missing from resources</body></html>"
+                        .getBytes(StandardCharsets.UTF_8);
+            }
+            return in.readAllBytes();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read viewer page", e);
+        }
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        LockSupport.unpark(encoderThread);
+        try {
+            serverSocket.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to close live view server", e);
+        }
+        for (ViewerConnection viewer : viewers) {
+            viewer.close();
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.hippomaru.douckieTown.view;
+
+import com.hippomaru.douckieTown.model.interactive.EntityKind;
+import com.hippomaru.douckieTown.model.map.CellGrid;
+import com.hippomaru.douckieTown.model.map.EntityRegistry;
+
+import java.util.Arrays;
+
+// Неизменяемый снимок занятости карты на конец тика: индексы клеток с агентами и с транспортом.
+// Размер пропорционален числу сущностей, а не площади карты.
+record OccupancySnapshot(int[] agentCells, int[] transportCells) {
+    static final OccupancySnapshot EMPTY = new OccupancySnapshot(new int[0], new int[0]);
+
+    // Вызывается потоком симуляции между тиками
+    static OccupancySnapshot of(CellGrid map) {
+        synchronized (map) {
+            EntityRegistry entities = map.getEntities();
+            return new OccupancySnapshot(cellsOf(entities, EntityKind.AGENT), cellsOf(entities, EntityKind.TRANSPORT));
+        }
+    }
+
+    private static int[] cellsOf(EntityRegistry entities, EntityKind kind) {
+        int count = entities.count(kind);
+        int[] cells = new int[count];
+        int placed = 0;
+        for (int i = 0; i < count; i++) {
+            int position = entities.positionOf(entities.get(kind, i));
+            if (position != EntityRegistry.NOT_PLACED) {
+                cells[placed++] = position;
+            }
+        }
+        return placed == count ? cells : Arrays.copyOf(cells, placed);
+    }
+}
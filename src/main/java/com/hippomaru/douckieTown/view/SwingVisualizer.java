@@ -0,0 +1,180 @@
+package com.hippomaru.douckieTown.view;
+
+import com.hippomaru.douckieTown.app.GameManager;
+import com.hippomaru.douckieTown.app.TickListener;
+import com.hippomaru.douckieTown.model.map.CellGrid;
+import com.hippomaru.douckieTown.model.map.CellType;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.concurrent.atomic.AtomicReference;
+
+// Отрисовка отвязана от симуляции: поток симуляции только публикует OccupancySnapshot,
+// EDT забирает последний снимок и перерисовывает в кадре лишь клетки, где сущности были или появились.
+// Статический фон рисуется один раз. Если GUI не успевает, промежуточные снимки пропускаются.
+public class SwingVisualizer implements TickListener {
+    private static final int CELL_SIZE = 20;
+    // На больших картах клетка уменьшается, чтобы кадр оставался в разумных пределах памяти
+    private static final int MAX_IMAGE_SIDE = 2000;
+    // Изменения копятся по плиткам TILE x TILE клеток
+    private static final int TILE = 8;
+
+    private static final Color AGENT_COLOR = Color.BLACK;
+    private static final Color TRANSPORT_COLOR = Color.YELLOW;
+    private static final Color TRANSPORT_SPAWN_COLOR = new Color(139, 69, 19); // Коричневый
+
+    private final CellGrid map;
+    private final int cellSize;
+    private final int[] background;
+    // Кадр, который показывает панель; меняется только на EDT
+    private final BufferedImage frameImage;
+    private final int[] framePixels;
+    private final JFrame frame;
+    private final MapPanel mapPanel;
+    private final int tileColumns;
+    private final BitSet dirtyTiles = new BitSet();
+
+    private final AtomicReference<OccupancySnapshot> pending = new AtomicReference<>();
+    private OccupancySnapshot drawn = OccupancySnapshot.EMPTY;
+
+    public SwingVisualizer(CellGrid map) {
+        this.map = map;
+        this.cellSize = Math.max(1, Math.min(CELL_SIZE,
+                MAX_IMAGE_SIDE / Math.max(1, Math.max(map.getWidth(), map.getHeight()))));
+
+        frameImage = new BufferedImage(Math.max(1, map.getHeight() * cellSize),
+                Math.max(1, map.getWidth() * cellSize), BufferedImage.TYPE_INT_RGB);
+        framePixels = ((DataBufferInt) frameImage.getRaster().getDataBuffer()).getData();
+        drawBackground();
+        background = framePixels.clone();
+        tileColumns = (map.getHeight() + TILE - 1) / TILE;
+
+        frame = new JFrame("Douckie Town Simulation");
+        frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+
+        mapPanel = new MapPanel();
+        mapPanel.setPreferredSize(new Dimension(frameImage.getWidth(), frameImage.getHeight()));
+
+        frame.add(new JScrollPane(mapPanel));
+        frame.pack();
+        frame.setLocationRelativeTo(null);
+        frame.setVisible(true);
+    }
+
+    @Override
+    public void onTick(GameManager manager) {
+        refresh();
+    }
+
+    // Перерисовка без GameManager, например при воспроизведении журнала
+    public void refresh() {
+        publish(OccupancySnapshot.of(map));
+    }
+
+    // Без блокировок: EDT планируется, только если предыдущий снимок уже забран
+    private void publish(OccupancySnapshot snapshot) {
+        if (pending.getAndSet(snapshot) == null) {
+            SwingUtilities.invokeLater(this::drawPending);
+        }
+    }
+
+    private void drawPending() {
+        OccupancySnapshot snapshot = pending.getAndSet(null);
+        if (snapshot == null) return;
+
+        for (int cell : drawn.agentCells()) restoreBackground(cell);
+        for (int cell : drawn.transportCells()) restoreBackground(cell);
+
+        Graphics2D g = frameImage.createGraphics();
+        try {
+            g.setColor(AGENT_COLOR);
+            for (int cell : snapshot.agentCells()) drawEntity(g, cell);
+            g.setColor(TRANSPORT_COLOR);
+            for (int cell : snapshot.transportCells()) drawEntity(g, cell);
+        } finally {
+            g.dispose();
+        }
+        drawn = snapshot;
+        paintDirtyTiles();
+    }
+
+    // RepaintManager склеивает все repaint одного компонента в общий охватывающий прямоугольник,
+    // поэтому грязные плитки рисуются сразу на EDT: соседние плитки одной полосы - одним прямоугольником
+    private void paintDirtyTiles() {
+        int tileSize = TILE * cellSize;
+        int start = dirtyTiles.nextSetBit(0);
+        while (start >= 0) {
+            int row = start / tileColumns;
+            int end = Math.min(dirtyTiles.nextClearBit(start), (row + 1) * tileColumns);
+            mapPanel.paintImmediately((start - row * tileColumns) * tileSize, row * tileSize,
+                    (end - start) * tileSize, tileSize);
+            start = dirtyTiles.nextSetBit(end);
+        }
+        dirtyTiles.clear();
+    }
+
+    private void drawBackground() {
+        int imageWidth = frameImage.getWidth();
+        for (int x = 0; x < map.getWidth(); x++) {
+            for (int y = 0; y < map.getHeight(); y++) {
+                int rgb = colorOf(map.getCellType(x, y)).getRGB();
+                for (int row = x * cellSize; row < (x + 1) * cellSize; row++) {
+                    int offset = row * imageWidth + y * cellSize;
+                    Arrays.fill(framePixels, offset, offset + cellSize, rgb);
+                }
+            }
+        }
+    }
+
+    private static Color colorOf(CellType cellType) {
+        return switch (cellType) {
+            case WALL -> Color.GREEN;
+            case AGENT_SPAWN -> Color.DARK_GRAY;
+            case ROAD -> Color.LIGHT_GRAY;
+            case FINISH -> Color.BLUE;
+            case TRANSPORT_SPAWN -> TRANSPORT_SPAWN_COLOR;
+            default -> Color.WHITE;
+        };
+    }
+
+    // Клетка (x, y) рисуется в столбце y и строке x
+    private void restoreBackground(int cell) {
+        int left = map.yOf(cell) * cellSize;
+        int top = map.xOf(cell) * cellSize;
+        int imageWidth = frameImage.getWidth();
+        for (int row = top; row < top + cellSize; row++) {
+            int offset = row * imageWidth + left;
+            System.arraycopy(background, offset, framePixels, offset, cellSize);
+        }
+        markDirty(cell);
+    }
+
+    private void drawEntity(Graphics2D g, int cell) {
+        int left = map.yOf(cell) * cellSize;
+        int top = map.xOf(cell) * cellSize;
+        // Круг из пары пикселей не виден, на мелком масштабе сущность - закрашенная клетка
+        if (cellSize < 4) {
+            g.fillRect(left, top, cellSize, cellSize);
+        } else {
+            g.fillOval(left, top, cellSize, cellSize);
+        }
+        markDirty(cell);
+    }
+
+    private void markDirty(int cell) {
+        dirtyTiles.set(map.xOf(cell) / TILE * tileColumns + map.yOf(cell) / TILE);
+    }
+
+    // Панель только выводит готовый кадр и не обращается к карте
+    private class MapPanel extends JPanel {
+        @Override
+        protected void paintComponent(Graphics g) {
+            super.paintComponent(g);
+            g.drawImage(frameImage, 0, 0, null);
+        }
+    }
+}
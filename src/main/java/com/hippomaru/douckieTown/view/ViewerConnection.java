@@ -0,0 +1,209 @@
+package com.hippomaru.douckieTown.view;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+// Один зритель: рукопожатие WebSocket (RFC 6455), ограниченная очередь кадров и поток записи в сокет.
+// Медленный зритель тормозит только свой поток записи. Если очередь переполнена, накопленные кадры
+// выбрасываются и зритель пропускает дельты до ближайшего опорного кадра.
+// Обычный GET без Upgrade получает страницу просмотра.
+final class ViewerConnection {
+    private static final String WEBSOCKET_GUID = "258EAFA5-E914-47DA-95CA-C5AB0DC85B11";
+    private static final int MAX_REQUEST_SIZE = 8192;
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final LiveViewServer server;
+    private final Socket socket;
+    private final BlockingQueue<byte[]> queue;
+    // Меняется только потоком кодирования LiveViewServer
+    private boolean awaitingKeyframe = true;
+    private volatile boolean closed = false;
+
+    ViewerConnection(LiveViewServer server, Socket socket, int queueCapacity) {
+        this.server = server;
+        this.socket = socket;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+    }
+
+    // Поток соединения: рукопожатие, затем запись кадров; входящие кадры читает отдельный поток
+    void serve(byte[] mapFrame, byte[] viewerPage) {
+        try {
+            socket.setTcpNoDelay(true);
+            InputStream in = socket.getInputStream();
+            OutputStream out = new BufferedOutputStream(socket.getOutputStream(), BUFFER_SIZE);
+            Map<String, String> headers = readRequest(in);
+            String key = headers.get("sec-websocket-key");
+            if (key == null || !"websocket".equalsIgnoreCase(headers.get("upgrade"))) {
+                writePage(out, viewerPage);
+                return;
+            }
+            out.write(("HTTP/1.1 101 Switching Protocols\r\n"
+                    + "Upgrade: websocket\r\n"
+                    + "Connection: Upgrade\r\n"
+                    + "Sec-WebSocket-Accept: " + acceptKey(key) + "\r\n\r\n").getBytes(StandardCharsets.ISO_8859_1));
+            writeFrame(out, mapFrame);
+            out.flush();
+
+            Thread.ofVirtual().name("live-view-reader").start(() -> discardIncoming(in));
+            server.register(this);
+            while (!closed) {
+                byte[] frame = queue.take();
+                writeFrame(out, frame);
+                if (queue.isEmpty()) {
+                    out.flush();
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            // Зритель отключился или прислал некорректный запрос
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            close();
+        }
+    }
+
+    // Дельта применима только поверх предыдущего кадра; true, если кадры пришлось выбросить
+    boolean offerDelta(byte[] frame) {
+        if (awaitingKeyframe) return false;
+        if (queue.offer(frame)) return false;
+        queue.clear();
+        awaitingKeyframe = true;
+        return true;
+    }
+
+    // Опорный кадр заменяет всё, что зритель ещё не получил
+    void offerKeyframe(byte[] frame) {
+        queue.clear();
+        queue.offer(frame);
+        awaitingKeyframe = false;
+    }
+
+    boolean isAwaitingKeyframe() {
+        return awaitingKeyframe;
+    }
+
+    void close() {
+        if (closed) return;
+        closed = true;
+        server.unregister(this);
+        // Разбудить поток записи, если он ждёт кадр
+        queue.offer(new byte[0]);
+        try {
+            socket.close();
+        } catch (IOException e) {
+            // сокет уже закрыт
+        }
+    }
+
+    // Зритель ничего не присылает, кроме служебных кадров; закрытие или обрыв завершают соединение
+    private void discardIncoming(InputStream in) {
+        try {
+            while (!closed) {
+                int first = in.read();
+                int second = in.read();
+                if (first < 0 || second < 0) break;
+                long length = second & 0x7F;
+                if (length == 126) {
+                    length = (readByte(in) << 8) | readByte(in);
+                } else if (length == 127) {
+                    length = 0;
+                    for (int i = 0; i < 8; i++) {
+                        length = (length << 8) | readByte(in);
+                    }
+                }
+                // Кадры клиента всегда маскированы: 4 байта ключа
+                in.skipNBytes(length + ((second & 0x80) != 0 ? 4 : 0));
+                if ((first & 0x0F) == 0x8) break;
+            }
+        } catch (IOException e) {
+            // соединение уже закрыто
+        } finally {
+            close();
+        }
+    }
+
+    private static int readByte(InputStream in) throws IOException {
+        int value = in.read();
+        if (value < 0) {
+            throw new IOException("Unexpected end of WebSocket frame");
+        }
+        return value;
+    }
+
+    // Бинарный кадр сервера: FIN, без маски
+    private static void writeFrame(OutputStream out, byte[] payload) throws IOException {
+        if (payload.length == 0) return;
+        out.write(0x82);
+        if (payload.length < 126) {
+            out.write(payload.length);
+        } else if (payload.length < 1 << 16) {
+            out.write(126);
+            out.write(payload.length >>> 8);
+            out.write(payload.length);
+        } else {
+            out.write(127);
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                out.write((int) ((long) payload.length >>> shift));
+            }
+        }
+        out.write(payload);
+    }
+
+    private static void writePage(OutputStream out, byte[] page) throws IOException {
+        out.write(("HTTP/1.1 200 OK\r\n"
+                + "Content-Type: text/html; charset=utf-8\r\n"
+                + "Content-Length: " + page.length + "\r\n"
+                + "Connection: close\r\n\r\n").getBytes(StandardCharsets.ISO_8859_1));
+        out.write(page);
+        out.flush();
+    }
+
+    // Заголовки запроса с именами в нижнем регистре
+    private static Map<String, String> readRequest(InputStream in) throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        Map<String, String> headers = new HashMap<>();
+        int total = 0;
+        boolean requestLine = true;
+        while (true) {
+            int b = in.read();
+            if (b < 0 || ++total > MAX_REQUEST_SIZE) {
+                throw new IOException("Incomplete HTTP request");
+            }
+            if (b != '\n') {
+                if (b != '\r') line.write(b);
+                continue;
+            }
+            String text = line.toString(StandardCharsets.ISO_8859_1);
+            line.reset();
+            if (text.isEmpty()) return headers;
+            int colon = text.indexOf(':');
+            if (!requestLine && colon > 0) {
+                headers.put(text.substring(0, colon).trim().toLowerCase(Locale.ROOT), text.substring(colon + 1).trim());
+            }
+            requestLine = false;
+        }
+    }
+
+    private static String acceptKey(String key) {
+        try {
+            MessageDigest sha1 = MessageDigest.getInstance("SHA-1");
+            byte[] digest = sha1.digest((key + WEBSOCKET_GUID).getBytes(StandardCharsets.ISO_8859_1));
+            return Base64.getEncoder().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-1 is not available", e);
+        }
+    }
+}
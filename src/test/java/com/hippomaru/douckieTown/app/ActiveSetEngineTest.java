@@ -0,0 +1,29 @@
+package com.hippomaru.douckieTown.app;
+
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+// Сон заблокированных сущностей и досчёт проспанных тиков не меняют результат
+class ActiveSetEngineTest {
+    @TempDir
+    Path dir;
+
+    @ParameterizedTest
+    @ValueSource(longs = {1, 2, 3, 11, 42, 77})
+    void sleepingDoesNotChangeResult(long seed) {
+        assertArrayEquals(run(seed, false), run(seed, true));
+    }
+
+    private byte[] run(long seed, boolean sleeping) {
+        GameManager manager = SimulationRuns.newManager(seed);
+        manager.enableActiveSetEngine();
+        manager.getActiveSetEngine().setSleeping(sleeping);
+        SimulationRuns.step(manager, SimulationRuns.TICKS);
+        return SimulationRuns.snapshot(manager, dir);
+    }
+}
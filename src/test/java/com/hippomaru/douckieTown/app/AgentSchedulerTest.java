@@ -0,0 +1,32 @@
+package com.hippomaru.douckieTown.app;
+
+import com.hippomaru.douckieTown.app.scheduler.SchedulerType;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.nio.file.Path;
+
+import static com.hippomaru.douckieTown.app.SimulationRuns.TICKS;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+// Результат не зависит от планировщика шагов агентов и от того, как потоки разберут шаги
+class AgentSchedulerTest {
+    @TempDir
+    Path dir;
+
+    @ParameterizedTest
+    @ValueSource(longs = {1, 2, 42})
+    void schedulerDoesNotChangeResult(long seed) {
+        byte[] sequential = run(seed, SchedulerType.SEQUENTIAL);
+        for (SchedulerType type : SchedulerType.values()) {
+            assertArrayEquals(sequential, run(seed, type), type.name());
+        }
+    }
+
+    private byte[] run(long seed, SchedulerType type) {
+        GameManager manager = SimulationRuns.newManager(seed, type.create());
+        SimulationRuns.step(manager, TICKS);
+        return SimulationRuns.snapshot(manager, dir);
+    }
+}
@@ -0,0 +1,104 @@
+package com.hippomaru.douckieTown.app;
+
+import com.hippomaru.douckieTown.model.interactive.Agent;
+import com.hippomaru.douckieTown.model.interactive.Direction;
+import com.hippomaru.douckieTown.model.map.CellGrid;
+import com.hippomaru.douckieTown.model.map.Coords;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+// Шаги транспорта и агентов не выделяют память
+class AllocationTest {
+    private static final int WARMUP_TICKS = 2_000;
+    private static final int ROUND_TICKS = 1_000;
+    private static final int ROUNDS = 5;
+    private static final int LANES = 64;
+    private static final int LANE_LENGTH = WARMUP_TICKS + ROUNDS * ROUND_TICKS + 2;
+
+    private static com.sun.management.ThreadMXBean threads;
+
+    @BeforeAll
+    static void enableAllocationCounters() {
+        assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean bean
+                && bean.isThreadAllocatedMemorySupported(), "Thread allocation counters are not supported");
+        threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        threads.setThreadAllocatedMemoryEnabled(true);
+    }
+
+    @Test
+    void transportStepDoesNotAllocate() {
+        GameManager manager = new GameManager(new CellGrid("src/main/resources/map_five_agents.txt"), Integer.MAX_VALUE, 0.3);
+        for (int i = 0; i < WARMUP_TICKS; i++) {
+            manager.doStep();
+        }
+        long bytes = cleanestRoundBytes(manager::moveTransport);
+        manager.close();
+        assertEquals(0, bytes, "moveTransport allocated bytes");
+    }
+
+    // Каждый агент едет по своей полосе и никогда не блокируется:
+    // перепланирование строит новый маршрут и шагом не считается
+    @Test
+    void agentStepDoesNotAllocate() {
+        int[][] encoded = new int[LANES][LANE_LENGTH];
+        for (int x = 0; x < LANES; x++) {
+            encoded[x][LANE_LENGTH - 1] = 4;
+        }
+        CellGrid map = new CellGrid(encoded);
+        List<Agent> agents = new ArrayList<>(LANES);
+        for (int x = 0; x < LANES; x++) {
+            Coords[] route = new Coords[LANE_LENGTH];
+            for (int y = 0; y < LANE_LENGTH; y++) {
+                route[y] = new Coords(x, y);
+            }
+            Agent agent = new Agent();
+            agent.setCurrentDirection(Direction.UP);
+            agent.setCurrentCoords(route[0]);
+            agent.setChosenRoute(route);
+            agent.setMap(map);
+            map.setOccupant(route[0], agent);
+            agents.add(agent);
+        }
+
+        for (int i = 0; i < WARMUP_TICKS; i++) {
+            stepAll(agents);
+        }
+        long bytes = cleanestRoundBytes(() -> stepAll(agents));
+        assertEquals(0, bytes, "Agent.step allocated bytes");
+        Agent agent = agents.get(0);
+        assertEquals(agent.getStepsCounter(), agent.getSuccessStepsCounter());
+    }
+
+    // Разовые выделения JIT (деоптимизация заново создаёт объекты, убранные escape-анализом)
+    // не повторяются, а выделение в самом шаге есть в каждом раунде: хватает одного чистого раунда
+    private static long cleanestRoundBytes(Runnable tick) {
+        long cleanest = Long.MAX_VALUE;
+        for (int round = 0; round < ROUNDS && cleanest > 0; round++) {
+            long bytes = 0;
+            for (int i = 0; i < ROUND_TICKS; i++) {
+                long before = allocatedBytes();
+                tick.run();
+                bytes += allocatedBytes() - before;
+            }
+            cleanest = Math.min(cleanest, bytes);
+        }
+        return cleanest;
+    }
+
+    private static void stepAll(List<Agent> agents) {
+        for (int i = 0; i < agents.size(); i++) {
+            agents.get(i).step();
+        }
+    }
+
+    private static long allocatedBytes() {
+        return threads.getThreadAllocatedBytes(Thread.currentThread().threadId());
+    }
+}
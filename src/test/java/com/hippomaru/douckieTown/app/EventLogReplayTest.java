@@ -0,0 +1,77 @@
+package com.hippomaru.douckieTown.app;
+
+import com.hippomaru.douckieTown.model.interactive.TrafficMember;
+import com.hippomaru.douckieTown.model.map.CellGrid;
+import com.hippomaru.douckieTown.replay.EventLogFormat;
+import com.hippomaru.douckieTown.replay.EventLogReader;
+import com.hippomaru.douckieTown.replay.EventLogRecorder;
+import com.hippomaru.douckieTown.replay.GridReplay;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Журнал событий, воспроизведённый на пустой карте, даёт ту же занятость, что и живой прогон, тик в тик
+class EventLogReplayTest {
+    private static final long SEED = 17;
+
+    enum Setup {
+        DEFAULT(manager -> {
+        }),
+        ACTIVE_SET(GameManager::enableActiveSetEngine),
+        REGIONS(manager -> manager.enableRegionParallelEngine(2, 2, 2));
+
+        final Consumer<GameManager> apply;
+
+        Setup(Consumer<GameManager> apply) {
+            this.apply = apply;
+        }
+    }
+
+    @TempDir
+    Path dir;
+
+    @ParameterizedTest
+    @EnumSource(Setup.class)
+    void replayMatchesLiveOccupancy(Setup setup) {
+        Path log = dir.resolve("run" + EventLogFormat.EXTENSION);
+        List<int[]> live = new ArrayList<>();
+        GameManager manager = SimulationRuns.newManager(SEED);
+        setup.apply.accept(manager);
+        try (EventLogRecorder recorder = new EventLogRecorder(log)) {
+            manager.addTickListener(recorder);
+            manager.addTickListener(current -> live.add(occupancy(current.getMap())));
+            SimulationRuns.step(manager, SimulationRuns.TICKS);
+        } finally {
+            manager.close();
+        }
+
+        CellGrid map = new CellGrid(SimulationRuns.MAP);
+        try (EventLogReader reader = new EventLogReader(log)) {
+            GridReplay replay = new GridReplay(map, reader);
+            for (int tick = 0; tick < live.size(); tick++) {
+                assertTrue(replay.step(), "log ended before tick " + (tick + 1));
+                assertArrayEquals(live.get(tick), occupancy(map), "tick " + (tick + 1));
+            }
+            assertFalse(replay.step());
+        }
+    }
+
+    // Id в воспроизведении свои, поэтому сравнивается вид сущности в клетке: 0 - пусто
+    private static int[] occupancy(CellGrid map) {
+        int[] kinds = new int[map.size()];
+        for (int i = 0; i < kinds.length; i++) {
+            TrafficMember occupant = map.getOccupant(i);
+            kinds[i] = occupant == null ? 0 : occupant.getKind().ordinal() + 1;
+        }
+        return kinds;
+    }
+}
@@ -0,0 +1,72 @@
+package com.hippomaru.douckieTown.app;
+
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.nio.file.Path;
+import java.util.function.Consumer;
+
+import static com.hippomaru.douckieTown.app.SimulationRuns.TICKS;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+// Перемотка с полётами по коридорам приходит в то же состояние, что и обычные шаги того же движка
+class FastForwardTest {
+    private static final int CHUNK_TICKS = 37;
+    private static final long SEED = 5;
+
+    enum Setup {
+        ACTIVE_SET(GameManager::enableActiveSetEngine),
+        HIERARCHICAL(manager -> {
+            manager.enableActiveSetEngine();
+            manager.enableHierarchicalRouting();
+        }),
+        // Движок по умолчанию и движок областей перематываются обычными шагами
+        DEFAULT(manager -> {
+        }),
+        REGIONS(manager -> manager.enableRegionParallelEngine(2, 2, 2));
+
+        final Consumer<GameManager> apply;
+
+        Setup(Consumer<GameManager> apply) {
+            this.apply = apply;
+        }
+    }
+
+    @TempDir
+    Path dir;
+
+    @ParameterizedTest
+    @EnumSource(Setup.class)
+    void fastForwardMatchesStepping(Setup setup) {
+        GameManager forwarded = newManager(setup);
+        forwarded.fastForward(TICKS);
+        assertArrayEquals(stepped(setup), SimulationRuns.snapshot(forwarded, dir));
+    }
+
+    // Полёты, прерванные концом перемотки, досчитываются и продолжаются обычными шагами
+    @ParameterizedTest
+    @EnumSource(Setup.class)
+    void chunkedFastForwardMatchesStepping(Setup setup) {
+        GameManager forwarded = newManager(setup);
+        for (int done = 0; done < TICKS; done += CHUNK_TICKS + 1) {
+            forwarded.fastForward(Math.min(CHUNK_TICKS, TICKS - done));
+            if (done + CHUNK_TICKS < TICKS) {
+                forwarded.doStep();
+            }
+        }
+        assertArrayEquals(stepped(setup), SimulationRuns.snapshot(forwarded, dir));
+    }
+
+    private byte[] stepped(Setup setup) {
+        GameManager manager = newManager(setup);
+        SimulationRuns.step(manager, TICKS);
+        return SimulationRuns.snapshot(manager, dir);
+    }
+
+    private static GameManager newManager(Setup setup) {
+        GameManager manager = SimulationRuns.newManager(SEED);
+        setup.apply.accept(manager);
+        return manager;
+    }
+}
@@ -0,0 +1,60 @@
+package com.hippomaru.douckieTown.app;
+
+import com.hippomaru.douckieTown.model.map.CellGrid;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.nio.file.Path;
+
+import static com.hippomaru.douckieTown.app.SimulationRuns.TICKS;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+// Результат параллельного по регионам движка не зависит от разбиения карты и числа потоков
+class RegionParallelEngineTest {
+    @TempDir
+    Path dir;
+
+    @ParameterizedTest
+    @ValueSource(longs = {1, 2, 42})
+    void regionLayoutDoesNotChangeResult(long seed) {
+        byte[] single = run(seed, 1, 1, 1);
+        assertArrayEquals(single, run(seed, 2, 2, 4), "2x2 regions");
+        assertArrayEquals(single, run(seed, 4, 4, 4), "4x4 regions");
+    }
+
+    // Движок по умолчанию - та же одна область; снимки различаются только байтом движка,
+    // поэтому сравнивается занятость клеток id сущностей на каждом тике
+    @ParameterizedTest
+    @ValueSource(longs = {1, 2, 42})
+    void defaultEngineMatchesRegions(long seed) {
+        GameManager plain = SimulationRuns.newManager(seed);
+        GameManager regions = SimulationRuns.newManager(seed);
+        regions.enableRegionParallelEngine(2, 2, 4);
+        try {
+            for (int tick = 0; tick < TICKS; tick++) {
+                plain.doStep();
+                regions.doStep();
+                assertArrayEquals(occupancy(plain.getMap()), occupancy(regions.getMap()), "tick " + tick);
+            }
+        } finally {
+            plain.close();
+            regions.close();
+        }
+    }
+
+    private static int[] occupancy(CellGrid map) {
+        int[] ids = new int[map.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = map.getOccupantId(i);
+        }
+        return ids;
+    }
+
+    private byte[] run(long seed, int regionRows, int regionColumns, int parallelism) {
+        GameManager manager = SimulationRuns.newManager(seed);
+        manager.enableRegionParallelEngine(regionRows, regionColumns, parallelism);
+        SimulationRuns.step(manager, TICKS);
+        return SimulationRuns.snapshot(manager, dir);
+    }
+}
@@ -0,0 +1,49 @@
+package com.hippomaru.douckieTown.app;
+
+import com.hippomaru.douckieTown.app.scheduler.AgentScheduler;
+import com.hippomaru.douckieTown.app.scheduler.SequentialAgentScheduler;
+import com.hippomaru.douckieTown.model.map.CellGrid;
+import com.hippomaru.douckieTown.model.map.MapGenerator;
+import com.hippomaru.douckieTown.model.map.MapTopology;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+// Общее для тестов, сравнивающих прогоны разными движками по байтам снимка
+final class SimulationRuns {
+    static final MapTopology MAP = new MapGenerator(96, 96, 7).generate();
+    static final int MAX_AGENTS = 300;
+    static final double TRANSPORT_SPAWN_PROBABILITY = 0.3;
+    static final int TICKS = 400;
+
+    private SimulationRuns() {
+    }
+
+    static GameManager newManager(long seed) {
+        return newManager(seed, new SequentialAgentScheduler());
+    }
+
+    static GameManager newManager(long seed, AgentScheduler scheduler) {
+        return new GameManager(new CellGrid(MAP), MAX_AGENTS, TRANSPORT_SPAWN_PROBABILITY,
+                scheduler, PlanningMode.INDEPENDENT, seed);
+    }
+
+    static void step(GameManager manager, int ticks) {
+        for (int i = 0; i < ticks; i++) {
+            manager.doStep();
+        }
+    }
+
+    static byte[] snapshot(GameManager manager, Path dir) {
+        try {
+            Path file = Files.createTempFile(dir, "run-", ".snap");
+            manager.writeSnapshot(file);
+            manager.close();
+            return Files.readAllBytes(file);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
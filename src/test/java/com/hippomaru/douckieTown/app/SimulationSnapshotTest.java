@@ -0,0 +1,51 @@
+package com.hippomaru.douckieTown.app;
+
+import com.hippomaru.douckieTown.app.scheduler.SequentialAgentScheduler;
+import com.hippomaru.douckieTown.model.map.CellGrid;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.nio.file.Path;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+// Прогон, восстановленный из снимка, продолжает исходный тик в тик
+class SimulationSnapshotTest {
+    private static final int TICKS_BEFORE_SNAPSHOT = 150;
+    private static final long SEED = 11;
+
+    enum Setup {
+        SEQUENTIAL(manager -> {
+        }),
+        ACTIVE_SET(GameManager::enableActiveSetEngine),
+        REGIONS(manager -> manager.enableRegionParallelEngine(2, 2, 2)),
+        HIERARCHICAL(GameManager::enableHierarchicalRouting);
+
+        final Consumer<GameManager> apply;
+
+        Setup(Consumer<GameManager> apply) {
+            this.apply = apply;
+        }
+    }
+
+    @TempDir
+    Path dir;
+
+    @ParameterizedTest
+    @EnumSource(Setup.class)
+    void restoredRunContinuesOriginal(Setup setup) {
+        GameManager original = SimulationRuns.newManager(SEED);
+        setup.apply.accept(original);
+        SimulationRuns.step(original, TICKS_BEFORE_SNAPSHOT);
+        Path snapshot = dir.resolve("middle.snap");
+        original.writeSnapshot(snapshot);
+        SimulationRuns.step(original, SimulationRuns.TICKS - TICKS_BEFORE_SNAPSHOT);
+
+        GameManager restored = GameManager.restore(new CellGrid(SimulationRuns.MAP), snapshot, new SequentialAgentScheduler());
+        SimulationRuns.step(restored, SimulationRuns.TICKS - TICKS_BEFORE_SNAPSHOT);
+
+        assertArrayEquals(SimulationRuns.snapshot(original, dir), SimulationRuns.snapshot(restored, dir));
+    }
+}
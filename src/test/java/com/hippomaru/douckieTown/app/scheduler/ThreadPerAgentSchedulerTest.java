@@ -0,0 +1,60 @@
+package com.hippomaru.douckieTown.app.scheduler;
+
+import com.hippomaru.douckieTown.model.interactive.Agent;
+import com.hippomaru.douckieTown.model.interactive.Direction;
+import com.hippomaru.douckieTown.model.map.CellGrid;
+import com.hippomaru.douckieTown.model.map.Coords;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+// Дешёвые тики подряд: рабочий поток не должен терять защёлку следующего запроса
+class ThreadPerAgentSchedulerTest {
+    private static final int AGENTS = 16;
+    private static final int LANE_LENGTH = 8;
+    private static final int TICKS = 20_000;
+
+    @Test
+    void cheapTicksDoNotHang() {
+        int[][] encoded = new int[AGENTS][LANE_LENGTH];
+        for (int x = 0; x < AGENTS; x++) {
+            encoded[x][LANE_LENGTH - 1] = 4;
+        }
+        CellGrid map = new CellGrid(encoded);
+        List<Agent> agents = new ArrayList<>(AGENTS);
+        AgentScheduler scheduler = SchedulerType.THREAD_PER_AGENT.create();
+        for (int x = 0; x < AGENTS; x++) {
+            Coords[] route = new Coords[LANE_LENGTH];
+            for (int y = 0; y < LANE_LENGTH; y++) {
+                route[y] = new Coords(x, y);
+            }
+            Agent agent = new Agent();
+            agent.setCurrentDirection(Direction.UP);
+            agent.setCurrentCoords(route[0]);
+            agent.setChosenRoute(route);
+            agent.setMap(map);
+            map.setOccupant(route[0], agent);
+            agents.add(agent);
+            scheduler.onSpawn(agent);
+        }
+
+        try {
+            assertTimeoutPreemptively(Duration.ofSeconds(30), () -> {
+                for (int i = 0; i < TICKS; i++) {
+                    scheduler.prepareAll(agents);
+                }
+            });
+        } finally {
+            scheduler.close();
+        }
+        // Ходы только выбираются, поэтому каждый агент всё ещё целится во вторую клетку своей полосы
+        for (int x = 0; x < AGENTS; x++) {
+            assertEquals(map.index(x, 1), agents.get(x).getPendingIntent());
+        }
+    }
+}
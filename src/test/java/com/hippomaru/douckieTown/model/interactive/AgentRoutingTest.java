@@ -0,0 +1,52 @@
+package com.hippomaru.douckieTown.model.interactive;
+
+import com.hippomaru.douckieTown.model.map.CellGrid;
+import com.hippomaru.douckieTown.model.map.CellType;
+import com.hippomaru.douckieTown.model.map.Coords;
+import com.hippomaru.douckieTown.model.map.DistanceField;
+import com.hippomaru.douckieTown.model.map.MapGenerator;
+import com.hippomaru.douckieTown.model.routing.HierarchicalPath;
+import com.hippomaru.douckieTown.model.routing.HierarchicalPlanner;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+// Если HPA* пути не нашёл, агент едет по полю расстояний, а не остаётся с пустым маршрутом
+class AgentRoutingTest {
+    @Test
+    void followPathWithoutPathFallsBackToFlatRoute() {
+        CellGrid map = new CellGrid(new MapGenerator(64, 64, 3).generate());
+        DistanceField field = map.getFinishDistanceField();
+        Coords start = farthestReachable(map, field);
+
+        Agent agent = new Agent();
+        agent.setMap(map);
+        agent.setCurrentCoords(start);
+        // Сначала многоучастковый путь HPA*: fallback должен сбросить и его оставшиеся участки
+        HierarchicalPlanner planner = new HierarchicalPlanner(map.getTopology(), 4);
+        HierarchicalPath path = planner.plan(start, planner.destination(CellType.FINISH));
+        assertNotNull(path);
+        agent.followPath(path);
+        assertNotNull(agent.getHierarchicalPath());
+
+        agent.followPath(null);
+
+        Coords[] flat = field.extractRoute(start);
+        assertArrayEquals(flat, agent.getChosenRoute());
+        assertNull(agent.getHierarchicalPath());
+        assertEquals(flat[1], agent.getNextCoords());
+    }
+
+    private static Coords farthestReachable(CellGrid map, DistanceField field) {
+        int farthest = -1;
+        for (int index = 0; index < map.size(); index++) {
+            if (field.isReachable(index) && (farthest < 0 || field.getDistance(index) > field.getDistance(farthest))) {
+                farthest = index;
+            }
+        }
+        return map.coordsOf(farthest);
+    }
+}
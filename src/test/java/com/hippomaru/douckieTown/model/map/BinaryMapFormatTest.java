@@ -0,0 +1,94 @@
+package com.hippomaru.douckieTown.model.map;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+// Текст -> .dtmap -> MapTopology даёт ту же карту; упаковка по полубайтам и проверка длины файла
+class BinaryMapFormatTest {
+    private static final int HEADER_SIZE = 16;
+    // 3 x 5 = 15 клеток: нечётное число, последний байт заполнен наполовину
+    private static final String TEXT_MAP = """
+            01234
+            43210
+            20413
+            """;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void convertedTextMatchesTextTopology() throws IOException {
+        Path text = dir.resolve("map.txt");
+        Files.writeString(text, TEXT_MAP);
+        Path binary = dir.resolve("map" + BinaryMapFormat.EXTENSION);
+        BinaryMapFormat.convertText(text, binary);
+
+        assertSameCells(MapTopology.fromTextFile(text.toString()), BinaryMapFormat.readTopology(binary));
+    }
+
+    @Test
+    void writtenTopologyReadsBack() {
+        // Нечётные стороны - нечётное число клеток
+        MapTopology map = new MapGenerator(65, 33, 5).generate();
+        Path binary = dir.resolve("generated" + BinaryMapFormat.EXTENSION);
+        BinaryMapFormat.write(map, binary);
+
+        assertSameCells(map, BinaryMapFormat.readTopology(binary));
+    }
+
+    @Test
+    void packsTwoCellsPerByteLowNibbleFirst() throws IOException {
+        Path text = dir.resolve("map.txt");
+        Files.writeString(text, TEXT_MAP);
+        Path binary = dir.resolve("map" + BinaryMapFormat.EXTENSION);
+        BinaryMapFormat.convertText(text, binary);
+        MapTopology map = MapTopology.fromTextFile(text.toString());
+
+        byte[] bytes = Files.readAllBytes(binary);
+        assertEquals(HEADER_SIZE + (map.size() + 1) / 2, bytes.length);
+        for (int index = 0; index < map.size(); index++) {
+            int packed = bytes[HEADER_SIZE + index / 2];
+            int nibble = index % 2 == 0 ? packed & 0x0F : (packed >>> 4) & 0x0F;
+            assertEquals(map.getCellType(index).ordinal(), nibble, "cell " + index);
+        }
+        assertEquals(0, (bytes[bytes.length - 1] >>> 4) & 0x0F);
+    }
+
+    @Test
+    void truncatedCellsAreRejected() throws IOException {
+        Path binary = dir.resolve("truncated" + BinaryMapFormat.EXTENSION);
+        BinaryMapFormat.write(new MapGenerator(65, 33, 5).generate(), binary);
+        byte[] bytes = Files.readAllBytes(binary);
+        Files.write(binary, Arrays.copyOf(bytes, bytes.length - 1));
+
+        UncheckedIOException e = assertThrows(UncheckedIOException.class, () -> BinaryMapFormat.readTopology(binary));
+        assertInstanceOf(IOException.class, e.getCause());
+    }
+
+    @Test
+    void truncatedHeaderIsRejected() throws IOException {
+        Path binary = dir.resolve("header" + BinaryMapFormat.EXTENSION);
+        BinaryMapFormat.write(new MapGenerator(65, 33, 5).generate(), binary);
+        Files.write(binary, Arrays.copyOf(Files.readAllBytes(binary), HEADER_SIZE - 1));
+
+        assertThrows(UncheckedIOException.class, () -> BinaryMapFormat.readTopology(binary));
+    }
+
+    private static void assertSameCells(MapTopology expected, MapTopology actual) {
+        assertEquals(expected.getWidth(), actual.getWidth());
+        assertEquals(expected.getHeight(), actual.getHeight());
+        for (int index = 0; index < expected.size(); index++) {
+            assertEquals(expected.getCellType(index), actual.getCellType(index), "cell " + index);
+        }
+    }
+}
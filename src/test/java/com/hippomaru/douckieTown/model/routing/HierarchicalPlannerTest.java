@@ -0,0 +1,54 @@
+package com.hippomaru.douckieTown.model.routing;
+
+import com.hippomaru.douckieTown.model.map.CellType;
+import com.hippomaru.douckieTown.model.map.Coords;
+import com.hippomaru.douckieTown.model.map.DistanceField;
+import com.hippomaru.douckieTown.model.map.MapGenerator;
+import com.hippomaru.douckieTown.model.map.MapTopology;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Маршрут HPA* из любой клетки сгенерированной карты - цепочка соседних проходимых клеток до FINISH,
+// не короче оптимума по полю расстояний и длиннее его не больше чем на два кластера
+class HierarchicalPlannerTest {
+    private static final MapTopology MAP = new MapGenerator(96, 96, 5).generate();
+    private static final DistanceField OPTIMUM = DistanceField.toCellType(MAP, CellType.FINISH);
+
+    @ParameterizedTest
+    @ValueSource(ints = {4, 8, 16})
+    void pathsAreValidAndNearOptimal(int clusterSize) {
+        HierarchicalPlanner planner = new HierarchicalPlanner(MAP, clusterSize);
+        HierarchicalPlanner.Destination destination = planner.destination(CellType.FINISH);
+        for (int start = 0; start < MAP.size(); start++) {
+            if (!MAP.isPassable(start)) continue;
+            HierarchicalPath path = planner.plan(start, destination);
+            if (!OPTIMUM.isReachable(start)) {
+                assertNull(path, "start " + start);
+                continue;
+            }
+            assertNotNull(path, "start " + start);
+
+            Coords[] route = path.remainingRoute();
+            assertEquals(MAP.coordsOf(start), route[0]);
+            assertEquals(path.getLength(), route.length - 1, "start " + start);
+            for (int i = 1; i < route.length; i++) {
+                Coords previous = route[i - 1];
+                Coords current = route[i];
+                assertEquals(1, Math.abs(current.x() - previous.x()) + Math.abs(current.y() - previous.y()),
+                        "start " + start + ", step " + i);
+                assertTrue(MAP.isPassable(MAP.index(current)), "start " + start + ", step " + i);
+            }
+            assertEquals(CellType.FINISH, MAP.getCellType(MAP.index(route[route.length - 1])));
+
+            int optimum = OPTIMUM.getDistance(start);
+            assertTrue(path.getLength() >= optimum, "start " + start);
+            assertTrue(path.getLength() <= optimum + 2 * clusterSize,
+                    "start " + start + ": " + path.getLength() + " steps, optimum " + optimum);
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.hippomaru.douckieTown.results;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+// Поездки, записанные поколоночно, читаются обратно без потерь; CSV из прочитанного совпадает с CSV живой записи
+class TripSinkTest {
+    // Больше двух блоков, последний неполный
+    private static final int TRIPS = TripLogFormat.BATCH_SIZE * 2 + 123;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void columnarRecordsReadBack() {
+        List<TripRecord> trips = trips(3);
+        Path file = dir.resolve("trips" + TripLogFormat.EXTENSION);
+        write(new ColumnarTripSink(file), trips);
+
+        assertEquals(trips, readColumnar(file));
+    }
+
+    @Test
+    void columnarReadBackWritesSameCsv() throws Exception {
+        List<TripRecord> trips = trips(5);
+        Path columnar = dir.resolve("trips" + TripLogFormat.EXTENSION);
+        Path direct = dir.resolve("direct.csv");
+        write(new ColumnarTripSink(columnar), trips);
+        write(new CsvTripSink(direct), trips);
+
+        Path converted = dir.resolve("converted.csv");
+        write(new CsvTripSink(converted), readColumnar(columnar));
+
+        assertArrayEquals(Files.readAllBytes(direct), Files.readAllBytes(converted));
+        assertEquals(TRIPS + 1, Files.readAllLines(direct).size());
+    }
+
+    @Test
+    void emptyColumnarLogHasNoTrips() {
+        Path file = dir.resolve("empty" + TripLogFormat.EXTENSION);
+        write(new ColumnarTripSink(file), List.of());
+
+        assertEquals(List.of(), readColumnar(file));
+    }
+
+    @Test
+    void openPicksSinkByExtension() {
+        try (TripSink columnar = TripSink.open(dir.resolve("run" + TripLogFormat.EXTENSION));
+             TripSink csv = TripSink.open(dir.resolve("run.csv"))) {
+            assertInstanceOf(ColumnarTripSink.class, columnar);
+            assertInstanceOf(CsvTripSink.class, csv);
+        }
+        assertThrows(IllegalArgumentException.class, () -> TripSink.open(dir.resolve("run.txt")));
+    }
+
+    // Тики финиша в основном растут, но иногда идут назад - проверка zigzag-разниц
+    private static List<TripRecord> trips(long seed) {
+        Random random = new Random(seed);
+        List<TripRecord> trips = new ArrayList<>(TRIPS);
+        long finishTick = 0;
+        for (int i = 0; i < TRIPS; i++) {
+            finishTick += random.nextInt(10) == 0 ? -random.nextInt(50) : random.nextInt(3);
+            finishTick = Math.max(finishTick, 0);
+            long duration = random.nextInt(10) == 0 ? random.nextInt(Integer.MAX_VALUE) : random.nextInt(500);
+            trips.add(new TripRecord(finishTick - duration, finishTick, random.nextInt(1000), random.nextInt(200),
+                    random.nextInt(1000), random.nextInt(20)));
+        }
+        return trips;
+    }
+
+    private static void write(TripSink sink, List<TripRecord> trips) {
+        try (sink) {
+            trips.forEach(sink::accept);
+        }
+    }
+
+    private static List<TripRecord> readColumnar(Path file) {
+        List<TripRecord> trips = new ArrayList<>();
+        try (ColumnarTripReader reader = new ColumnarTripReader(file)) {
+            while (reader.readBatch(trips::add)) {
+            }
+        }
+        return trips;
+    }
+}
@@ -0,0 +1,60 @@
+package com.hippomaru.douckieTown.view;
+
+import com.hippomaru.douckieTown.app.GameManager;
+import com.hippomaru.douckieTown.app.PlanningMode;
+import com.hippomaru.douckieTown.app.scheduler.SequentialAgentScheduler;
+import com.hippomaru.douckieTown.model.map.CellGrid;
+import com.hippomaru.douckieTown.model.map.MapGenerator;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// Опорный кадр и следующие за ним дельты, применённые к пустой карте зрителя, воспроизводят снимок занятости
+class LiveFrameEncoderTest {
+    private static final int TICKS = 300;
+    private static final int KEYFRAME_INTERVAL = 50;
+    private static final int LATE_VIEWER_TICK = 120;
+
+    @Test
+    void keyframePlusDeltasReproduceSnapshot() {
+        CellGrid map = new MapGenerator(64, 64, 9).generateGrid();
+        GameManager manager = new GameManager(map, 200, 0.3, new SequentialAgentScheduler(),
+                PlanningMode.INDEPENDENT, 9);
+        LiveFrameEncoder encoder = new LiveFrameEncoder(map.size());
+        // Зритель с начала видит только дельты: до первого кадра у него пустая карта, как и у кодировщика
+        byte[] viewer = new byte[map.size()];
+        byte[] lateViewer = null;
+        try {
+            for (int tick = 1; tick <= TICKS; tick++) {
+                manager.doStep();
+                // Кодировщик берёт только последний снимок: промежуточные тики иногда пропускаются
+                if (tick % 7 == 3) continue;
+                OccupancySnapshot snapshot = OccupancySnapshot.of(map);
+                byte[] expected = LiveFrames.occupancy(snapshot, map.size());
+
+                byte[] delta = encoder.update(tick, snapshot);
+                assertEquals(LiveFrameEncoder.DELTA, LiveFrames.type(delta));
+                assertEquals(tick, LiveFrames.apply(delta, viewer));
+                assertArrayEquals(expected, viewer, "delta of tick " + tick);
+                if (lateViewer != null) {
+                    LiveFrames.apply(delta, lateViewer);
+                    assertArrayEquals(expected, lateViewer, "late viewer, tick " + tick);
+                }
+
+                if (tick % KEYFRAME_INTERVAL == 0 || tick == LATE_VIEWER_TICK) {
+                    byte[] keyframe = encoder.keyframe(tick);
+                    assertEquals(LiveFrameEncoder.KEYFRAME, LiveFrames.type(keyframe));
+                    byte[] fresh = new byte[map.size()];
+                    assertEquals(tick, LiveFrames.apply(keyframe, fresh));
+                    assertArrayEquals(expected, fresh, "keyframe of tick " + tick);
+                    if (tick == LATE_VIEWER_TICK) {
+                        lateViewer = fresh;
+                    }
+                }
+            }
+        } finally {
+            manager.close();
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.hippomaru.douckieTown.view;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+// Разбор кадров LiveFrameEncoder на стороне зрителя: занятость как массив по клеткам,
+// 0 - пусто, 1 - агент, 2 - транспорт
+final class LiveFrames {
+    static final byte AGENT = 1;
+    static final byte TRANSPORT = 2;
+
+    private LiveFrames() {
+    }
+
+    static byte[] occupancy(OccupancySnapshot snapshot, int cells) {
+        byte[] grid = new byte[cells];
+        for (int cell : snapshot.agentCells()) {
+            grid[cell] = AGENT;
+        }
+        for (int cell : snapshot.transportCells()) {
+            grid[cell] = TRANSPORT;
+        }
+        return grid;
+    }
+
+    static byte type(byte[] frame) {
+        return frame[0];
+    }
+
+    // Применяет опорный кадр или дельту к занятости зрителя и возвращает тик кадра
+    static long apply(byte[] frame, byte[] grid) {
+        ByteBuffer buffer = ByteBuffer.wrap(frame);
+        byte type = buffer.get();
+        long tick = readVarLong(buffer);
+        if (type == LiveFrameEncoder.KEYFRAME) {
+            Arrays.fill(grid, (byte) 0);
+        } else if (type == LiveFrameEncoder.DELTA) {
+            fill(buffer, grid, (byte) 0);
+        } else {
+            throw new IllegalArgumentException("Not an occupancy frame: " + type);
+        }
+        fill(buffer, grid, AGENT);
+        fill(buffer, grid, TRANSPORT);
+        if (buffer.hasRemaining()) {
+            throw new IllegalArgumentException("Trailing bytes in frame of tick " + tick);
+        }
+        return tick;
+    }
+
+    private static void fill(ByteBuffer buffer, byte[] grid, byte value) {
+        long count = readVarLong(buffer);
+        int cell = 0;
+        for (long i = 0; i < count; i++) {
+            cell += (int) readVarLong(buffer);
+            grid[cell] = value;
+        }
+    }
+
+    private static long readVarLong(ByteBuffer buffer) {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) return value;
+        }
+        throw new IllegalArgumentException("Malformed varint");
+    }
+}
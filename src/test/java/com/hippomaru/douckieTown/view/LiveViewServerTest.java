@@ -0,0 +1,114 @@
+package com.hippomaru.douckieTown.view;
+
+import com.hippomaru.douckieTown.app.GameManager;
+import com.hippomaru.douckieTown.app.PlanningMode;
+import com.hippomaru.douckieTown.app.scheduler.SequentialAgentScheduler;
+import com.hippomaru.douckieTown.model.map.CellGrid;
+import com.hippomaru.douckieTown.model.map.MapGenerator;
+import org.junit.jupiter.api.Test;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// Новый зритель получает опорный кадр последнего тика сразу после подключения, не дожидаясь следующего тика
+class LiveViewServerTest {
+    private static final int TICKS = 20;
+    private static final int TIMEOUT_MILLIS = 10_000;
+
+    @Test
+    void newViewerGetsKeyframeOnConnect() throws Exception {
+        CellGrid map = new MapGenerator(48, 48, 4).generateGrid();
+        GameManager manager = new GameManager(map, 100, 0.3, new SequentialAgentScheduler(),
+                PlanningMode.INDEPENDENT, 4);
+        // Периодический опорный кадр только на первом тике
+        try (LiveViewServer server = new LiveViewServer(map, 0, 1_000_000, 64);
+             Viewer first = new Viewer(server.getPort())) {
+            manager.addTickListener(server);
+            assertEquals(LiveFrameEncoder.MAP, LiveFrames.type(first.readFrame()));
+            awaitViewers(server, 1);
+
+            for (int tick = 0; tick < TICKS; tick++) {
+                manager.doStep();
+            }
+            byte[] expected = LiveFrames.occupancy(OccupancySnapshot.of(map), map.size());
+            // Первый зритель синхронизирован: кодировщик дошёл до последнего тика
+            byte[] firstGrid = new byte[map.size()];
+            while (LiveFrames.apply(first.readFrame(), firstGrid) < manager.getTick()) {
+            }
+            assertArrayEquals(expected, firstGrid);
+
+            try (Viewer second = new Viewer(server.getPort())) {
+                assertEquals(LiveFrameEncoder.MAP, LiveFrames.type(second.readFrame()));
+                byte[] keyframe = second.readFrame();
+                assertEquals(LiveFrameEncoder.KEYFRAME, LiveFrames.type(keyframe));
+                byte[] secondGrid = new byte[map.size()];
+                assertEquals(manager.getTick(), LiveFrames.apply(keyframe, secondGrid));
+                assertArrayEquals(expected, secondGrid);
+            }
+        } finally {
+            manager.close();
+        }
+    }
+
+    private static void awaitViewers(LiveViewServer server, int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (server.getViewerCount() < count) {
+            if (System.currentTimeMillis() > deadline) {
+                throw new AssertionError("Viewer did not register");
+            }
+            Thread.sleep(10);
+        }
+    }
+
+    // Минимальный клиент WebSocket: рукопожатие и чтение немаскированных бинарных кадров сервера
+    private static final class Viewer implements AutoCloseable {
+        private final Socket socket;
+        private final DataInputStream in;
+
+        Viewer(int port) throws IOException {
+            socket = new Socket(InetAddress.getLoopbackAddress(), port);
+            socket.setSoTimeout(TIMEOUT_MILLIS);
+            OutputStream out = socket.getOutputStream();
+            out.write(("GET / HTTP/1.1\r\n"
+                    + "Host: localhost\r\n"
+                    + "Upgrade: websocket\r\n"
+                    + "Connection: Upgrade\r\n"
+                    + "Sec-WebSocket-Key: dGhlIHNhbXBsZSBub25jZQ==\r\n"
+                    + "Sec-WebSocket-Version: 13\r\n\r\n").getBytes(StandardCharsets.ISO_8859_1));
+            out.flush();
+            in = new DataInputStream(socket.getInputStream());
+            // Ответ на рукопожатие заканчивается пустой строкой
+            StringBuilder response = new StringBuilder();
+            while (response.indexOf("\r\n\r\n") < 0) {
+                response.append((char) in.readUnsignedByte());
+            }
+            assertEquals(0, response.indexOf("HTTP/1.1 101"), response.toString());
+        }
+
+        byte[] readFrame() throws IOException {
+            int first = in.readUnsignedByte();
+            assertEquals(0x82, first);
+            long length = in.readUnsignedByte();
+            if (length == 126) {
+                length = in.readUnsignedShort();
+            } else if (length == 127) {
+                length = in.readLong();
+            }
+            byte[] payload = new byte[(int) length];
+            in.readFully(payload);
+            return payload;
+        }
+
+        @Override
+        public void close() throws IOException {
+            socket.close();
+        }
+    }
+}